@@ -0,0 +1,86 @@
+package edu.upenn.cis455.crawler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size Bloom filter over strings. It answers "definitely not present" or "possibly present",
+ * so a store only needs to be consulted on a possible hit. The bits are kept in an AtomicLongArray so
+ * the filter can be shared by all the crawler threads without locking.
+ */
+public class BloomFilter {
+
+	private AtomicLongArray bits;
+	private long number_of_bits;
+	private int number_of_hashes;
+
+	/**
+	 * Constructor
+	 * @param expected_insertions is the number of strings the filter is sized for
+	 * @param false_positive_rate is the false positive rate at the expected number of insertions
+	 */
+	public BloomFilter(long expected_insertions, double false_positive_rate) {
+		expected_insertions = Math.max(expected_insertions, 1);
+		long m = (long) Math.ceil(-expected_insertions * Math.log(false_positive_rate) / (Math.log(2) * Math.log(2)));
+		m = Math.max(64, (m + 63) / 64 * 64);
+		number_of_bits = m;
+		number_of_hashes = Math.max(1, (int) Math.round((double) m / expected_insertions * Math.log(2)));
+		bits = new AtomicLongArray((int) (m / 64));
+	}
+
+	/**
+	 * Function to add a string to the filter
+	 * @param key
+	 */
+	public void put(String key) {
+		long hash = hash64(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < number_of_hashes; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % number_of_bits;
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			while (true) {
+				long old_value = bits.get(word);
+				if ((old_value & mask) != 0 || bits.compareAndSet(word, old_value, old_value | mask))
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Function to check if a string may have been added to the filter
+	 * @param key
+	 * @return false if the string was definitely never added and true otherwise
+	 */
+	public boolean might_contain(String key) {
+		long hash = hash64(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < number_of_hashes; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % number_of_bits;
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Function to compute a 64 bit hash of a string (FNV-1a followed by a final mix of the bits)
+	 * @param key
+	 * @return
+	 */
+	static long hash64(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
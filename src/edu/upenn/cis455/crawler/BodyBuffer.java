@@ -0,0 +1,169 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A growable byte array that a response body is streamed into. The array starts small and doubles
+ * as the bytes arrive, so its size follows the body that was actually received. A LinkExtractor
+ * can be attached to be fed the bytes as they are appended, so that the links of a page are found
+ * while it downloads.
+ */
+public class BodyBuffer {
+
+	private static final int INITIAL_CAPACITY = 16 * 1024;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // Largest array the JVM will allocate
+
+	private byte[] data;
+	private int length;
+	private LinkExtractor extractor; // Fed every byte appended, null for none
+
+	public BodyBuffer() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity is the initial size of the array in bytes
+	 */
+	public BodyBuffer(int capacity) {
+		data = new byte[Math.max(capacity, 1)];
+		length = 0;
+	}
+
+	/**
+	 * Function to have the bytes appended from now on fed to a link extractor
+	 * @param extractor
+	 */
+	public void set_extractor(LinkExtractor extractor) {
+		this.extractor = extractor;
+	}
+
+	public void reset() {
+		length = 0;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public byte[] array() {
+		return data;
+	}
+
+	/**
+	 * Function to append bytes to the buffer
+	 */
+	public void write(byte[] bytes, int offset, int count) {
+		ensure_capacity((long) length + count);
+		System.arraycopy(bytes, offset, data, length, count);
+		appended(count);
+	}
+
+	/**
+	 * Function to append exactly count bytes read from the stream. The buffer grows as the bytes arrive,
+	 * so a large count that the stream does not live up to does not allocate the whole of it up front.
+	 * @return false if the stream ended before count bytes were read
+	 * @throws IOException
+	 */
+	public boolean read_fully(InputStream in, int count) throws IOException {
+		if ((long) length + count > MAX_CAPACITY)
+			throw new IOException("Body of " + ((long) length + count) + " bytes is larger than an array can be");
+		while (count > 0) {
+			if (length == data.length)
+				ensure_capacity((long) length + 1);
+			int read = in.read(data, length, Math.min(count, data.length - length));
+			if (read < 0)
+				return false;
+			appended(read);
+			count -= read;
+		}
+		return true;
+	}
+
+	/**
+	 * Function to append everything left in the stream, as long as the buffer stays within max_size bytes
+	 * @return false if the reading stopped because the buffer would have grown past max_size
+	 * @throws IOException
+	 */
+	public boolean read_to_end(InputStream in, int max_size) throws IOException {
+		while (true) {
+			if (length == data.length) {
+				if (length >= MAX_CAPACITY)
+					return false;
+				ensure_capacity((long) length + 1);
+			}
+			int read = in.read(data, length, data.length - length);
+			if (read < 0)
+				return true;
+			appended(read);
+			if (length > max_size)
+				return false;
+		}
+	}
+
+	/**
+	 * Function to decode the contents of the buffer
+	 * @param charset
+	 * @return
+	 */
+	public String decode(Charset charset) {
+		return new String(data, 0, length, charset);
+	}
+
+	/**
+	 * Function to get a copy of the contents of the buffer
+	 * @return
+	 */
+	public byte[] to_byte_array() {
+		byte[] copy = new byte[length];
+		System.arraycopy(data, 0, copy, 0, length);
+		return copy;
+	}
+
+	private void appended(int count) {
+		if (extractor != null)
+			extractor.feed(data, length, count);
+		length += count;
+	}
+
+	/**
+	 * Function to grow the array to at least the given capacity, doubling it, but never past MAX_CAPACITY
+	 * @param capacity
+	 */
+	private void ensure_capacity(long capacity) {
+		if (capacity <= data.length)
+			return;
+		if (capacity > MAX_CAPACITY)
+			throw new OutOfMemoryError("Body of " + capacity + " bytes is larger than an array can be");
+		long new_capacity = Math.max((long) data.length * 2, capacity);
+		byte[] new_data = new byte[(int) Math.min(new_capacity, MAX_CAPACITY)];
+		System.arraycopy(data, 0, new_data, 0, length);
+		data = new_data;
+	}
+
+	/**
+	 * Function to get the charset named in a Content-Type header value
+	 * @param content_type
+	 * @return the charset, or UTF-8 if none is named or it is not supported
+	 */
+	public static Charset charset_of(String content_type) {
+		if (content_type != null) {
+			int index = content_type.toLowerCase().indexOf("charset=");
+			if (index >= 0) {
+				String name = content_type.substring(index + 8).split(";")[0].trim().replace("\"", "").replace("'", "");
+				try {
+					if (Charset.isSupported(name))
+						return Charset.forName(name);
+				}
+				catch (IllegalArgumentException e) {
+					// Fall back to the default below
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+}
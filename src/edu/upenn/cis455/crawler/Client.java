@@ -2,6 +2,7 @@ package edu.upenn.cis455.crawler;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -10,7 +11,7 @@ import org.w3c.tidy.Tidy;
 import org.xml.sax.InputSource;
 import javax.net.ssl.HttpsURLConnection;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import edu.upenn.cis455.xpathengine.DocumentBuilderCache;
 
 public class Client {
 
@@ -20,24 +21,38 @@ public class Client {
 	private String host;
 	private int port;
 	private String method;
-	private String body;
+	private String body; // Body decoded with the charset of the response, created on first use
+	private BodyBuffer body_buffer; // Raw bytes of the body, owned by this client, null if the response had no body
 	private HashMap<String, String> request_headers;
 	private HashMap<String, String> response_map;
-	private Socket clientSocket;
-	private PrintWriter output = null;
-	private BufferedReader input = null;
+	private ConnectionPool pool;
+	private int max_size = Integer.MAX_VALUE; // Largest body that will be downloaded
+	private String[] accepted_types = null; // Content types whose body will be downloaded, null for all
+	private String abort_reason = null; // Why the body was not downloaded, null if it was
+	private LinkExtractor link_extractor = null; // Fed the body of a html page while it downloads, null for none
+	private boolean links_extracted = false; // True if the link extractor was fed the body
 
 	/**
-	 * Constructor
+	 * Constructor. Requests are sent over the connections of the pool shared by all the crawler threads.
 	 * @param link is the request url
 	 * @param method is the request method
 	 */
 	public Client(String link, String method) {
+		this(link, method, ConnectionPool.get_shared());
+	}
+
+	/**
+	 * Constructor
+	 * @param link is the request url
+	 * @param method is the request method
+	 * @param pool is the pool of persistent connections that the request is sent over
+	 */
+	public Client(String link, String method, ConnectionPool pool) {
 		this.url_str = link;
+		this.pool = pool;
 		this.method = method;
 		this.request_headers = new HashMap<String, String>();
 		request_headers.put("User-Agent","cis455crawler");
-		request_headers.put("Host", host+":"+port);
 		this.response_map = new HashMap<String, String>();
 		try {
 			this.url = new URL(url_str);
@@ -48,19 +63,9 @@ public class Client {
 		port = url.getPort();
 		port = (port <= 0 ? 80 : port);
 		query_str = url.getPath().equals("") ? "/" : url.getPath();
-		try{
-			if (!url.getProtocol().equalsIgnoreCase("https"))
-			{
-				InetAddress address = InetAddress.getByName(url.getHost());
-				clientSocket = new Socket(address.getHostAddress(), port);
-				clientSocket.setSoTimeout(10000);
-				output =  new PrintWriter(clientSocket.getOutputStream(), true);
-				input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-			}
-		}
-		catch(Exception e) {
-			System.out.println(e);
-		}
+		if (url.getQuery() != null)
+			query_str += "?" + url.getQuery();
+		request_headers.put("Host", (port == 80 ? host : host+":"+port));
 	}
 
 	/**
@@ -72,6 +77,71 @@ public class Client {
 		request_headers.put(key, value);
 	}
 
+	/**
+	 * Function to set the largest body to download. The body of a larger response is not read,
+	 * or the reading stops as soon as the body grows past this size.
+	 * @param size in bytes
+	 */
+	public void set_max_size(int size) {
+		max_size = size;
+	}
+
+	/**
+	 * Function to restrict the content types to download. The body of a response whose Content-Type
+	 * does not contain one of the given strings is not read.
+	 * @param types such as "html" or "xml"
+	 */
+	public void set_accepted_types(String... types) {
+		accepted_types = types;
+	}
+
+	/**
+	 * Function to have the links of the page found while its body downloads. The extractor is fed the body
+	 * of a 200 response whose Content-Type is html in UTF-8, the charset it reads the bytes in.
+	 * @param extractor
+	 */
+	public void set_link_extractor(LinkExtractor extractor) {
+		link_extractor = extractor;
+	}
+
+	/**
+	 * @return true if the link extractor was fed the body of the response as it downloaded
+	 */
+	public boolean links_extracted() {
+		return links_extracted;
+	}
+
+	/**
+	 * Function to get the reason the body of a 200 response was not downloaded
+	 * @return null if the body was downloaded and the reason otherwise
+	 */
+	public String get_abort_reason() {
+		return abort_reason;
+	}
+
+	/**
+	 * @return true if the request is sent over https, which NioFetcher does not handle
+	 */
+	public boolean is_https() {
+		return url.getProtocol().equalsIgnoreCase("https");
+	}
+
+	String getHost() {
+		return host;
+	}
+
+	int getPort() {
+		return port;
+	}
+
+	String getMethod() {
+		return method;
+	}
+
+	int getMaxSize() {
+		return max_size;
+	}
+
 	/**
 	 * Function to get one of the response header values
 	 * @param key
@@ -85,45 +155,155 @@ public class Client {
 	 * Function to send the request to the url
 	 */
 	public void send_request() {
-		if (url.getProtocol().equalsIgnoreCase("https"))
+		if (is_https())
 		{
 			send_https_request();
 			return;
 		}
-		String request = "";
-		request += method + " " + query_str + " HTTP/1.0\r\n";
-		for (Map.Entry<String, String> entry : request_headers.entrySet()) {
-			request += entry.getKey() + ": " + entry.getValue() + "\r\n";
+		byte[] request_bytes = build_request();
+		PooledConnection connection = null;
+		boolean reusable = false;
+		try {
+			ResponseReader reader = null;
+			for (int attempt = 0; reader == null; attempt++) {
+				connection = pool.acquire(host, port);
+				try {
+					connection.getOutputStream().write(request_bytes);
+					connection.getOutputStream().flush();
+					reader = new ResponseReader(connection.getInputStream());
+					if (!reader.read_head(response_map))
+						throw new EOFException("Connection closed by " + host);
+				}
+				catch (IOException e) {
+					// The server may have closed a reused connection while it was idle, so retry once on a new one
+					boolean retry = connection.isReused() && attempt == 0;
+					pool.release(connection, false);
+					connection = null;
+					if (!retry)
+						throw e;
+					reader = null;
+				}
+			}
+			reusable = read_response(reader) && !"close".equalsIgnoreCase(response_map.get("connection"));
+		}
+		catch (IOException | NumberFormatException e) {
+			System.out.println(e);
+		}
+		finally {
+			if (connection != null)
+				pool.release(connection, reusable);
 		}
-		request += "\r\n";
-		output.println(request);
-		String responseline = "";
+	}
+
+	/**
+	 * Function to parse a response that was received by a NioFetcher. The status and headers are
+	 * read from the bytes the same way send_request reads them from a socket.
+	 * @param response holds the bytes of the response, or is null if no response was received
+	 */
+	void receive(BodyBuffer response) {
+		if (response == null)
+			return;
 		try {
-			responseline = input.readLine();
-			int status = Integer.parseInt(responseline.split(" ")[1]);
-			response_map.put("status", ""+status);
-			String line = "";
-			while ((line = input.readLine()).length() != 0) { // Process Headers
-				String[] line_parts = line.split(":", 2);
-				response_map.put(line_parts[0].toLowerCase(), line_parts[1]);
+			ResponseReader reader = new ResponseReader(new ByteArrayInputStream(response.array(), 0, response.length()));
+			if (reader.read_head(response_map))
+				read_response(reader);
+		}
+		catch (IOException | NumberFormatException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Function to build the bytes of the request line and headers
+	 * @return
+	 */
+	byte[] build_request() {
+		StringBuilder request = new StringBuilder();
+		request.append(method).append(" ").append(query_str).append(" HTTP/1.1\r\n");
+		for (Map.Entry<String, String> entry : request_headers.entrySet()) {
+			request.append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+		}
+		request.append("\r\n");
+		return request.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Function to read the body of the response, once read_head has filled the response map
+	 * @param reader
+	 * @return true if the body was read up to its end, so that the connection can carry another request
+	 * @throws IOException
+	 */
+	private boolean read_response(ResponseReader reader) throws IOException {
+		int status = Integer.parseInt(response_map.get("status"));
+		boolean complete = true;
+		if (ResponseReader.has_body(method, status)) { // Get body of response
+			if (status == 200 && !check_headers(response_map)) // Abandon the body without reading it, which also closes the connection
+				return false;
+			body_buffer = new_body_buffer(status);
+			reader.set_max_body_size(max_size);
+			complete = reader.read_body(response_map, body_buffer);
+			if (reader.exceeded_max_size()) {
+				abort_reason = "File size exceeds maximum size";
+				body_buffer = null;
 			}
 			if (status!=200 && status != 301 && status != 307)
-			{
-				input = null;
-				return;
-			}
-			if (method.equalsIgnoreCase("get")) {
-				body = "";
-				while ((line = input.readLine()) != null) { // Get body of response
-					body += line + "\n";
+				body_buffer = null;
+		}
+		return complete;
+	}
+
+	/**
+	 * Function to create the buffer the body is read into, with the link extractor attached if it applies
+	 * @param status of the response
+	 * @return
+	 */
+	private BodyBuffer new_body_buffer(int status) {
+		BodyBuffer buffer = new BodyBuffer();
+		String content_type = response_map.get("content-type");
+		if (link_extractor != null && status == 200 && content_type != null && content_type.toLowerCase().contains("html")
+				&& StandardCharsets.UTF_8.equals(get_charset())) {
+			buffer.set_extractor(link_extractor);
+			links_extracted = true;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Function to decide from the response headers whether the body should be downloaded
+	 * @param headers are the response headers
+	 * @return true if the body should be downloaded and false otherwise, with abort_reason set
+	 */
+	boolean check_headers(HashMap<String, String> headers) {
+		String content_type = headers.get("content-type");
+		if (accepted_types != null) {
+			boolean accepted = false;
+			if (content_type != null) {
+				String type = content_type.split(";")[0].toLowerCase();
+				for (String accepted_type : accepted_types) {
+					if (type.contains(accepted_type))
+						accepted = true;
 				}
 			}
+			if (!accepted) {
+				abort_reason = "Content type " + content_type + " is not one of " + Arrays.toString(accepted_types);
+				return false;
+			}
 		}
-		catch (IOException e) {
-			System.out.println(e);
+		String content_length = headers.get("content-length");
+		if (content_length != null) {
+			try {
+				if (Long.parseLong(content_length) > max_size) {
+					abort_reason = "File size exceeds maximum size";
+					return false;
+				}
+			}
+			catch (NumberFormatException e) {
+				// The size will be checked while the body is read
+			}
 		}
+		return true;
 	}
-	
+
 	/**
 	 * Function to send a https request to the url
 	 */
@@ -145,46 +325,41 @@ public class Client {
 		}
 		response_map.put("status", ""+status);
 		if (status!=200 && status!=301 && status!=304 && status!=307)
-		{
-			input = null;
 			return;
-		}
 		response_map.put("content-length", ""+con.getContentLength());
 		response_map.put("content-type", con.getContentType());
-		if (request_headers.containsKey("if-modified-since"))
+		if (request_headers.containsKey("If-Modified-Since"))
 			response_map.put("last-modified", getDate(con.getLastModified()));
 		if(con.getHeaderField("location") != null)
 			response_map.put("location", con.getHeaderField("location"));
-		try {
-			input = new BufferedReader(new InputStreamReader((con.getInputStream())));
-		} catch (IOException e1) {
-			e1.printStackTrace();
+		if(con.getHeaderField("etag") != null)
+			response_map.put("etag", con.getHeaderField("etag"));
+		if (!ResponseReader.has_body(method, status))
+			return;
+		if (status == 200 && !check_headers(response_map)) {
+			con.disconnect();
+			return;
 		}
-		StringBuilder sb = new StringBuilder();
-		String output;
-		boolean first = true;
-		try {
-			while ((output = input.readLine()) != null) {
-				if (first) {
-					sb.append(output);
-					first = false;
-					continue;
-				}
-				sb.append("\n"+output);
+		body_buffer = new_body_buffer(status);
+		try (InputStream in = con.getInputStream()) {
+			if (!body_buffer.read_to_end(in, max_size)) {
+				abort_reason = "File size exceeds maximum size";
+				body_buffer = null;
+				con.disconnect();
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		body = sb.toString();
 	}
 
 	/**
-	 * Function to return a buffered reader that is used to read the response
+	 * Function to return a buffered reader over the body of the response
 	 * @return
 	 */
 	public BufferedReader getBufferedReader()
 	{
-		return input;
+		String content = getBody();
+		return (content == null ? null : new BufferedReader(new StringReader(content)));
 	}
 
 	/**
@@ -202,13 +377,31 @@ public class Client {
 	}
 
 	/**
-	 * Function to get the body of a response
+	 * Function to get the body of a response, decoded with the charset given in its Content-Type
 	 * @return null in case it is a HEAD request and the body in case it is a GET request
 	 */
 	public String getBody() {
+		if (body == null && body_buffer != null)
+			body = body_buffer.decode(get_charset());
 		return body;
 	}
 
+	/**
+	 * Function to get the raw bytes of the body of a response
+	 * @return null in case it is a HEAD request
+	 */
+	public BodyBuffer getBodyBytes() {
+		return body_buffer;
+	}
+
+	/**
+	 * Function to get the charset of the response body
+	 * @return the charset in the Content-Type header, or UTF-8 if there is none
+	 */
+	public Charset get_charset() {
+		return BodyBuffer.charset_of(response_map.get("content-type"));
+	}
+
 	/**
 	 * Function to get the Document corresponding to the body
 	 * @return
@@ -219,17 +412,17 @@ public class Client {
 		String content_type = response_map.get("content-type");
 		if (content_type == null) {
 			if (url_str.trim().endsWith("html"))
-				return get_doc_html(body);
+				return get_doc_html(getBody());
 			else if (url_str.trim().endsWith("xml"))
-				return get_doc_xml(body);
+				return get_doc_xml(getBody());
 			else
 				return doc;
 		}
 		else {
 			if (content_type.contains("html/plain"))
-				return get_doc_html(body);
+				return get_doc_html(getBody());
 			else if (content_type.contains("xml"))
-				return get_doc_xml(body);
+				return get_doc_xml(getBody());
 			else
 				return doc;
 		}
@@ -260,7 +453,7 @@ public class Client {
 	{
 		DocumentBuilder db = null;
 		try{
-			db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			db = DocumentBuilderCache.get_builder(); // Reused by the thread for each document
 		}
 		catch(Exception e) {
 			System.out.println(e);
@@ -0,0 +1,175 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A pool of persistent HTTP/1.1 connections, kept per host and shared by all the crawler threads.
+ * At most max_per_host connections are open to a host at any time, so that the crawler never hits
+ * a server with more parallel requests than that. The limit is kept with a semaphore per host,
+ * so a thread waiting for a connection does not hold the lock of the pool, which would pin the
+ * carrier of a virtual thread. Connections that stay idle for longer than the idle timeout are
+ * closed by a background timer. Hosts are resolved through the shared DnsCache.
+ */
+public class ConnectionPool {
+
+	private static final int DEFAULT_MAX_PER_HOST = 2;
+	private static final long DEFAULT_IDLE_TIMEOUT = 15000;
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final int READ_TIMEOUT = 10000;
+
+	private static ConnectionPool shared_pool = null;
+
+	private int max_per_host;
+	private long idle_timeout;
+	private HashMap<String, ArrayDeque<PooledConnection>> idle; // Idle connections per host:port, most recently used last
+	private HashMap<String, Semaphore> permits; // Connections per host:port that may still be handed out
+	private Timer evictor;
+
+	/**
+	 * Constructor
+	 * @param max_per_host is the maximum number of connections open to a single host
+	 * @param idle_timeout is the time in milliseconds after which an idle connection is closed
+	 */
+	public ConnectionPool(int max_per_host, long idle_timeout) {
+		this.max_per_host = max_per_host;
+		this.idle_timeout = idle_timeout;
+		idle = new HashMap<String, ArrayDeque<PooledConnection>>();
+		permits = new HashMap<String, Semaphore>();
+		evictor = new Timer("ConnectionPool-evictor", true);
+		evictor.schedule(new TimerTask() {
+			public void run() {
+				evict_idle();
+			}
+		}, idle_timeout, Math.max(idle_timeout / 2, 1000));
+	}
+
+	/**
+	 * Function to get the pool shared by all the crawler threads
+	 * @return
+	 */
+	public static synchronized ConnectionPool get_shared() {
+		if (shared_pool == null)
+			shared_pool = new ConnectionPool(DEFAULT_MAX_PER_HOST, DEFAULT_IDLE_TIMEOUT);
+		return shared_pool;
+	}
+
+	/**
+	 * Function to close the pool shared by all the crawler threads. A new one is created if it is needed again.
+	 */
+	public static synchronized void close_shared() {
+		if (shared_pool != null) {
+			shared_pool.close();
+			shared_pool = null;
+		}
+	}
+
+	/**
+	 * Function to get a connection to host:port. An idle connection is reused if there is one, and
+	 * otherwise a new one is opened. Waits while max_per_host connections to the host are in use.
+	 * @param host
+	 * @param port
+	 * @return
+	 * @throws IOException if the connection could not be opened
+	 */
+	public PooledConnection acquire(String host, int port) throws IOException {
+		String key = host + ":" + port;
+		Semaphore host_permits = get_permits(key);
+		try {
+			host_permits.acquire();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for a connection to " + key);
+		}
+		synchronized (this) {
+			ArrayDeque<PooledConnection> connections = idle.get(key);
+			while (connections != null && !connections.isEmpty()) {
+				PooledConnection connection = connections.pollLast();
+				if (connection.isOpen() && System.currentTimeMillis() - connection.getLastUsed() < idle_timeout)
+					return connection;
+				connection.close();
+			}
+		}
+		try { // Connect outside the lock, holding the permit of the host
+			InetAddress address = DnsCache.get_shared().lookup(host);
+			Socket socket = new Socket();
+			socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT);
+			socket.setSoTimeout(READ_TIMEOUT);
+			socket.setTcpNoDelay(true);
+			return new PooledConnection(key, socket);
+		}
+		catch (IOException e) {
+			host_permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Function to give a connection back to the pool
+	 * @param connection
+	 * @param reusable is true if the response was read completely and the server did not ask to close the connection
+	 */
+	public void release(PooledConnection connection, boolean reusable) {
+		synchronized (this) {
+			if (reusable && connection.isOpen()) {
+				connection.setLastUsed(System.currentTimeMillis());
+				connection.setReused(true);
+				ArrayDeque<PooledConnection> connections = idle.get(connection.getKey());
+				if (connections == null) {
+					connections = new ArrayDeque<PooledConnection>();
+					idle.put(connection.getKey(), connections);
+				}
+				connections.addLast(connection);
+			}
+			else {
+				connection.close();
+			}
+		}
+		get_permits(connection.getKey()).release();
+	}
+
+	/**
+	 * Function to close the connections that have been idle for longer than the idle timeout
+	 */
+	public synchronized void evict_idle() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, ArrayDeque<PooledConnection>>> entries = idle.entrySet().iterator();
+		while (entries.hasNext()) {
+			ArrayDeque<PooledConnection> connections = entries.next().getValue();
+			while (!connections.isEmpty() && now - connections.peekFirst().getLastUsed() >= idle_timeout)
+				connections.pollFirst().close();
+			if (connections.isEmpty())
+				entries.remove();
+		}
+	}
+
+	/**
+	 * Function to close all the idle connections and stop the evictor
+	 */
+	public synchronized void close() {
+		for (ArrayDeque<PooledConnection> connections : idle.values()) {
+			for (PooledConnection connection : connections)
+				connection.close();
+		}
+		idle.clear();
+		evictor.cancel();
+	}
+
+	private synchronized Semaphore get_permits(String key) {
+		Semaphore host_permits = permits.get(key);
+		if (host_permits == null) {
+			host_permits = new Semaphore(max_per_host);
+			permits.put(key, host_permits);
+		}
+		return host_permits;
+	}
+
+}
@@ -0,0 +1,129 @@
+package edu.upenn.cis455.crawler;
+
+/**
+ * The stages a page goes through once it has been fetched, each with its own pool of threads and a bounded
+ * queue in front of it. The fetch stage is the crawl engine itself, whose threads only wait on the network:
+ * they check the response and hand it to the pipeline. The parse stage decodes the body and stores it, the
+ * extract stage adds the links of html pages to the frontier, and the match stage streams xml documents
+ * through the xpaths of the channels. The I/O bound and the CPU bound work are then sized separately.
+ * A page is counted by the frontier as being processed from the time it is submitted until its last stage is
+ * done, so that the frontier does not drain while links may still be added to it.
+ */
+class CrawlPipeline {
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000; // Pages waiting at most in front of each stage
+
+	private final CrawlerThread crawler;
+	private final Frontier urlsqueue;
+	private final PipelineStage parse;
+	private final PipelineStage extract;
+	private final PipelineStage match;
+
+	/**
+	 * Constructor, with pools sized for the processors of the machine
+	 * @param crawler does the work of each stage
+	 * @param queue is the frontier
+	 */
+	public CrawlPipeline(CrawlerThread crawler, Frontier queue) {
+		this(crawler, queue, Runtime.getRuntime().availableProcessors(), Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+				Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Constructor. Starts the threads of all the stages.
+	 * @param crawler does the work of each stage
+	 * @param queue is the frontier
+	 * @param parse_threads is the number of threads that decode and store the pages
+	 * @param extract_threads is the number of threads that extract the links of html pages
+	 * @param match_threads is the number of threads that match xml documents against the channels
+	 * @param queue_capacity is the largest number of pages waiting in front of each stage
+	 */
+	public CrawlPipeline(CrawlerThread crawler, Frontier queue, int parse_threads, int extract_threads, int match_threads, int queue_capacity) {
+		this.crawler = crawler;
+		urlsqueue = queue;
+		parse = new PipelineStage("parse", parse_threads, queue_capacity);
+		extract = new PipelineStage("extract", extract_threads, queue_capacity);
+		match = new PipelineStage("match", match_threads, queue_capacity);
+	}
+
+	/**
+	 * Function to hand a fetched page to the pipeline. Waits if the parse stage is full.
+	 * @param fetch whose response has been checked
+	 */
+	public void submit(final PendingFetch fetch) {
+		urlsqueue.begin_processing();
+		boolean queued = false;
+		try {
+			parse.submit(new Runnable() {
+				public void run() {
+					parse(fetch);
+				}
+			});
+			queued = true;
+		}
+		finally {
+			if (!queued)
+				urlsqueue.end_processing();
+		}
+	}
+
+	/**
+	 * Function to decode and store a page and hand it to the extract or the match stage
+	 * @param fetch
+	 */
+	private void parse(final PendingFetch fetch) {
+		boolean handed_over = false;
+		try {
+			if (!crawler.parse_response(fetch))
+				return;
+			if (fetch.getContentType().contains("html")) {
+				extract.submit(new Runnable() {
+					public void run() {
+						try {
+							crawler.extract_links(fetch);
+						}
+						finally {
+							urlsqueue.end_processing();
+						}
+					}
+				});
+			}
+			else {
+				match.submit(new Runnable() {
+					public void run() {
+						try {
+							crawler.update_channels(fetch.getURL(), fetch.getContent());
+						}
+						finally {
+							urlsqueue.end_processing();
+						}
+					}
+				});
+			}
+			handed_over = true;
+		}
+		finally {
+			if (!handed_over)
+				urlsqueue.end_processing();
+		}
+	}
+
+	/**
+	 * Function to process the pages still queued and stop all the stages. The stages are closed in the order
+	 * the pages go through them, so that no stage is closed while an earlier one can still feed it.
+	 */
+	public void close() {
+		parse.close();
+		extract.close();
+		match.close();
+		print_stats(parse);
+		print_stats(extract);
+		print_stats(match);
+	}
+
+	private void print_stats(PipelineStage stage) {
+		System.out.println("[PIPELINE] " + stage.getName() + " : " + stage.get_completed() + " pages on " + stage.getThreadCount()
+				+ " threads --- busy for " + stage.get_busy_time() + " ms");
+	}
+
+}
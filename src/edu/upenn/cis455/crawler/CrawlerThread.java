@@ -1,16 +1,11 @@
 package edu.upenn.cis455.crawler;
 
 import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
+import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.Transaction;
 import com.sleepycat.persist.EntityCursor;
@@ -19,7 +14,7 @@ import edu.upenn.cis455.xpathengine.*;
 
 public class CrawlerThread implements Runnable {
 
-	private MyQueue urlsqueue;
+	private Frontier urlsqueue;
 	private static int max_size;
 	private static int max_number_of_files;
 	private NumberOfFilesCrawled number_of_files_crawled;
@@ -27,8 +22,32 @@ public class CrawlerThread implements Runnable {
 	private String directory;
 	private Environment env;
 	private Indices pk_index;
+	private Durability durability; // Durability of the commits of the writer
+	private PersistenceWriter writer; // Write-behind stage for the records written for each fetch
+	private PageStore page_store; // Compressed bodies of the crawled pages, by the hash of their content
+	private CrawledURLCache crawled_urls; // Metadata of the crawled pages, cached in front of the Crawled_URLS store
+	private RobotsCache robots; // Compiled robots.txt rules of the hosts, in front of the Robots store
+	private BloomFilter seen_urls; // Filter in front of the URLS store, so that only possible hits go to the database
+	private XPathMatcher matcher; // Matcher for the xpaths of all the channels
+	private ChannelSnapshot matcher_snapshot; // Snapshot of the channels the matcher was built for
+	private final ChannelRegistry registry = new ChannelRegistry(); // Channels and their xpaths of this database, shared by all the threads
+	private CrawlPipeline pipeline; // Stages that process the fetched pages, or null to process them on the thread that fetched them
 
-	public CrawlerThread(MyQueue queue, int num1, int num2, String dir) {
+	public CrawlerThread(Frontier queue, int num1, int num2, String dir) {
+		this(queue, num1, num2, dir, Durability.COMMIT_NO_SYNC);
+	}
+
+	/**
+	 * Constructor
+	 * @param queue is the frontier
+	 * @param num1 is the maximum size of a document in bytes
+	 * @param num2 is the maximum number of documents to download
+	 * @param dir is the database directory
+	 * @param durability of the commits of the records written for each fetch. The log is also written to disk at
+	 * each checkpoint of the writer and when the database is closed.
+	 */
+	public CrawlerThread(Frontier queue, int num1, int num2, String dir, Durability durability) {
+		this.durability = durability;
 		number_of_files_crawled = new NumberOfFilesCrawled();
 		urlsqueue = queue;
 		max_size = num1;
@@ -36,7 +55,8 @@ public class CrawlerThread implements Runnable {
 		directory = dir;
 		opendb();
 		flush_seen_urls(); // Flush the URLs store from the previous iteration's cache of the crawler
-		flush_robots(); // Flush the robots store
+		seen_urls = new BloomFilter(Math.max(max_number_of_files, 100000), 0.01);
+		// The robots store is kept across runs, since its records expire by themselves
 	}
 
 	/**
@@ -66,477 +86,345 @@ public class CrawlerThread implements Runnable {
 	}
 
 	/**
-	 * Function to erase the domains information of the previous iteration from the database
+	 * Function to have the fetched pages processed by the stages of a pipeline instead of the fetching threads
+	 * @param pipeline
 	 */
-	public void flush_robots() {
-		EntityCursor<Robots> robots = pk_index.robots_pk.entities();
-		ArrayList<String> robots_domains = new ArrayList<String>();
-		for (Robots robot : robots) {
-			robots_domains.add(robot.getDomain());		
-		}
-		robots.close();
-		for (String domain : robots_domains) {
-			Transaction txn = env.beginTransaction(null, null);
-			try {
-				pk_index.robots_pk.delete(null, domain);
-				txn.commit();
-			}
-			catch(Exception e) {
-				e.printStackTrace();
-				if (txn != null) {
-					txn.abort();
-					txn = null;
-				}
-			}
-		}
+	void set_pipeline(CrawlPipeline pipeline) {
+		this.pipeline = pipeline;
 	}
-	
+
 	/**
 	 * Function that opens the database
 	 */
 	public void opendb() {
 		wrapper = new DBWrapper();
 		wrapper.setup(directory);
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		env = wrapper.getEnvironment();
+		writer = new PersistenceWriter(env, durability);
+		writer.track(pk_index.urls_pk); // For check_if_url_seen
+		page_store = new PageStore(pk_index);
+		crawled_urls = new CrawledURLCache(pk_index);
+		robots = new RobotsCache(pk_index, writer);
 	}
 
 	/**
 	 * Function that closes the database
 	 */
 	public void closedb() {
+		writer.close(); // Commit the records still queued first
+		System.out.println("[WRITER] Records written : " + writer.get_write_count() + " --- commits : " + writer.get_commit_count());
+		System.out.println("[METADATA] Cache hits : " + crawled_urls.get_hits() + " --- misses : " + crawled_urls.get_misses());
+		System.out.println("[ROBOTS] Cache hits : " + robots.get_hits() + " --- misses : " + robots.get_misses() + " --- fetches : " + robots.get_fetches() + " --- waited : " + robots.get_waits());
 		wrapper.shutdown();
 	}
 
 	public void run() {
-		while (number_of_files_crawled.count() < max_number_of_files && !urlsqueue.isempty()) {
+		while (!reached_max_files()) {
 			String url = null;
 			try {
-				url = urlsqueue.dequeue(); // Get a url from the queue
-				if (url.trim().length() == 0)
-					continue;
+				url = urlsqueue.dequeue(); // Get a url whose host is due from the frontier
 			} catch (InterruptedException e) {
 				e.printStackTrace();
-			}
-			if (check_if_url_seen(url)) { // If the URL has been seen before in this particular iteration of the crawler, move on to the next one
-				System.out.println("URL : " + url + " : Already Crawled Before");
 				continue;
 			}
-			URL url_href = null;
+			if (url == null) // The frontier has drained
+				break;
 			try {
-				url_href = new URL(url);
-			} catch (MalformedURLException e1) {
-				e1.printStackTrace();
-			}
-			boolean crawled_before = false;
-			long last_crawled_time = 0;
-			if (!check_robots(url)) { // Check the domain's robots.txt to see if the url can be crawled
-				System.out.println("[ROBOTS] --- Robots.txt blocked crawler --- URL : " + url);
-				continue;
-			}
-			Client client = new Client(url, "HEAD");
-			if (check_if_url_crawled(url)) { // URL has been crawled in a previous iteration
-				crawled_before = true;
-				Crawled_URLS url_crawled_db = pk_index.crawled_urls_pk.get(url);
-				last_crawled_time = url_crawled_db.getLastCrawledTime();
-				String last_crawled = getDate(last_crawled_time);
-				client.set_request_header("If-Modified-Since", last_crawled);
-			}
-			client.send_request();
-			if (client.get_response_header("location")!=null) {
-				String redirect_location = client.get_response_header("location");
-				if (redirect_location.startsWith("/")) {
-					redirect_location = url_href.getProtocol() + "://" + url_href.getHost() + redirect_location;
-				}
-				else if(redirect_location.startsWith("www")) {
-					redirect_location = url_href.getProtocol() + "://" + redirect_location;
-				}
-				else if(!redirect_location.startsWith("http")) {
-					System.out.println("[ERROR] Unknown URL protocol");
+				if (url.trim().length() == 0)
 					continue;
-				}
-				// Add the redirected link back to the queue
-				urlsqueue.enqueue(redirect_location);
-				continue;
-			}
-			if (client.get_response_header("status").equals("304") && crawled_before) {
-				System.out.println("URL : "+url+" : Not Modified");
-				// If content type is html, fetch content from db, extract urls and add them to the end of the queue
-				Crawled_URLS crawled_url = pk_index.crawled_urls_pk.get(url);
-				String old_content = crawled_url.getContent();
-				if (crawled_url.getContentType().contains("html")) {
-					// Extract links from content and add them to the end of the queue
-					ArrayList<String> hrefs = get_hrefs(old_content, url_href);
-					for (String href : hrefs) {
-						if (href.trim().length() == 0)
-							continue;
-						urlsqueue.enqueue(href);
-					}
-				}
-				else if (crawled_url.getContentType().endsWith("xml")) {
-					update_channels(url);
-				}
-				// Update the last crawled time in the database
-				crawled_url.setLastCrawledTime(new Date().getTime());
-				Transaction txn = env.beginTransaction(null, null);
-				try {
-					pk_index.crawled_urls_pk.put(crawled_url);
-					txn.commit();
-				}
-				catch(Exception e) {
-					e.printStackTrace();
-					if (txn != null) {
-						txn.abort();
-						txn = null;
-					}
-				}
-				continue;
-			}
-			if (!client.get_response_header("status").equals("200")) {
-				System.out.println("[ERROR] --- Status code is " + client.get_response_header("status") + " --- URL : "+url);
-				continue;
+				crawl(url);
 			}
-			int content_length = Integer.parseInt(client.get_response_header("content-length"));
-			String content_type = client.get_response_header("content-type");
-			// If the size of the page is greater than the maximum allowed size, we skip it
-			if (content_length > max_size) {
-				System.out.println("[ERROR] --- File size exceeds maximum size --- URL : " + url);
-				continue;
-			}
-			// If the content type of the file is neither html nor a variant of xml, we arent interested in such files
-			if (!content_type.contains("html") && !content_type.endsWith("xml")) {
-				System.out.println("[ERROR] --- Content type neither html nor a variant of xml --- URL : "+url);
-				continue;
-			}
-			System.out.println("URL : " + url + " : Downloading");
-			client = new Client(url, "GET");
-			number_of_files_crawled.increment();
-			last_crawled_time = new Date().getTime();
-			client.send_request();
-			String content = client.getBody();
-			Crawled_URLS crawled_url;
-			if (crawled_before) { // If it has been crawled before but the content has been modified
-				crawled_url = pk_index.crawled_urls_pk.get(url);
-			}
-			else { // If it is the first time we are crawling the url
-				crawled_url = new Crawled_URLS();
-				crawled_url.setURL(url);
-				crawled_url.setContentType(content_type);
-			}
-			crawled_url.setLastCrawledTime(last_crawled_time);
-			crawled_url.setContent(content);
-			Transaction txn = env.beginTransaction(null, null);
-			try {
-				pk_index.crawled_urls_pk.put(crawled_url);
-				txn.commit();
-			}
-			catch(Exception e) {
-				e.printStackTrace();
-				if (txn != null) {
-					txn.abort();
-					txn = null;
-				}
-			}
-			// Also update last crawled time of the domain
-			String domain = url_href.getHost();
-			Robots robots_file = pk_index.robots_pk.get(domain);
-			robots_file.setLastCrawledTime(last_crawled_time);
-			Transaction txn2 = env.beginTransaction(null, null);
-			try {
-				pk_index.robots_pk.put(robots_file);
-				txn2.commit();
-			}
-			catch(Exception e) {
-				e.printStackTrace();
-				if (txn2 != null) {
-					txn2.abort();
-					txn2 = null;
-				}
-			}
-			if (!crawled_before) { // If the page is seen for the first time, add the URL to the list of seen urls for this iteration of the crawler
-				URLS new_url = new URLS();
-				new_url.setURL(url);
-				Transaction txn3 = env.beginTransaction(null, null);
-				try {
-					pk_index.urls_pk.put(new_url);
-					txn3.commit();
-				}
-				catch(Exception e) {
-					e.printStackTrace();
-					if (txn3 != null) {
-						txn3.abort();
-						txn3 = null;
-					}
-				}
-			}
-			if (content_type.contains("html")) {
-				// Extract links from content and add them to the end of the queue
-				ArrayList<String> hrefs = get_hrefs(content, url_href);
-				for (String href : hrefs) {
-					if (href.trim().length() == 0)
-						continue;
-					urlsqueue.enqueue(href);
-				}
-			}
-			else {
-				// Match xml documents against all the xpaths for all channels and store them where there is a match
-				update_channels(url);
+			finally {
+				urlsqueue.release(url); // Hand the host back to the frontier so that its next url can be crawled after the crawl delay
 			}
 		}
 	}
-	
+
 	/**
-	 * Function to convert a string to a document
-	 * @param body
-	 * @return
+	 * @return true once the maximum number of files has been downloaded
 	 */
-	private Document string_to_doc(String body)
-	{
-		DocumentBuilder db = null;
-		try{
-			db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		}
-		catch(Exception e) {
-			System.out.println(e);
-		}
-		InputSource is = new InputSource();
-		is.setCharacterStream(new StringReader(body));
-		Document doc = null;
-		try{
-			doc = db.parse(is);
-		}
-		catch(Exception e) {
-			return null;
-		}
-		return doc;
+	public boolean reached_max_files() {
+		return number_of_files_crawled.count() >= max_number_of_files;
 	}
 
 	/**
-	 * Function to match an xml document with all the xpaths of all the channels and store them corresponding to channels that match
-	 * @param url containing the xml content
+	 * Function to crawl a single url taken from the frontier
+	 * @param url
 	 */
-	private void update_channels(String url) {
-		String content = "";
-		content = pk_index.crawled_urls_pk.get(url).getContent();
-		Document doc = string_to_doc(content);
-		if (doc == null) {
+	void crawl(String url) {
+		PendingFetch fetch = prepare(url);
+		if (fetch == null)
 			return;
+		fetch.getClient().send_request();
+		handle_response(fetch);
+	}
+
+	/**
+	 * Function to check a url taken from the frontier and build the request for it
+	 * @param url
+	 * @return the fetch to send, or null if the url is not to be fetched
+	 */
+	PendingFetch prepare(String url) {
+		if (check_if_url_seen(url)) { // If the URL has been seen before in this particular iteration of the crawler, move on to the next one
+			System.out.println("URL : " + url + " : Already Crawled Before");
+			return null;
 		}
-		XPathEngineImpl xpathengine = (XPathEngineImpl) XPathEngineFactory.getXPathEngine();
-		EntityCursor<Channels> channels = pk_index.channels_pk.entities();
-		ArrayList<String> matched_urls;
-		ArrayList<String> xpaths;
-		ArrayList<Channels> all_channels = new ArrayList<Channels>();
-		for (Channels channel : channels) {
-			all_channels.add(channel);
+		if (!check_robots(url)) { // Check the domain's robots.txt to see if the url can be crawled
+			System.out.println("[ROBOTS] --- Robots.txt blocked crawler --- URL : " + url);
+			return null;
 		}
-		channels.close();
-		for (Channels channel : all_channels) {
-			matched_urls = channel.getMatchedURLS();
-			xpaths = channel.getXPaths();
-			for (String xpath : xpaths) {
-				// If atleast one of the xpaths matches the document, add it to the channel
-				String[] paths = {xpath};
-				xpathengine.setXPaths(paths);
-				boolean result = xpathengine.evaluate(doc)[0];
-				if (result) {
-					if (!matched_urls.contains(url))
-						matched_urls.add(url);
-					break;
-				}
-			}
-			channel.setMatchedURLS(matched_urls);
-			Transaction txn = env.beginTransaction(null, null);
-			try {
-				pk_index.channels_pk.put(channel);
-				txn.commit();
-			}
-			catch(Exception e) {
-				e.printStackTrace();
-				if (txn != null) {
-					txn.abort();
-					txn = null;
-				}
-			}
+		// A single conditional GET. The client reads the body only if the response headers show an html or xml page within the maximum size.
+		Client client = new Client(url, "GET");
+		client.set_max_size(max_size);
+		client.set_accepted_types("html", "xml");
+		Crawled_URLS crawled_url = crawled_urls.get(url); // Not null if the URL has been crawled in a previous iteration
+		if (crawled_url != null && crawled_url.getContentHash() != null) { // Without its content, the page is fetched in full
+			String last_crawled = getDate(crawled_url.getLastCrawledTime());
+			client.set_request_header("If-Modified-Since", last_crawled);
+			if (crawled_url.getETag() != null)
+				client.set_request_header("If-None-Match", crawled_url.getETag());
 		}
+		final PendingFetch fetch = new PendingFetch(url, client, crawled_url);
+		// The links of a html page are found while it downloads, and only added to the frontier once the page is kept
+		client.set_link_extractor(new LinkExtractor(url, new LinkListener() {
+			public void link(String link) {
+				fetch.getLinks().add(link);
+			}
+		}));
+		return fetch;
 	}
 
 	/**
-	 * Function to extract the hrefs and variants from a html page
-	 * @param html
-	 * @param urlObj
-	 * @return
+	 * Function to check the response to a fetch and hand the page to the pipeline, or process it right away
+	 * if the crawler has no pipeline. Only the headers are looked at here, on the thread that fetched the page.
+	 * @param fetch whose client has received the response
 	 */
-	private ArrayList<String> get_hrefs(String html, URL url) {
-		ArrayList<String> links = new ArrayList<String>();
-		Pattern p = Pattern.compile("href=\"(.*?)\"", Pattern.CASE_INSENSITIVE);
-		Matcher m = p.matcher(html);
-		while (m.find()) {
-			String link = m.group(1);
-			// If it is a relative href link, normalize it
-			if(link.startsWith("/")) {
-				String path = url.getPath();
-				if(path.endsWith(".html") || path.endsWith(".htm"))
-					path = path.substring(0,path.lastIndexOf("/"));
-				else if(path.endsWith("/"))
-					path = path.substring(0, path.length() - 1);
-				link = url.getProtocol() +"://" + url.getHost()+ path  + link;				
-			} 
-			else if(!link.startsWith("www.") && !link.startsWith("http")) {
-				String path = url.getPath();
-				if(path.endsWith(".html") || path.endsWith(".htm"))
-					path = path.substring(0,path.lastIndexOf("/"));
-				else if(path.endsWith("/"))
-					path = path.substring(0, path.length() - 1);
-				link = url.getProtocol() +"://" + url.getHost()+ path  + "/" + link;
-			}
-			// If it is a non-absolute link
-			else if(!link.startsWith("http"))
-				link = "http://" + link; 
-			links.add(link);
-		}		   
-		return links;
+	void handle_response(PendingFetch fetch) {
+		if (!check_response(fetch))
+			return;
+		if (pipeline != null) {
+			pipeline.submit(fetch);
+			return;
+		}
+		if (!parse_response(fetch))
+			return;
+		if (fetch.getContentType().contains("html"))
+			extract_links(fetch);
+		else
+			update_channels(fetch.getURL(), fetch.getContent());
 	}
-	
+
 	/**
-	 * Function to see if the robots.txt of the domain allows us to crawl the page represented by the url
-	 * @param url
-	 * @return true if we are allowed crawl and false otherwise
+	 * Function to check the status and the headers of the response to a fetch. Redirects are added to the
+	 * frontier and downloaded pages are counted.
+	 * @param fetch whose client has received the response
+	 * @return true if the page is to be parsed, either from the body of the response or from the page store
 	 */
-	public boolean check_robots(String url) {
-		URL link = null;
-		String domain;
-		long last_crawled_time = 0;
-		long crawl_delay = 0;
-		ArrayList<String> allowed_links = new ArrayList<String>();
-		ArrayList<String> disallowed_links = new ArrayList<String>();
+	boolean check_response(PendingFetch fetch) {
+		String url = fetch.getURL();
+		Client client = fetch.getClient();
+		Crawled_URLS crawled_url = fetch.getCrawledURL();
+		boolean crawled_before = (crawled_url != null);
+		URL url_href = null;
 		try {
-			link = new URL(url);
-		} catch (MalformedURLException e) {
-			e.printStackTrace();
+			url_href = new URL(url);
+		} catch (MalformedURLException e1) {
+			e1.printStackTrace();
 		}
-		domain = link.getHost();
-		if (check_if_robots_exists(domain)) { // If the robots.txt for this particular domain has already been parsed in this iteration
-			Robots r = pk_index.robots_pk.get(domain);
-			last_crawled_time = r.getLastCrawledTime();
-			crawl_delay = r.getCrawlDelay();
-			allowed_links = r.getAllowedLinks();
-			disallowed_links = r.getDisallowedLinks();
+		if (client.get_response_header("status") == null) {
+			System.out.println("[ERROR] --- No response --- URL : " + url);
+			return false;
 		}
-		else {
-			// Send get request to domain/robots.txt, parse that and fill above values. Then create a Robots object, set above values and store in database
-			String req_url = link.getProtocol() + "://" + domain + "/robots.txt";
-			Client client = new Client(req_url, "GET");
-			client.send_request();
-			if (client.get_response_header("status").equals("200")) {
-				String[] file_lines = client.getBody().split("\n");
-				boolean ua_for_me = false; // True if 'User-agent: <mycrawler>' is present in the robots.txt file and false otherwise
-				boolean start_storing = false;
-				for (String line : file_lines) {
-					if (start_storing) {
-						if (line.contains("User-agent: cis455crawler")) {
-							allowed_links = new ArrayList<String>();
-							disallowed_links = new ArrayList<String>();
-							crawl_delay = 0;
-							continue;
-						}
-						else if (line.contains("User-agent:")) {
-							start_storing = false;
-							continue;
-						}
-						else if (line.contains("Allow:")) {
-							String rule = line.split(":",2)[1];
-							try {
-								if (rule.contains("*") || rule.contains("?") || rule.contains("$"))
-									continue;
-								allowed_links.add(URLDecoder.decode(rule, "UTF-8").trim());
-							} catch (UnsupportedEncodingException e) {
-								e.printStackTrace();
-							}
-						}
-						else if (line.contains("Disallow:")) {
-							String rule = line.split(":",2)[1];
-							try {
-								if (rule.contains("*") || rule.contains("?") || rule.contains("$"))
-									continue;
-								disallowed_links.add(URLDecoder.decode(rule, "UTF-8").trim());
-							} catch (UnsupportedEncodingException e) {
-								e.printStackTrace();
-							}
-						}
-						else if (line.contains("Crawl-delay") && start_storing) {
-							int seconds = Integer.parseInt(line.split(":",2)[1].trim());
-							crawl_delay = (long) seconds * 1000;
-						}
-					}
-					if (line.contains("User-agent: cis455crawler")) {
-						start_storing = true;
-					}
-					if (line.contains("User-agent: *") && !ua_for_me) {
-						start_storing = true;
-					}
-				}
-			}
-			else {
-				System.out.println("[ROBOTS] Robots.txt not present for : "+req_url+". Therefore adding null values.");
+		if (client.get_response_header("location")!=null) {
+			String redirect_location = client.get_response_header("location");
+			if (redirect_location.startsWith("/")) {
+				redirect_location = url_href.getProtocol() + "://" + url_href.getHost() + redirect_location;
 			}
-			Robots r = new Robots();
-			r.setAllowedLinks(allowed_links);
-			r.setDisallowedLinks(disallowed_links);
-			r.setCrawlDelay(crawl_delay);
-			r.setLastCrawledTime(0);
-			Robots new_robots = new Robots();
-			new_robots.setDomain(domain);
-			new_robots.setCrawlDelay(crawl_delay);
-			new_robots.setLastCrawledTime(last_crawled_time);
-			new_robots.setAllowedLinks(allowed_links);
-			new_robots.setDisallowedLinks(disallowed_links);
-			Transaction txn = env.beginTransaction(null, null);
-			try {
-				pk_index.robots_pk.put(new_robots);
-				txn.commit();
+			else if(redirect_location.startsWith("www")) {
+				redirect_location = url_href.getProtocol() + "://" + redirect_location;
 			}
-			catch(Exception e) {
-				e.printStackTrace();
-				if (txn != null) {
-					txn.abort();
-					txn = null;
-				}
+			else if(!redirect_location.startsWith("http")) {
+				System.out.println("[ERROR] Unknown URL protocol");
+				return false;
 			}
+			// Add the redirected link back to the queue
+			urlsqueue.enqueue(redirect_location);
+			return false;
+		}
+		if (client.get_response_header("status").equals("304") && crawled_before) {
+			System.out.println("URL : "+url+" : Not Modified");
+			fetch.setNotModified(true);
+			fetch.setContentType(crawled_url.getContentType());
+			return true;
 		}
-		long current_time = new Date().getTime();
-		if (current_time - last_crawled_time < crawl_delay) {
-			urlsqueue.enqueue(url);
+		if (!client.get_response_header("status").equals("200")) {
+			System.out.println("[ERROR] --- Status code is " + client.get_response_header("status") + " --- URL : "+url);
 			return false;
 		}
-		String query_string = url.split(domain)[1];
-		for (String allowed_link : allowed_links) {
-			if (query_string.startsWith(allowed_link)) { // If its an allowed link, return true
-				return true;
-			}
+		// If the page is larger than the maximum allowed size, or is neither html nor a variant of xml, the body was not downloaded and we skip it
+		if (client.get_abort_reason() != null) {
+			System.out.println("[ERROR] --- " + client.get_abort_reason() + " --- URL : " + url);
+			return false;
 		}
-		for (String disallowed_link : disallowed_links) {
-			if (query_string.startsWith(disallowed_link)) { // If it is a disallowed link, return false
+		System.out.println("URL : " + url + " : Downloaded");
+		number_of_files_crawled.increment();
+		if (reached_max_files()) // No more urls are handed out, and the ones in flight are finished
+			urlsqueue.stop();
+		fetch.setContentType(client.get_response_header("content-type"));
+		return true;
+	}
+
+	/**
+	 * Function to get the content of a page that has passed check_response() and store the records of the fetch.
+	 * A page that was not modified is read back from the page store; a downloaded page is decoded and stored.
+	 * @param fetch
+	 * @return true if the content of the page is set and the page is to be extracted or matched
+	 */
+	boolean parse_response(PendingFetch fetch) {
+		String url = fetch.getURL();
+		Crawled_URLS crawled_url = fetch.getCrawledURL();
+		boolean crawled_before = (crawled_url != null);
+		// A fresh record is written, so that the record the fetch was prepared with is never changed after it was read
+		Crawled_URLS record = new Crawled_URLS();
+		record.setURL(url);
+		record.setLastCrawledTime(new Date().getTime());
+		if (fetch.isNotModified()) {
+			byte[] old_content = page_store.get_bytes(crawled_url.getContentHash());
+			// Only the last crawled time changes
+			record.setContentType(crawled_url.getContentType());
+			record.setETag(crawled_url.getETag());
+			record.setContentHash(crawled_url.getContentHash());
+			record.setContentLength(crawled_url.getContentLength());
+			crawled_urls.put(record);
+			writer.put(pk_index.crawled_urls_pk, record);
+			if (old_content == null) {
+				System.out.println("[ERROR] --- Content missing from the page store --- URL : " + url);
 				return false;
 			}
+			fetch.setContentBytes(old_content);
+			return true;
+		}
+		record.setContentType(fetch.getContentType());
+		record.setETag(fetch.getClient().get_response_header("etag"));
+		// The records are handed to the writer, which commits them in batches together with those of other fetches
+		byte[] content_bytes = get_body_bytes(fetch.getClient());
+		String content_hash = PageStore.hash(content_bytes);
+		if (!page_store.contains(content_hash)) // Pages that mirror each other are stored once
+			writer.put_no_overwrite(pk_index.pages_pk, PageStore.compress(content_hash, content_bytes));
+		record.setContentHash(content_hash);
+		record.setContentLength(content_bytes.length);
+		crawled_urls.put(record);
+		writer.put(pk_index.crawled_urls_pk, record);
+		if (!crawled_before) { // If the page is seen for the first time, add the URL to the list of seen urls for this iteration of the crawler
+			URLS new_url = new URLS();
+			new_url.setURL(url);
+			writer.put(pk_index.urls_pk, new_url);
+			seen_urls.put(url);
 		}
-		// If none of the Allow or Disallow rules matched, consider it as allow 
+		fetch.setContentBytes(content_bytes);
 		return true;
 	}
 
 	/**
-	 * Function to check if the robots.txt file for the domain already exists in our database
-	 * @param domain
-	 * @return true if robots.txt for the given domain already exists and false otherwise
+	 * Function to get the body of a response as UTF-8 bytes, which is how pages are stored, extracted and matched.
+	 * A UTF-8 body is used as it was received, without decoding it.
+	 * @param client
+	 * @return
 	 */
-	public boolean check_if_robots_exists(String domain) {
-		try {
-			String dom = pk_index.robots_pk.get(domain).getDomain();
+	private byte[] get_body_bytes(Client client) {
+		BodyBuffer body = client.getBodyBytes();
+		if (body == null)
+			return new byte[0];
+		if (StandardCharsets.UTF_8.equals(client.get_charset()))
+			return body.to_byte_array();
+		return PageStore.encode(client.getBody());
+	}
+
+	/**
+	 * Function to add the links of a html page to the end of the queue. Links already admitted to the frontier
+	 * are dropped. The links were found while the page downloaded, unless it was read from the page store or was
+	 * not in UTF-8, in which case they are found now, in a single pass over the bytes of the page.
+	 * @param fetch whose content is set
+	 */
+	void extract_links(final PendingFetch fetch) {
+		if (fetch.isNotModified() || !fetch.getClient().links_extracted()) {
+			LinkExtractor extractor = new LinkExtractor(fetch.getURL(), new LinkListener() {
+				public void link(String url) {
+					fetch.getLinks().add(url);
+				}
+			});
+			byte[] content_bytes = fetch.getContentBytes();
+			extractor.feed(content_bytes, 0, content_bytes.length);
+		}
+		urlsqueue.enqueue_all(fetch.getLinks());
+	}
+
+	/**
+	 * Function to match an xml document with all the xpaths of all the channels and store a match for each channel that matches
+	 * @param url of the document
+	 * @param content of the document, which may not have been written to the database yet
+	 */
+	void update_channels(String url, String content) {
+		// Match against the current channels of the registry, without reading all the channels from the store
+		ChannelSnapshot snapshot = registry.current(pk_index);
+		if (snapshot.size() == 0)
+			return;
+		// Stream the document through the xpaths of all the channels in a single pass, without building a DOM
+		boolean[] results = get_matcher(snapshot).match(new StringReader(content));
+		for (int i=0; i<snapshot.size(); i++) {
+			boolean result = false;
+			// If atleast one of the xpaths matches the document, add it to the channel
+			for (int j=snapshot.getFirstXPath(i); j<snapshot.getEndXPath(i); j++) {
+				if (results[j])
+					result = true;
+			}
+			if (!result)
+				continue;
+			String channel_name = snapshot.getChannelName(i);
+			if (!pk_index.channels_pk.contains(channel_name)) // Deleted since the snapshot
+				continue;
+			// Append a match only if the url has not matched the channel before
+			ChannelMatch match = new ChannelMatch();
+			match.setKey(channel_name, url);
+			match.setMatchedTime(new Date().getTime());
+			writer.put_no_overwrite(pk_index.channel_matches_pk, match);
 		}
-		catch(Exception e) {
+	}
+
+	/**
+	 * Function to get a matcher for the xpaths of all the channels. The matcher is shared by all the threads
+	 * of this crawler and only built again when the registry publishes a new snapshot.
+	 * @param snapshot
+	 * @return
+	 */
+	private synchronized XPathMatcher get_matcher(ChannelSnapshot snapshot) {
+		if (matcher == null || matcher_snapshot != snapshot) {
+			List<String> xpaths = snapshot.getXPaths();
+			matcher = new XPathMatcher(xpaths.toArray(new String[xpaths.size()]));
+			matcher_snapshot = snapshot;
+		}
+		return matcher;
+	}
+
+	/**
+	 * Function to see if the robots.txt of the domain allows us to crawl the page represented by the url
+	 * @param url
+	 * @return true if we are allowed crawl and false otherwise
+	 */
+	public boolean check_robots(String url) {
+		URL link = null;
+		try {
+			link = new URL(url);
+		} catch (MalformedURLException e) {
+			e.printStackTrace();
 			return false;
 		}
-		return true;
+		// The compiled rules of the host, fetched only if they are not cached or stored, or have expired
+		RobotsRules rules = robots.get(link);
+		// The frontier spaces out the urls of the domain by its crawl delay
+		urlsqueue.set_crawl_delay(link.getHost(), rules.getCrawlDelay());
+		return rules.is_allowed(link.getFile());
 	}
 
 	/**
@@ -545,13 +433,10 @@ public class CrawlerThread implements Runnable {
 	 * @return true if URL already exists and false otherwise
 	 */
 	public boolean check_if_url_seen(String url) {
-		try {
-			String link = pk_index.urls_pk.get(url).getURL();
-		}
-		catch(Exception e) {
+		if (!seen_urls.might_contain(url)) // Most urls are answered by the filter without going to the database
 			return false;
-		}
-		return true;
+		// A url seen moments ago may still be queued in the writer rather than stored
+		return writer.is_pending(pk_index.urls_pk, url) || pk_index.urls_pk.contains(url);
 	}
 
 	/**
@@ -560,13 +445,7 @@ public class CrawlerThread implements Runnable {
 	 * @return true if URL has been crawled and false otherwise
 	 */
 	public boolean check_if_url_crawled(String url) {
-		try {
-			String link = pk_index.crawled_urls_pk.get(url).getURL();
-		}
-		catch(Exception e) {
-			return false;
-		}
-		return true;
+		return crawled_urls.contains(url);
 	}
 
 	/**
@@ -0,0 +1,167 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Cache of the addresses of the hosts the crawler fetches from, owned by the crawler instead of left to the JVM.
+ * Hosts are resolved on a small pool of resolver threads: the frontier prefetches the host of every url it admits,
+ * so that by the time a url is fetched its host is usually resolved and the fetch does not wait on DNS. The NIO
+ * fetcher does not wait at all, and starts a request once its host is resolved. An address is kept for a time to
+ * live, and a host that could not be resolved is remembered for a shorter negative time to live, so that a dead
+ * host is not looked up again for each of its urls. The resolver can be replaced by a stub for offline tests.
+ */
+public class DnsCache {
+
+	public static final int DEFAULT_CAPACITY = 100000; // Hosts remembered at most
+	public static final int DEFAULT_THREADS = 8; // Lookups running at the same time
+	public static final long DEFAULT_TTL = 5 * 60 * 1000L; // Milliseconds an address is kept
+	public static final long DEFAULT_NEGATIVE_TTL = 60 * 1000L; // Milliseconds a failed lookup is kept
+	public static final long LOOKUP_TIMEOUT = 10000; // Longest time lookup waits for a host to be resolved
+
+	// Resolves with the system resolver. The JVM cache then holds the address for less time than this cache.
+	public static final Resolver SYSTEM_RESOLVER = new Resolver() {
+		public InetAddress resolve(String host) throws UnknownHostException {
+			return InetAddress.getByName(host);
+		}
+	};
+
+	private static DnsCache shared_cache = null;
+
+	private final Resolver resolver;
+	private final long ttl;
+	private final long negative_ttl;
+	private final LinkedHashMap<String, DnsEntry> entries;
+	private final ExecutorService resolvers;
+	private long hits;
+	private long misses;
+
+	public DnsCache() {
+		this(SYSTEM_RESOLVER, DEFAULT_CAPACITY, DEFAULT_THREADS, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+	}
+
+	/**
+	 * Constructor
+	 * @param resolver looks up the hosts
+	 * @param capacity is the largest number of hosts kept
+	 * @param threads is the number of lookups running at the same time
+	 * @param ttl is the time in milliseconds an address is kept
+	 * @param negative_ttl is the time in milliseconds a host that could not be resolved is kept
+	 */
+	public DnsCache(Resolver resolver, final int capacity, int threads, long ttl, long negative_ttl) {
+		this.resolver = resolver;
+		this.ttl = ttl;
+		this.negative_ttl = negative_ttl;
+		// Access order, so that the eldest entry is the least recently used one
+		entries = new LinkedHashMap<String, DnsEntry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, DnsEntry> eldest) {
+				return size() > capacity;
+			}
+		};
+		resolvers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "DnsCache-resolver");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Function to get the cache shared by all the crawler threads
+	 * @return
+	 */
+	public static synchronized DnsCache get_shared() {
+		if (shared_cache == null)
+			shared_cache = new DnsCache();
+		return shared_cache;
+	}
+
+	/**
+	 * Function to replace the cache shared by all the crawler threads, such as with one that uses a stub resolver
+	 * or other times to live. The cache it replaces is closed.
+	 * @param cache
+	 */
+	public static synchronized void set_shared(DnsCache cache) {
+		if (shared_cache != null && shared_cache != cache)
+			shared_cache.close();
+		shared_cache = cache;
+	}
+
+	/**
+	 * Function to close the cache shared by all the crawler threads. A new one is created if it is needed again.
+	 */
+	public static synchronized void close_shared() {
+		if (shared_cache != null) {
+			shared_cache.close();
+			shared_cache = null;
+		}
+	}
+
+	/**
+	 * Function to start resolving a host in the background unless it is cached already. Does not wait.
+	 * @param host
+	 */
+	public void prefetch(String host) {
+		get_entry(host);
+	}
+
+	/**
+	 * Function to get the address of a host, waiting for it to be resolved if it is not cached
+	 * @param host
+	 * @return
+	 * @throws UnknownHostException if the host could not be resolved now or recently
+	 */
+	public InetAddress lookup(String host) throws UnknownHostException {
+		return get_entry(host).get_address(LOOKUP_TIMEOUT);
+	}
+
+	/**
+	 * Function to get the entry of a host, and start resolving the host if it is not cached or has expired
+	 * @param host
+	 * @return
+	 */
+	synchronized DnsEntry get_entry(String host) {
+		host = host.toLowerCase();
+		DnsEntry entry = entries.get(host);
+		if (entry != null && !entry.is_expired(System.currentTimeMillis())) {
+			hits++;
+			return entry;
+		}
+		misses++;
+		entry = new DnsEntry(resolver, host, ttl, negative_ttl);
+		entries.put(host, entry);
+		try {
+			resolvers.execute(entry);
+		}
+		catch (RejectedExecutionException e) { // Closed
+			entry.cancel(false);
+		}
+		return entry;
+	}
+
+	public synchronized long get_hits() {
+		return hits;
+	}
+
+	public synchronized long get_misses() {
+		return misses;
+	}
+
+	/**
+	 * Function to stop the resolver threads. Lookups still waiting to run fail.
+	 */
+	public void close() {
+		for (Runnable pending : resolvers.shutdownNow())
+			((DnsEntry) pending).cancel(false);
+	}
+
+}
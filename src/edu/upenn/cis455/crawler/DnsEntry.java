@@ -0,0 +1,115 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The address of a host in the DnsCache, resolved on a resolver thread. The entry expires after the time to live
+ * once it is resolved, or after the negative time to live if the host could not be resolved. Until then it never
+ * expires, so that a host is only looked up once at a time. Callbacks can be registered to run once it is resolved.
+ */
+class DnsEntry extends FutureTask<InetAddress> {
+
+	private final String host;
+	private final long ttl;
+	private final long negative_ttl;
+	private volatile long expires_time; // Long.MAX_VALUE while the host is being resolved
+	private volatile boolean failed;
+	private ArrayList<Runnable> callbacks; // Null once the entry is resolved
+
+	public DnsEntry(final Resolver resolver, final String host, long ttl, long negative_ttl) {
+		super(new Callable<InetAddress>() {
+			public InetAddress call() throws UnknownHostException {
+				return resolver.resolve(host);
+			}
+		});
+		this.host = host;
+		this.ttl = ttl;
+		this.negative_ttl = negative_ttl;
+		expires_time = Long.MAX_VALUE;
+		failed = false;
+		callbacks = new ArrayList<Runnable>(1);
+	}
+
+	protected void done() {
+		try {
+			failed = (get() == null);
+		}
+		catch (Exception e) {
+			failed = true;
+		}
+		expires_time = System.currentTimeMillis() + (failed ? negative_ttl : ttl);
+		ArrayList<Runnable> to_run;
+		synchronized (this) {
+			to_run = callbacks;
+			callbacks = null;
+		}
+		for (Runnable callback : to_run)
+			callback.run();
+	}
+
+	/**
+	 * Function to run a callback once the host is resolved, or right away if it is resolved already.
+	 * The callback runs on the resolver thread, so it should not block.
+	 * @param callback
+	 */
+	public void when_resolved(Runnable callback) {
+		synchronized (this) {
+			if (callbacks != null) {
+				callbacks.add(callback);
+				return;
+			}
+		}
+		callback.run();
+	}
+
+	/**
+	 * Function to get the address of the host, waiting for it to be resolved
+	 * @param timeout in milliseconds
+	 * @return
+	 * @throws UnknownHostException if the host could not be resolved in time
+	 */
+	public InetAddress get_address(long timeout) throws UnknownHostException {
+		try {
+			InetAddress address = get(timeout, TimeUnit.MILLISECONDS);
+			if (address == null)
+				throw new UnknownHostException(host);
+			return address;
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof UnknownHostException)
+				throw (UnknownHostException) e.getCause();
+			throw new UnknownHostException(host + " : " + e.getCause());
+		}
+		catch (CancellationException e) {
+			throw new UnknownHostException(host + " : lookup cancelled");
+		}
+		catch (TimeoutException e) {
+			throw new UnknownHostException(host + " : lookup timed out");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownHostException(host + " : interrupted during lookup");
+		}
+	}
+
+	public boolean is_expired(long now) {
+		return now >= expires_time;
+	}
+
+	public boolean is_failed() {
+		return failed;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+}
@@ -0,0 +1,25 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.IOException;
+
+/**
+ * Receives the outcome of a request sent through a NioFetcher. The methods are called on the
+ * selector thread of the fetcher, so they should only hand the work over to another thread.
+ */
+interface FetchListener {
+
+	/**
+	 * Function called when a response has been received
+	 * @param client is the client the request was built from
+	 * @param response holds the raw bytes of the status line, the headers and the body
+	 */
+	void fetched(Client client, BodyBuffer response);
+
+	/**
+	 * Function called when no response could be received
+	 * @param client is the client the request was built from
+	 * @param e is the cause of the failure
+	 */
+	void failed(Client client, IOException e);
+
+}
@@ -0,0 +1,81 @@
+package edu.upenn.cis455.crawler;
+
+/**
+ * A compact set of URLs, stored as 64 bit fingerprints in an open addressing table of longs.
+ * Each URL costs 8 to 16 bytes regardless of its length. Two different URLs only collide
+ * if their 64 bit hashes are equal. Access needs to be synchronized by the caller.
+ */
+class FingerprintSet {
+
+	private long[] table;
+	private int size;
+
+	public FingerprintSet(int initial_capacity) {
+		int capacity = 16;
+		while (capacity < initial_capacity * 2)
+			capacity <<= 1;
+		table = new long[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Function to add a URL to the set
+	 * @param url
+	 * @return true if the URL was not in the set before and false otherwise
+	 */
+	public boolean add(String url) {
+		long fingerprint = fingerprint(url);
+		if (!insert(table, fingerprint))
+			return false;
+		size++;
+		if (size * 2 > table.length)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Function to check if a URL is in the set
+	 * @param url
+	 * @return true if the URL is in the set and false otherwise
+	 */
+	public boolean contains(String url) {
+		long fingerprint = fingerprint(url);
+		int mask = table.length - 1;
+		for (int i = (int) fingerprint & mask; table[i] != 0; i = (i + 1) & mask) {
+			if (table[i] == fingerprint)
+				return true;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private static boolean insert(long[] slots, long fingerprint) {
+		int mask = slots.length - 1;
+		int i = (int) fingerprint & mask;
+		while (slots[i] != 0) {
+			if (slots[i] == fingerprint)
+				return false;
+			i = (i + 1) & mask;
+		}
+		slots[i] = fingerprint;
+		return true;
+	}
+
+	private void grow() {
+		long[] new_table = new long[table.length * 2];
+		for (long fingerprint : table) {
+			if (fingerprint != 0)
+				insert(new_table, fingerprint);
+		}
+		table = new_table;
+	}
+
+	private static long fingerprint(String url) {
+		long fingerprint = BloomFilter.hash64(url);
+		return (fingerprint == 0 ? 1 : fingerprint); // 0 marks an empty slot
+	}
+
+}
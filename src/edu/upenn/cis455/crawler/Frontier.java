@@ -0,0 +1,297 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * The URL frontier of the crawler. URLs first go to the on-disk queue and are then moved
+ * into one in-memory queue per host. The hosts that have URLs waiting are kept in a heap
+ * ordered by the time at which they can next be contacted, so a worker only ever gets a URL
+ * whose host is due. A host is checked out while one of its URLs is being crawled and goes
+ * back into the heap, after its crawl delay, once the worker releases it.
+ * A URL is admitted into the frontier only once per crawl: URLs that are already queued or have
+ * already been handed out are dropped at enqueue time, using an index of URL fingerprints. URLs are
+ * put in canonical form first, so the URLs handed out, and the keys they are stored under, are canonical.
+ * The host of a URL that enters a host queue is prefetched into the DNS cache, if one is set.
+ */
+public class Frontier {
+
+	private static final int MAX_BUFFERED = 10000; // URLs held in the host queues before new ones stay on disk
+	private static final int MAX_BUFFERED_HARD = 50000; // Limit on the URLs pulled from disk when no host is due
+
+	private MyQueue disk_queue; // On-disk queue of the URLs that are not yet in a host queue
+	private HashMap<String, HostQueue> host_queues;
+	private PriorityQueue<HostQueue> ready_heap; // Hosts with waiting URLs that are not checked out
+	private int buffered; // Number of URLs in the host queues
+	private int in_flight; // Number of URLs handed out by dequeue and not yet released, which is also the number of hosts checked out
+	private int processing; // Number of fetched pages whose links may still be added, after their host has been released
+	private boolean paused; // True while dequeue holds back the URLs
+	private boolean stopped; // True once the crawl is shutting down, after which dequeue hands out no more URLs
+	private FingerprintSet admitted; // Fingerprints of every URL admitted into the frontier in this crawl
+	private URLCanonicalizer canonicalizer;
+	private DnsCache dns; // Resolves the hosts of the URLs ahead of their fetch, null for none
+	private long admitted_count; // Number of URLs accepted by enqueue
+	private long dropped_count; // Number of URLs rejected by enqueue as duplicates
+
+	public Frontier(String dir) {
+		disk_queue = new MyQueue(dir);
+		host_queues = new HashMap<String, HostQueue>();
+		ready_heap = new PriorityQueue<HostQueue>();
+		buffered = 0;
+		in_flight = 0;
+		processing = 0;
+		paused = false;
+		stopped = false;
+		admitted = new FingerprintSet(1024);
+		canonicalizer = new URLCanonicalizer();
+		dns = null;
+		admitted_count = 0;
+		dropped_count = 0;
+	}
+
+	/**
+	 * Function to set how URLs are put in canonical form, such as the query parameters to drop
+	 * @param canonicalizer
+	 */
+	public synchronized void set_canonicalizer(URLCanonicalizer canonicalizer) {
+		this.canonicalizer = canonicalizer;
+	}
+
+	/**
+	 * Function to set the cache that the hosts are prefetched into as their URLs enter the host queues
+	 * @param dns
+	 */
+	public synchronized void set_dns_cache(DnsCache dns) {
+		this.dns = dns;
+	}
+
+	/**
+	 * Function to add a URL to the frontier in canonical form, unless it has already been admitted in this crawl
+	 * @param url is the URL to be inserted
+	 * @return true if the URL was accepted and false if it was dropped as a duplicate or as not a valid http URL
+	 */
+	public synchronized boolean enqueue(String url) {
+		url = canonicalizer.canonicalize(url);
+		if (url == null || !admitted.add(url)) {
+			dropped_count++;
+			return false;
+		}
+		admitted_count++;
+		if (disk_queue.isempty() && buffered < MAX_BUFFERED)
+			add_to_host(url);
+		else
+			disk_queue.enqueue(url);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Function to add a set of URLs to the frontier, such as the links extracted from a page
+	 * @param urls
+	 * @return the number of URLs accepted. The rest were dropped as duplicates.
+	 */
+	public synchronized int enqueue_all(Collection<String> urls) {
+		int accepted = 0;
+		for (String url : urls) {
+			if (enqueue(url))
+				accepted++;
+		}
+		return accepted;
+	}
+
+	/**
+	 * @return the number of URLs accepted into the frontier so far
+	 */
+	public synchronized long get_admitted_count() {
+		return admitted_count;
+	}
+
+	/**
+	 * @return the number of URLs dropped at admission as duplicates or invalid URLs so far
+	 */
+	public synchronized long get_dropped_count() {
+		return dropped_count;
+	}
+
+	/**
+	 * Function to get a URL whose host can be crawled now. Waits until such a URL is available.
+	 * The host of the URL is checked out until release() is called for the URL.
+	 * While the frontier is paused, waits until it is resumed.
+	 * @return the url, or null if the frontier has been stopped, or if it is empty and no URL is in
+	 * flight or being processed, since no more URLs can be added then
+	 * @throws InterruptedException
+	 */
+	public synchronized String dequeue() throws InterruptedException {
+		while (true) {
+			if (stopped || (in_flight == 0 && processing == 0 && isempty()))
+				return null;
+			if (paused) {
+				wait();
+				continue;
+			}
+			refill();
+			HostQueue next = ready_heap.peek();
+			if (next == null) {
+				wait();
+				continue;
+			}
+			long wait_time = next.getNextFetchTime() - System.currentTimeMillis();
+			if (wait_time > 0) {
+				wait(wait_time);
+				continue;
+			}
+			ready_heap.poll();
+			next.setCheckedOut(true);
+			in_flight++;
+			buffered--;
+			return next.poll();
+		}
+	}
+
+	/**
+	 * Function to give the host of a URL back to the frontier once the worker is done with the URL.
+	 * The next URL of the host will be handed out only after the crawl delay of the host.
+	 * @param url is the URL returned by dequeue()
+	 */
+	public synchronized void release(String url) {
+		HostQueue queue = host_queues.get(get_host(url));
+		if (queue == null || !queue.isCheckedOut())
+			return;
+		queue.setCheckedOut(false);
+		in_flight--;
+		queue.setNextFetchTime(System.currentTimeMillis() + queue.getCrawlDelay());
+		if (!queue.isempty())
+			ready_heap.add(queue);
+		notifyAll();
+	}
+
+	/**
+	 * Function to record that a fetched page is being processed and may still add links to the frontier.
+	 * Called before the URL of the page is released, so that the frontier does not drain in between.
+	 */
+	public synchronized void begin_processing() {
+		processing++;
+	}
+
+	/**
+	 * Function to record that a page passed to begin_processing() will add no more links
+	 */
+	public synchronized void end_processing() {
+		processing--;
+		notifyAll();
+	}
+
+	/**
+	 * @return the number of URLs that have been handed out and not yet released
+	 */
+	public synchronized int get_in_flight() {
+		return in_flight;
+	}
+
+	/**
+	 * Function to hold back the URLs of the frontier. The URLs in flight are still processed.
+	 */
+	public synchronized void pause() {
+		paused = true;
+	}
+
+	/**
+	 * Function to hand out URLs again after pause()
+	 */
+	public synchronized void resume() {
+		paused = false;
+		notifyAll();
+	}
+
+	public synchronized boolean is_paused() {
+		return paused;
+	}
+
+	/**
+	 * Function to stop handing out URLs, so that the workers finish the URLs in flight and then end
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		notifyAll();
+	}
+
+	/**
+	 * Function to record the crawl delay of a host, as given in its robots.txt
+	 * @param host
+	 * @param crawl_delay in milliseconds
+	 */
+	public synchronized void set_crawl_delay(String host, long crawl_delay) {
+		get_host_queue(host).setCrawlDelay(crawl_delay);
+	}
+
+	/**
+	 * Function to check if the frontier is empty
+	 * @return true if there are no URLs waiting in the host queues or on disk and false otherwise
+	 */
+	public synchronized boolean isempty() {
+		return buffered == 0 && disk_queue.isempty();
+	}
+
+	/**
+	 * Function to move URLs from the on-disk queue to the host queues. URLs are moved while the
+	 * host queues are below their limit, or while no host is due so that the workers are not idle
+	 * behind a host with a long crawl delay.
+	 */
+	private void refill() {
+		while (!disk_queue.isempty() && buffered < MAX_BUFFERED_HARD) {
+			if (buffered >= MAX_BUFFERED && has_due_host())
+				break;
+			try {
+				add_to_host(disk_queue.dequeue());
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+	}
+
+	private boolean has_due_host() {
+		HostQueue next = ready_heap.peek();
+		return next != null && next.getNextFetchTime() <= System.currentTimeMillis();
+	}
+
+	private void add_to_host(String url) {
+		String host = get_host(url);
+		if (dns != null)
+			dns.prefetch(host);
+		HostQueue queue = get_host_queue(host);
+		boolean was_empty = queue.isempty();
+		queue.add(url);
+		buffered++;
+		if (was_empty && !queue.isCheckedOut())
+			ready_heap.add(queue);
+	}
+
+	private HostQueue get_host_queue(String host) {
+		HostQueue queue = host_queues.get(host);
+		if (queue == null) {
+			queue = new HostQueue(host);
+			host_queues.put(host, queue);
+		}
+		return queue;
+	}
+
+	private String get_host(String url) {
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Function that closes the database
+	 */
+	public void closedb() {
+		disk_queue.closedb();
+	}
+
+}
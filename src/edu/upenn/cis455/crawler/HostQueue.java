@@ -0,0 +1,80 @@
+package edu.upenn.cis455.crawler;
+
+import java.util.ArrayDeque;
+
+/**
+ * The queue of URLs waiting to be crawled for a single host, along with the politeness
+ * information (crawl delay and the earliest time the host may be contacted again)
+ */
+class HostQueue implements Comparable<HostQueue> {
+
+	private String host;
+	private ArrayDeque<String> urls;
+	private long next_fetch_time; // Earliest time at which the next URL of this host can be crawled
+	private long crawl_delay; // Crawl delay of the host in milliseconds, from its robots.txt
+	private boolean checked_out; // True while a worker is crawling a URL of this host
+
+	public HostQueue(String host) {
+		this.host = host;
+		urls = new ArrayDeque<String>();
+		next_fetch_time = 0;
+		crawl_delay = 0;
+		checked_out = false;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public void add(String url) {
+		urls.addLast(url);
+	}
+
+	public String poll() {
+		return urls.pollFirst();
+	}
+
+	public boolean isempty() {
+		return urls.isEmpty();
+	}
+
+	public int size() {
+		return urls.size();
+	}
+
+	public long getNextFetchTime() {
+		return next_fetch_time;
+	}
+
+	public void setNextFetchTime(long time) {
+		next_fetch_time = time;
+	}
+
+	public long getCrawlDelay() {
+		return crawl_delay;
+	}
+
+	public void setCrawlDelay(long delay) {
+		crawl_delay = delay;
+	}
+
+	public boolean isCheckedOut() {
+		return checked_out;
+	}
+
+	public void setCheckedOut(boolean value) {
+		checked_out = value;
+	}
+
+	/**
+	 * Hosts are ordered by the time at which they can next be crawled
+	 */
+	public int compareTo(HostQueue other) {
+		if (next_fetch_time < other.next_fetch_time)
+			return -1;
+		if (next_fetch_time > other.next_fetch_time)
+			return 1;
+		return 0;
+	}
+
+}
@@ -0,0 +1,451 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Finds the links of a html page in a single pass over its bytes. The bytes can be fed in pieces of any size as
+ * they arrive, since the tokenizer keeps its state between calls, and the page is never turned into a String:
+ * only the values of the attributes that hold links are copied and decoded. The href of a, area and link tags
+ * and the src of frame and iframe tags are resolved against the url of the page, or the href of its first base
+ * tag, and handed to the listener. Comments and the contents of script and style elements are skipped.
+ * The bytes must be in a charset that is a superset of ASCII, such as UTF-8, which attribute values are decoded with.
+ */
+public class LinkExtractor {
+
+	// States of the tokenizer
+	private static final int TEXT = 0;
+	private static final int TAG_OPEN = 1; // After a '<'
+	private static final int TAG_NAME = 2;
+	private static final int END_TAG = 3; // Inside an end tag, up to its '>'
+	private static final int BEFORE_ATTRIBUTE_NAME = 4;
+	private static final int ATTRIBUTE_NAME = 5;
+	private static final int AFTER_ATTRIBUTE_NAME = 6;
+	private static final int BEFORE_ATTRIBUTE_VALUE = 7;
+	private static final int DOUBLE_QUOTED_VALUE = 8;
+	private static final int SINGLE_QUOTED_VALUE = 9;
+	private static final int UNQUOTED_VALUE = 10;
+	private static final int MARKUP_DECLARATION = 11; // After "<!"
+	private static final int COMMENT = 12;
+	private static final int BOGUS_COMMENT = 13; // A doctype, CDATA section or processing instruction, up to the next '>'
+	private static final int RAW_TEXT = 14; // Contents of a script or style element, up to its end tag
+
+	// Tags whose attributes are looked at, as indices in TAG_NAMES
+	private static final int OTHER = 0;
+	private static final int A = 1;
+	private static final int AREA = 2;
+	private static final int LINK = 3;
+	private static final int BASE = 4;
+	private static final int FRAME = 5;
+	private static final int IFRAME = 6;
+	private static final int SCRIPT = 7;
+	private static final int STYLE = 8;
+	private static final byte[][] TAG_NAMES = { null, ascii("a"), ascii("area"), ascii("link"), ascii("base"), ascii("frame"),
+			ascii("iframe"), ascii("script"), ascii("style") };
+	private static final byte[] HREF = ascii("href");
+	private static final byte[] SRC = ascii("src");
+	private static final byte[] END_SCRIPT = ascii("</script");
+	private static final byte[] END_STYLE = ascii("</style");
+
+	private static final int MAX_NAME = 8; // Longer tag and attribute names are none of the above
+	private static final int MAX_VALUE = 8192; // Links longer than this are dropped
+
+	private final LinkListener listener;
+	private URI base; // What relative links are resolved against, null if the url of the page is not valid
+	private boolean base_seen; // True once a base tag has been read, since only the first one counts
+	private int state;
+	private byte[] name; // Lower cased name of the tag or attribute being read
+	private int name_length; // Greater than MAX_NAME once the name is too long to be one of ours
+	private int tag; // Tag being read
+	private boolean link_attribute; // True if the value being read holds a link of the tag
+	private byte[] value;
+	private int value_length;
+	private int dashes; // Dashes read in a row at the start or in the middle of a comment
+	private byte[] raw_end; // End tag that ends the raw text being skipped
+	private int raw_matched; // Bytes of raw_end matched so far
+
+	/**
+	 * Constructor
+	 * @param url of the page, which relative links are resolved against
+	 * @param listener receives the links
+	 */
+	public LinkExtractor(String url, LinkListener listener) {
+		this.listener = listener;
+		base = with_path(to_uri(url));
+		base_seen = false;
+		state = TEXT;
+		name = new byte[MAX_NAME];
+		value = new byte[256];
+	}
+
+	/**
+	 * Function to tokenize the next bytes of the page
+	 * @param data
+	 * @param offset of the first byte
+	 * @param count is the number of bytes
+	 */
+	public void feed(byte[] data, int offset, int count) {
+		int end = offset + count;
+		for (int i=offset; i<end; i++)
+			step(data[i] & 0xff);
+	}
+
+	private void step(int b) {
+		switch (state) {
+		case TEXT:
+			if (b == '<')
+				state = TAG_OPEN;
+			break;
+		case TAG_OPEN:
+			if (is_letter(b)) {
+				name_length = 0;
+				append_name(b);
+				state = TAG_NAME;
+			}
+			else if (b == '/')
+				state = END_TAG;
+			else if (b == '!') {
+				dashes = 0;
+				state = MARKUP_DECLARATION;
+			}
+			else if (b == '?')
+				state = BOGUS_COMMENT;
+			else if (b != '<')
+				state = TEXT;
+			break;
+		case TAG_NAME:
+			if (is_space(b) || b == '/') {
+				tag = lookup_tag();
+				state = BEFORE_ATTRIBUTE_NAME;
+			}
+			else if (b == '>') {
+				tag = lookup_tag();
+				end_start_tag();
+			}
+			else
+				append_name(b);
+			break;
+		case END_TAG:
+		case BOGUS_COMMENT:
+			if (b == '>')
+				state = TEXT;
+			break;
+		case BEFORE_ATTRIBUTE_NAME:
+			if (b == '>')
+				end_start_tag();
+			else if (!is_space(b) && b != '/')
+				start_attribute_name(b);
+			break;
+		case ATTRIBUTE_NAME:
+			if (is_space(b))
+				state = AFTER_ATTRIBUTE_NAME;
+			else if (b == '/')
+				state = BEFORE_ATTRIBUTE_NAME;
+			else if (b == '=')
+				start_attribute_value();
+			else if (b == '>')
+				end_start_tag();
+			else
+				append_name(b);
+			break;
+		case AFTER_ATTRIBUTE_NAME:
+			if (b == '=')
+				start_attribute_value();
+			else if (b == '>')
+				end_start_tag();
+			else if (b == '/')
+				state = BEFORE_ATTRIBUTE_NAME;
+			else if (!is_space(b))
+				start_attribute_name(b);
+			break;
+		case BEFORE_ATTRIBUTE_VALUE:
+			if (b == '"')
+				state = DOUBLE_QUOTED_VALUE;
+			else if (b == '\'')
+				state = SINGLE_QUOTED_VALUE;
+			else if (b == '>')
+				end_start_tag();
+			else if (!is_space(b)) {
+				append_value(b);
+				state = UNQUOTED_VALUE;
+			}
+			break;
+		case DOUBLE_QUOTED_VALUE:
+			if (b == '"')
+				end_attribute_value();
+			else
+				append_value(b);
+			break;
+		case SINGLE_QUOTED_VALUE:
+			if (b == '\'')
+				end_attribute_value();
+			else
+				append_value(b);
+			break;
+		case UNQUOTED_VALUE:
+			if (is_space(b))
+				end_attribute_value();
+			else if (b == '>') {
+				end_attribute_value();
+				end_start_tag();
+			}
+			else
+				append_value(b);
+			break;
+		case MARKUP_DECLARATION:
+			if (b == '-') {
+				if (++dashes == 2) {
+					dashes = 0;
+					state = COMMENT;
+				}
+			}
+			else
+				state = (b == '>' ? TEXT : BOGUS_COMMENT);
+			break;
+		case COMMENT:
+			if (b == '-')
+				dashes++;
+			else if (b == '>' && dashes >= 2)
+				state = TEXT;
+			else
+				dashes = 0;
+			break;
+		case RAW_TEXT:
+			if (to_lower(b) == raw_end[raw_matched]) {
+				if (++raw_matched == raw_end.length)
+					state = END_TAG;
+			}
+			else
+				raw_matched = (b == '<' ? 1 : 0);
+			break;
+		}
+	}
+
+	private void start_attribute_name(int b) {
+		name_length = 0;
+		append_name(b);
+		state = ATTRIBUTE_NAME;
+	}
+
+	private void start_attribute_value() {
+		link_attribute = is_link_attribute();
+		value_length = 0;
+		state = BEFORE_ATTRIBUTE_VALUE;
+	}
+
+	private void end_start_tag() {
+		if (tag == SCRIPT || tag == STYLE) {
+			raw_end = (tag == SCRIPT ? END_SCRIPT : END_STYLE);
+			raw_matched = 0;
+			state = RAW_TEXT;
+		}
+		else
+			state = TEXT;
+	}
+
+	private void append_name(int b) {
+		if (name_length < MAX_NAME)
+			name[name_length] = (byte) to_lower(b);
+		if (name_length <= MAX_NAME)
+			name_length++;
+	}
+
+	private void append_value(int b) {
+		if (!link_attribute)
+			return;
+		if (value_length == MAX_VALUE) { // Too long to be a link worth following
+			link_attribute = false;
+			return;
+		}
+		if (value_length == value.length) {
+			byte[] new_value = new byte[Math.min(value.length * 2, MAX_VALUE)];
+			System.arraycopy(value, 0, new_value, 0, value_length);
+			value = new_value;
+		}
+		value[value_length++] = (byte) b;
+	}
+
+	/**
+	 * Function to handle the value of an attribute once it has been read in full
+	 */
+	private void end_attribute_value() {
+		state = BEFORE_ATTRIBUTE_NAME;
+		if (!link_attribute)
+			return;
+		link_attribute = false;
+		URI link = resolve(new String(value, 0, value_length, StandardCharsets.UTF_8));
+		if (tag == BASE) {
+			if (!base_seen && link != null)
+				base = with_path(link);
+			base_seen = true;
+			return;
+		}
+		if (link == null)
+			return;
+		String scheme = link.getScheme();
+		if (link.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)))
+			return;
+		String url = link.toString();
+		int fragment = url.indexOf('#');
+		listener.link(fragment < 0 ? url : url.substring(0, fragment));
+	}
+
+	private int lookup_tag() {
+		if (name_length > MAX_NAME)
+			return OTHER;
+		for (int i=1; i<TAG_NAMES.length; i++) {
+			if (name_is(TAG_NAMES[i]))
+				return i;
+		}
+		return OTHER;
+	}
+
+	private boolean is_link_attribute() {
+		switch (tag) {
+		case A:
+		case AREA:
+		case LINK:
+		case BASE:
+			return name_is(HREF);
+		case FRAME:
+		case IFRAME:
+			return name_is(SRC);
+		default:
+			return false;
+		}
+	}
+
+	private boolean name_is(byte[] expected) {
+		if (name_length != expected.length)
+			return false;
+		for (int i=0; i<name_length; i++) {
+			if (name[i] != expected[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Function to resolve the value of a link attribute against the base of the page
+	 * @param value as written in the page
+	 * @return the absolute uri, or null if the value is empty, only a fragment or not a valid uri
+	 */
+	private URI resolve(String value) {
+		String ref = unescape(value).trim();
+		if (ref.length() == 0 || ref.charAt(0) == '#') // The page itself
+			return null;
+		URI uri = to_uri(ref);
+		if (uri == null)
+			return null;
+		if (uri.isAbsolute())
+			return uri.normalize();
+		if (base == null)
+			return null;
+		if (ref.charAt(0) == '?') { // URI.resolve() would drop the last segment of the path of the base
+			String base_str = base.toString();
+			int end = base_str.length();
+			if (base_str.indexOf('?') >= 0)
+				end = base_str.indexOf('?');
+			else if (base_str.indexOf('#') >= 0)
+				end = base_str.indexOf('#');
+			return to_uri(base_str.substring(0, end) + uri.toString());
+		}
+		return base.resolve(uri);
+	}
+
+	/**
+	 * @param uri
+	 * @return the uri, with a path of "/" if it has an authority and no path, since URI.resolve() mishandles an empty path
+	 */
+	private static URI with_path(URI uri) {
+		if (uri == null || uri.getRawAuthority() == null || (uri.getRawPath() != null && uri.getRawPath().length() > 0))
+			return uri;
+		return uri.resolve("/");
+	}
+
+	/**
+	 * Function to parse a uri as found in a page, escaping the characters that a uri may not contain
+	 * @param str
+	 * @return the uri, or null if it is not valid even once escaped
+	 */
+	static URI to_uri(String str) {
+		try {
+			return new URI(URLCanonicalizer.escape(str));
+		}
+		catch (URISyntaxException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Function to replace the character references that can appear in a link, such as &amp;amp; in a query
+	 * @param str
+	 * @return
+	 */
+	static String unescape(String str) {
+		int amp = str.indexOf('&');
+		if (amp < 0)
+			return str;
+		StringBuilder unescaped = new StringBuilder(str.length());
+		unescaped.append(str, 0, amp);
+		int i = amp;
+		while (i < str.length()) {
+			char c = str.charAt(i);
+			int semicolon = (c == '&' ? str.indexOf(';', i) : -1);
+			if (semicolon < 0 || semicolon - i > 10) {
+				unescaped.append(c);
+				i++;
+				continue;
+			}
+			String reference = str.substring(i + 1, semicolon);
+			int code = -1;
+			if (reference.equals("amp"))
+				code = '&';
+			else if (reference.equals("lt"))
+				code = '<';
+			else if (reference.equals("gt"))
+				code = '>';
+			else if (reference.equals("quot"))
+				code = '"';
+			else if (reference.equals("apos"))
+				code = '\'';
+			else if (reference.startsWith("#")) {
+				try {
+					if (reference.startsWith("#x") || reference.startsWith("#X"))
+						code = Integer.parseInt(reference.substring(2), 16);
+					else
+						code = Integer.parseInt(reference.substring(1));
+				}
+				catch (NumberFormatException e) {
+					code = -1;
+				}
+			}
+			if (code < 0 || !Character.isValidCodePoint(code)) {
+				unescaped.append(c);
+				i++;
+				continue;
+			}
+			unescaped.appendCodePoint(code);
+			i = semicolon + 1;
+		}
+		return unescaped.toString();
+	}
+
+	private static boolean is_space(int b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+	private static boolean is_letter(int b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+	}
+
+	private static int to_lower(int b) {
+		return (b >= 'A' && b <= 'Z' ? b + 32 : b);
+	}
+
+	private static byte[] ascii(String str) {
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+
+}
@@ -0,0 +1,14 @@
+package edu.upenn.cis455.crawler;
+
+/**
+ * Receives the links found by a LinkExtractor, in the order they appear in the page
+ */
+public interface LinkListener {
+
+	/**
+	 * Function called for each link found
+	 * @param url is the absolute http or https url of the link, without its fragment
+	 */
+	void link(String url);
+
+}
@@ -1,31 +1,47 @@
 package edu.upenn.cis455.crawler;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import com.sleepycat.je.CursorConfig;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.Transaction;
+import com.sleepycat.persist.EntityCursor;
 import edu.upenn.cis455.storage.DBWrapper;
 import edu.upenn.cis455.storage.Indices;
 import edu.upenn.cis455.storage.URLQueue;
 
 public class MyQueue {
 
-	private int start_pointer; // Hypothetical front end of the queue
-	private int end_pointer; // Hypothetical rear end of the queue
+	private static final int HEAD_CAPACITY = 1000; // Number of URLs read from disk in one batch
+	private static final int TAIL_CAPACITY = 1000; // Number of URLs written to disk in one batch
+	private static final long RETRY_DELAY = 100; // Milliseconds before a batch that could not be read is read again
+
+	private int start_pointer; // Index of the first URL on disk
+	private int end_pointer; // Index at which the next URL is written to disk
+	private ArrayDeque<String> head; // URLs at the front of the queue, in memory
+	private ArrayList<String> tail; // URLs at the rear of the queue that are not yet written to disk
 	private DBWrapper wrapper;
 	private String directory;
 	private Indices pk_index;
 	private Environment env;
 
 	/**
-	 * This class is an implementation of an On-Disk Queue
+	 * This class is an implementation of an On-Disk Queue. The front and the rear of the queue
+	 * are buffered in memory, and URLs are written to and read from the URLQueue store in batches,
+	 * with one transaction per batch. Records are deleted from the store once they are read back.
+	 * The queue lasts for one crawl: the records a previous crawl left in the store are deleted when it is opened.
 	 * @param dir
 	 */
 	public MyQueue(String dir) {
 		start_pointer = 0;
 		end_pointer = 0;
+		head = new ArrayDeque<String>();
+		tail = new ArrayList<String>();
 		directory = dir;
 		opendb();
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		env = wrapper.getEnvironment();
+		clear_store();
 	}
 
 	/**
@@ -33,17 +49,63 @@ public class MyQueue {
 	 * @param url is the URL to be inserted
 	 */
 	public synchronized void enqueue(String url) {
-		if (start_pointer == 0) 
-			start_pointer++;
-		end_pointer++;
-		// Add at index 'end_pointer' of the queue
-		URLQueue url_queue = new URLQueue();
-		url_queue.setIndex(end_pointer);
-		url_queue.setURL(url);
+		if (start_pointer == end_pointer && tail.isEmpty() && head.size() < HEAD_CAPACITY) {
+			head.addLast(url); // Nothing is queued behind the head, so the url can skip the disk
+		}
+		else {
+			tail.add(url);
+			if (tail.size() >= TAIL_CAPACITY)
+				write_tail();
+		}
+		notify();
+	}
+
+	/**
+	 * Function to get the url at the front of the queue
+	 * @return the url
+	 * @throws InterruptedException
+	 */
+	public synchronized String dequeue() throws InterruptedException {
+		while (isempty()) // If the queue is empty, wait on the queue
+			wait();
+		while (head.isEmpty()) {
+			if (start_pointer < end_pointer) {
+				if (!read_head()) // The batch is still on disk, so read it again after a while
+					wait(RETRY_DELAY);
+			}
+			else { // Nothing on disk, so the rear of the queue becomes the front
+				head.addAll(tail);
+				tail.clear();
+			}
+		}
+		notify();
+		return head.pollFirst();
+	}
+
+	/**
+	 * Function to check if the URL queue is empty
+	 * @return true of the queue is empty and false otherwise
+	 */
+	public synchronized boolean isempty() {
+		return head.isEmpty() && tail.isEmpty() && start_pointer == end_pointer;
+	}
+
+	/**
+	 * Function to write the buffered rear of the queue to disk in a single transaction
+	 */
+	private void write_tail() {
 		Transaction txn = env.beginTransaction(null, null);
 		try {
-			pk_index.urlqueue_pk.put(url_queue);
+			int index = end_pointer;
+			for (String url : tail) {
+				URLQueue url_queue = new URLQueue();
+				url_queue.setIndex(index++);
+				url_queue.setURL(url);
+				pk_index.urlqueue_pk.putNoReturn(txn, url_queue);
+			}
 			txn.commit();
+			end_pointer = index;
+			tail.clear();
 		}
 		catch(Exception e) {
 			System.out.println("Transaction failed");
@@ -52,45 +114,69 @@ public class MyQueue {
 				txn = null;
 			}
 		}
-		notify();
 	}
 
 	/**
-	 * Function to get the url at the front of the queue
-	 * @return the url
-	 * @throws InterruptedException 
+	 * Function to read the next batch of URLs from disk into the front of the queue. The records
+	 * are deleted in the same transaction so that the space is reclaimed. If the transaction fails,
+	 * the URLs read so far are kept and the queue moves past them, leaving their records to be
+	 * deleted when the queue is next opened, and the rest of the batch is read by the next call.
+	 * @return false if no URL could be read
 	 */
-	public synchronized String dequeue() throws InterruptedException {
-		String ret_url = "";
-		if (isempty()) // If the queue is empty, wait on the queue
-			wait();
-		// Remove the one at index 'start_pointer'
-		Integer pk = new Integer(start_pointer);
+	private boolean read_head() {
+		int last = Math.min(start_pointer + HEAD_CAPACITY, end_pointer) - 1;
+		int next = start_pointer; // Index after the last URL added to the head
 		Transaction txn = env.beginTransaction(null, null);
+		EntityCursor<URLQueue> cursor = null;
 		try {
-			ret_url = pk_index.urlqueue_pk.get(pk).getURL();
+			cursor = pk_index.urlqueue_pk.entities(txn, start_pointer, true, last, true, CursorConfig.DEFAULT);
+			for (URLQueue url_queue : cursor) {
+				head.addLast(url_queue.getURL());
+				next = url_queue.getIndex() + 1;
+				cursor.delete();
+			}
+			cursor.close();
+			cursor = null;
 			txn.commit();
+			start_pointer = last + 1;
+			return true;
 		}
 		catch(Exception e) {
 			System.out.println("Transaction failed");
+			if (cursor != null)
+				cursor.close();
 			if (txn != null) {
 				txn.abort();
 				txn = null;
 			}
+			start_pointer = next;
+			return !head.isEmpty();
 		}
-		notify();
-		start_pointer++;
-		return ret_url;
 	}
 
 	/**
-	 * Function to check if the URL queue is empty
-	 * @return true of the queue is empty and false otherwise
+	 * Function to delete the records left in the store by a previous crawl
 	 */
-	public synchronized boolean isempty() {
-		if (start_pointer > end_pointer)
-			return true;
-		return false;
+	private void clear_store() {
+		Transaction txn = env.beginTransaction(null, null);
+		EntityCursor<URLQueue> cursor = null;
+		try {
+			cursor = pk_index.urlqueue_pk.entities(txn, CursorConfig.DEFAULT);
+			while (cursor.next() != null)
+				cursor.delete();
+			cursor.close();
+			cursor = null;
+			txn.commit();
+		}
+		catch(Exception e) {
+			System.out.println("Transaction failed");
+			if (cursor != null)
+				cursor.close();
+			if (txn != null) {
+				txn.abort();
+				txn = null;
+			}
+		}
 	}
 
 	/**
@@ -102,10 +188,10 @@ public class MyQueue {
 	}
 
 	/**
-	 * Function that closes the database
+	 * Function that closes the database. The URLs still queued are not kept, since the next crawl starts afresh.
 	 */
-	public void closedb() {
+	public synchronized void closedb() {
 		wrapper.shutdown();
 	}
-	
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,134 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Crawls with a NioFetcher instead of a thread per request. A single dispatcher takes the URLs
+ * from the frontier and a small pool of workers does the CPU work around each fetch: the seen
+ * and robots checks before the request, and the checks of the response once the selector thread
+ * has received it, after which the page goes on to the pipeline. No worker waits on a page download, so
+ * the number of requests in flight is only bounded by the number of hosts that are due.
+ */
+class NioCrawler implements Runnable {
+
+	private Frontier urlsqueue;
+	private CrawlerThread crawler;
+	private NioFetcher fetcher;
+	private ExecutorService workers;
+	private int pending; // URLs taken from the frontier and not yet released
+
+	/**
+	 * Constructor
+	 * @param queue is the frontier
+	 * @param crawler does the checks before a fetch and the processing of the response
+	 * @param worker_count is the number of threads that check the urls and the responses
+	 * @throws IOException if the fetcher could not be started
+	 */
+	public NioCrawler(Frontier queue, CrawlerThread crawler, int worker_count) throws IOException {
+		urlsqueue = queue;
+		this.crawler = crawler;
+		fetcher = new NioFetcher();
+		workers = Executors.newFixedThreadPool(worker_count);
+		pending = 0;
+	}
+
+	public void run() {
+		while (!crawler.reached_max_files()) {
+			final String url;
+			try {
+				url = urlsqueue.dequeue();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				break;
+			}
+			if (url == null) // The frontier has drained
+				break;
+			synchronized (this) {
+				pending++;
+			}
+			workers.execute(new Runnable() {
+				public void run() {
+					dispatch(url);
+				}
+			});
+		}
+		await_pending();
+		workers.shutdown();
+		fetcher.close();
+	}
+
+	/**
+	 * Function to run the checks for a url and hand its request to the fetcher
+	 * @param url
+	 */
+	private void dispatch(String url) {
+		boolean submitted = false;
+		try {
+			if (url.trim().length() == 0)
+				return;
+			final PendingFetch fetch = crawler.prepare(url);
+			if (fetch == null)
+				return;
+			if (fetch.getClient().is_https()) { // The fetcher only speaks plain http
+				fetch.getClient().send_request();
+				crawler.handle_response(fetch);
+				return;
+			}
+			fetcher.submit(fetch.getClient(), new FetchListener() {
+				public void fetched(Client client, final BodyBuffer response) {
+					workers.execute(new Runnable() {
+						public void run() {
+							try {
+								// Parsed on the worker, which then processes the response using its own body buffer
+								fetch.getClient().receive(response);
+								crawler.handle_response(fetch);
+							}
+							finally {
+								done(fetch.getURL());
+							}
+						}
+					});
+				}
+
+				public void failed(Client client, IOException e) {
+					System.out.println("[ERROR] --- " + e + " --- URL : " + fetch.getURL());
+					done(fetch.getURL());
+				}
+			});
+			submitted = true;
+		}
+		catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		finally {
+			if (!submitted)
+				done(url);
+		}
+	}
+
+	/**
+	 * Function to release the host of a url once the url has been processed
+	 * @param url
+	 */
+	private void done(String url) {
+		urlsqueue.release(url);
+		synchronized (this) {
+			pending--;
+			notifyAll();
+		}
+	}
+
+	private synchronized void await_pending() {
+		while (pending > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+	}
+
+}
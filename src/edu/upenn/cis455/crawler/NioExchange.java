@@ -0,0 +1,270 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * A request in flight on a NioFetcher. The response bytes are collected as they arrive, and
+ * the framing of the response (Content-Length, chunked or end of connection) is followed
+ * incrementally so that the fetcher knows when the response is complete without blocking.
+ * The response is only parsed for good by the Client, on a worker thread.
+ */
+class NioExchange {
+
+	private Client client;
+	private FetchListener listener;
+	private InetSocketAddress address; // Null until the host is resolved
+	private String key; // host:port the request goes to
+	private SocketChannel channel;
+	private ByteBuffer request;
+	private BodyBuffer received;
+	private boolean reused; // True if the request was sent over a connection that had carried an earlier request
+	private int attempts;
+	private long deadline; // Time by which the next bytes have to arrive
+	private HashMap<String, String> head; // Status and headers, once the whole head has arrived
+	private int body_start; // Offset of the body in the received bytes
+	private int scan_pos; // Offset from which to look for the end of the head
+	private long content_length;
+	private boolean chunked;
+	private int chunk_pos; // Offset of the next chunk size line, or of the next trailer line
+	private boolean in_trailer;
+	private long decoded_length; // Sum of the sizes of the chunks seen so far
+	private boolean reusable;
+
+	public NioExchange(Client client, FetchListener listener, int initial_capacity) {
+		this.client = client;
+		this.listener = listener;
+		address = null;
+		key = client.getHost() + ":" + client.getPort();
+		request = ByteBuffer.wrap(client.build_request());
+		received = new BodyBuffer(initial_capacity);
+		attempts = 0;
+		reset();
+	}
+
+	/**
+	 * Function to forget everything received, so that the request can be sent again on a new connection
+	 */
+	public void reset() {
+		channel = null;
+		reused = false;
+		request.rewind();
+		received.reset();
+		head = null;
+		body_start = -1;
+		scan_pos = 0;
+		content_length = -1;
+		chunked = false;
+		chunk_pos = 0;
+		in_trailer = false;
+		decoded_length = 0;
+		reusable = false;
+	}
+
+	public Client getClient() {
+		return client;
+	}
+
+	public FetchListener getListener() {
+		return listener;
+	}
+
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	public void setAddress(InetSocketAddress address) {
+		this.address = address;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	public void setChannel(SocketChannel channel, boolean reused) {
+		this.channel = channel;
+		this.reused = reused;
+		attempts++;
+	}
+
+	public ByteBuffer getRequest() {
+		return request;
+	}
+
+	public BodyBuffer getReceived() {
+		return received;
+	}
+
+	public boolean isReused() {
+		return reused;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @return true if the whole response was received as given by its framing and the server did not ask to close the connection
+	 */
+	public boolean isReusable() {
+		return reusable;
+	}
+
+	/**
+	 * Function to check if the response is complete, after more bytes have arrived or the connection was closed.
+	 * A response is also complete as soon as its headers show that the body will not be downloaded.
+	 * @param eof is true if the server closed the connection
+	 * @return
+	 */
+	public boolean is_complete(boolean eof) {
+		if (head == null) {
+			int end = find_head_end();
+			if (end < 0)
+				return eof || received.length() > ResponseReader.MAX_HEAD_SIZE; // The client reports a head that is too large
+			if (!parse_head(end))
+				return true;
+			int status = Integer.parseInt(head.get("status"));
+			if (!ResponseReader.has_body(client.getMethod(), status))
+				return finished();
+			if (status == 200 && !client.check_headers(head)) // Body is not wanted, so the connection is dropped
+				return true;
+			String transfer_encoding = head.get("transfer-encoding");
+			chunked = transfer_encoding != null && transfer_encoding.toLowerCase().contains("chunked");
+			if (!chunked && head.get("content-length") != null) {
+				try {
+					content_length = Long.parseLong(head.get("content-length"));
+				}
+				catch (NumberFormatException e) {
+					content_length = -1;
+				}
+				if (content_length > client.getMaxSize())
+					return true;
+			}
+			chunk_pos = body_start;
+		}
+		if (chunked)
+			return chunks_complete(eof);
+		long body_length = received.length() - body_start;
+		if (content_length >= 0) {
+			if (body_length >= content_length)
+				return finished();
+			return eof;
+		}
+		// The body ends with the connection
+		return eof || body_length > client.getMaxSize();
+	}
+
+	private boolean finished() {
+		reusable = !"close".equalsIgnoreCase(head.get("connection"));
+		return true;
+	}
+
+	/**
+	 * Function to follow the chunks that have arrived so far
+	 * @param eof
+	 * @return
+	 */
+	private boolean chunks_complete(boolean eof) {
+		byte[] data = received.array();
+		if ((long) received.length() - body_start > (long) client.getMaxSize() + ResponseReader.MAX_HEAD_SIZE) // Framing or trailers without end
+			return true;
+		while (true) {
+			if (chunk_pos > received.length()) // Waiting for the rest of the chunk data
+				return eof;
+			int line_end = find_line_end(chunk_pos);
+			if (line_end < 0)
+				return eof;
+			if (in_trailer) {
+				boolean empty = line_end == chunk_pos || (line_end == chunk_pos + 1 && data[chunk_pos] == '\r');
+				chunk_pos = line_end + 1;
+				if (empty)
+					return finished();
+				continue;
+			}
+			String size_line = new String(data, chunk_pos, line_end - chunk_pos, StandardCharsets.ISO_8859_1);
+			int extension = size_line.indexOf(';');
+			if (extension >= 0)
+				size_line = size_line.substring(0, extension);
+			long size;
+			try {
+				size = Long.parseLong(size_line.trim(), 16);
+			}
+			catch (NumberFormatException e) {
+				return true; // The client reports the malformed chunk
+			}
+			if (size < 0)
+				return true;
+			if (size == 0) {
+				in_trailer = true;
+				chunk_pos = line_end + 1;
+				continue;
+			}
+			decoded_length += size;
+			if (decoded_length > client.getMaxSize())
+				return true;
+			long next = line_end + 1 + size + 2; // Chunk data and its CRLF
+			if (next > Integer.MAX_VALUE)
+				return true;
+			chunk_pos = (int) next;
+		}
+	}
+
+	private boolean parse_head(int end) {
+		head = new HashMap<String, String>();
+		body_start = end;
+		try {
+			return new ResponseReader(new ByteArrayInputStream(received.array(), 0, end)).read_head(head)
+					&& head.get("status").matches("\\d+");
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Function to find the blank line that ends the head
+	 * @return the offset of the body, or -1 if the head has not fully arrived
+	 */
+	private int find_head_end() {
+		byte[] data = received.array();
+		int length = received.length();
+		for (int i = scan_pos; i < length; i++) {
+			if (data[i] != '\n')
+				continue;
+			if (i + 1 < length && data[i + 1] == '\n')
+				return i + 2;
+			if (i + 2 < length && data[i + 1] == '\r' && data[i + 2] == '\n')
+				return i + 3;
+		}
+		scan_pos = Math.max(0, length - 2);
+		return -1;
+	}
+
+	private int find_line_end(int from) {
+		byte[] data = received.array();
+		int length = received.length();
+		for (int i = from; i < length; i++) {
+			if (data[i] == '\n')
+				return i;
+		}
+		return -1;
+	}
+
+}
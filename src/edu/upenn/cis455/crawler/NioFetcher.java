@@ -0,0 +1,368 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A fetcher that sends HTTP requests over non-blocking socket channels. A single selector thread
+ * drives all the requests in flight, so thousands of slow responses can be waited for without a
+ * thread each. Completed responses are handed to a FetchListener as raw bytes, and are parsed by
+ * the Client on whichever thread the listener passes them to.
+ * Connections are kept alive per host:port and reused for the next request to the same server,
+ * as long as the response was complete and the server did not ask to close the connection.
+ * Hosts are resolved through the shared DnsCache, and a request is only handed to the selector
+ * thread once its host is resolved, so neither the caller nor the selector thread waits on DNS.
+ * Https requests are not supported and should be sent with Client.send_request.
+ */
+public class NioFetcher implements Runnable {
+
+	private static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+	private static final int MAX_IDLE_PER_HOST = 2;
+	private static final long IDLE_TIMEOUT = 15000;
+	private static final long READ_TIMEOUT = 10000; // Longest time to wait for the connection or for more bytes
+	private static final int INITIAL_RESPONSE_CAPACITY = 4 * 1024;
+
+	private Selector selector;
+	private Thread selector_thread;
+	private volatile boolean running;
+	private Semaphore in_flight; // Permits for the requests that are submitted and not yet completed
+	private ConcurrentLinkedQueue<NioExchange> submitted; // Requests waiting for the selector thread to start them
+	private HashMap<String, ArrayDeque<SelectionKey>> idle; // Idle connections per host:port, touched by the selector thread only
+	private ByteBuffer read_buffer;
+
+	public NioFetcher() throws IOException {
+		this(DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Constructor. Starts the selector thread.
+	 * @param max_in_flight is the maximum number of requests in flight. submit waits when it is reached.
+	 * @throws IOException if the selector could not be opened
+	 */
+	public NioFetcher(int max_in_flight) throws IOException {
+		selector = Selector.open();
+		in_flight = new Semaphore(max_in_flight);
+		submitted = new ConcurrentLinkedQueue<NioExchange>();
+		idle = new HashMap<String, ArrayDeque<SelectionKey>>();
+		read_buffer = ByteBuffer.allocate(64 * 1024);
+		running = true;
+		selector_thread = new Thread(this, "NioFetcher-selector");
+		selector_thread.setDaemon(true);
+		selector_thread.start();
+	}
+
+	/**
+	 * Function to send the request built by a client. Returns as soon as the request is queued.
+	 * The listener is called on the selector thread once the response is complete or has failed.
+	 * @param client holds the url, the headers and the limits of the request
+	 * @param listener
+	 * @throws InterruptedException if interrupted while waiting for a free slot
+	 */
+	public void submit(Client client, FetchListener listener) throws InterruptedException {
+		in_flight.acquire();
+		if (!running) {
+			in_flight.release();
+			listener.failed(client, new IOException("Fetcher is closed"));
+			return;
+		}
+		final NioExchange exchange = new NioExchange(client, listener, INITIAL_RESPONSE_CAPACITY);
+		final DnsEntry entry = DnsCache.get_shared().get_entry(client.getHost());
+		entry.when_resolved(new Runnable() { // Right away if the host is cached, and on the resolver thread otherwise
+			public void run() {
+				queue(exchange, entry);
+			}
+		});
+	}
+
+	/**
+	 * Function to hand a request to the selector thread once its host is resolved
+	 * @param exchange
+	 * @param entry holds the address of the host, or no address if the host could not be resolved
+	 */
+	private void queue(NioExchange exchange, DnsEntry entry) {
+		try {
+			exchange.setAddress(new InetSocketAddress(entry.get_address(0), exchange.getClient().getPort()));
+		}
+		catch (UnknownHostException e) {
+			exchange.setAddress(null); // Fails once the selector thread starts it, unless a connection to the host is idle
+		}
+		submitted.add(exchange);
+		if (!running && submitted.remove(exchange)) { // Closed before the selector thread could see it
+			in_flight.release();
+			exchange.getListener().failed(exchange.getClient(), new IOException("Fetcher is closed"));
+			return;
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * Function to stop the selector thread. The requests still in flight fail.
+	 */
+	public void close() {
+		running = false;
+		selector.wakeup();
+		try {
+			selector_thread.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void run() {
+		long last_sweep = System.currentTimeMillis();
+		try {
+			while (running) {
+				selector.select(1000);
+				NioExchange exchange;
+				while ((exchange = submitted.poll()) != null)
+					start(exchange, true);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.attachment() instanceof NioExchange)
+						process((NioExchange) key.attachment(), key);
+					else
+						close_idle(key);
+				}
+				long now = System.currentTimeMillis();
+				if (now - last_sweep >= 1000) {
+					sweep(now);
+					last_sweep = now;
+				}
+			}
+		}
+		catch (IOException | ClosedSelectorException e) {
+			e.printStackTrace();
+		}
+		finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Function to send a request on an idle connection to its host, or on a new connection
+	 * @param exchange
+	 * @param use_idle is false if the request has to go on a new connection
+	 */
+	private void start(NioExchange exchange, boolean use_idle) {
+		long now = System.currentTimeMillis();
+		exchange.setDeadline(now + READ_TIMEOUT);
+		ArrayDeque<SelectionKey> connections = idle.get(exchange.getKey());
+		while (use_idle && connections != null && !connections.isEmpty()) {
+			SelectionKey key = connections.pollLast();
+			if (key.isValid() && ((SocketChannel) key.channel()).isConnected()) {
+				exchange.setChannel((SocketChannel) key.channel(), true);
+				key.attach(exchange);
+				key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+			close(key);
+		}
+		if (exchange.getAddress() == null) {
+			fail(exchange, null, new UnknownHostException(exchange.getClient().getHost()));
+			return;
+		}
+		SocketChannel channel = null;
+		try {
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			exchange.setChannel(channel, false);
+			boolean connected = channel.connect(exchange.getAddress());
+			channel.register(selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, exchange);
+		}
+		catch (IOException e) {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e1) {
+					// Nothing more to release
+				}
+			}
+			fail(exchange, null, e);
+		}
+	}
+
+	/**
+	 * Function to move a request forward once its channel is ready
+	 * @param exchange
+	 * @param key
+	 */
+	private void process(NioExchange exchange, SelectionKey key) {
+		SocketChannel channel = exchange.getChannel();
+		try {
+			if (key.isConnectable()) {
+				channel.finishConnect();
+				key.interestOps(SelectionKey.OP_WRITE);
+			}
+			else if (key.isWritable()) {
+				channel.write(exchange.getRequest());
+				if (!exchange.getRequest().hasRemaining())
+					key.interestOps(SelectionKey.OP_READ);
+			}
+			else if (key.isReadable()) {
+				int read;
+				while ((read = channel.read(read_buffer)) > 0) {
+					exchange.getReceived().write(read_buffer.array(), 0, read);
+					read_buffer.clear();
+					if (exchange.is_complete(false)) {
+						complete(exchange, key, false);
+						return;
+					}
+				}
+				if (read < 0) {
+					if (exchange.getReceived().length() == 0)
+						fail(exchange, key, new EOFException("Connection closed by " + exchange.getClient().getHost()));
+					else if (exchange.is_complete(true))
+						complete(exchange, key, true);
+					return;
+				}
+			}
+			exchange.setDeadline(System.currentTimeMillis() + READ_TIMEOUT);
+		}
+		catch (IOException e) {
+			fail(exchange, key, e);
+		}
+	}
+
+	/**
+	 * Function to hand a complete response to the listener and keep the connection for the next request to the host
+	 * @param exchange
+	 * @param key
+	 * @param eof is true if the server closed the connection
+	 */
+	private void complete(NioExchange exchange, SelectionKey key, boolean eof) {
+		if (exchange.isReusable() && !eof) {
+			key.attach(Long.valueOf(System.currentTimeMillis())); // Idle since
+			key.interestOps(SelectionKey.OP_READ); // An idle connection only becomes readable when the server closes it
+			ArrayDeque<SelectionKey> connections = idle.get(exchange.getKey());
+			if (connections == null) {
+				connections = new ArrayDeque<SelectionKey>();
+				idle.put(exchange.getKey(), connections);
+			}
+			connections.addLast(key);
+			while (connections.size() > MAX_IDLE_PER_HOST)
+				close(connections.pollFirst());
+		}
+		else {
+			close(key);
+		}
+		in_flight.release();
+		try {
+			exchange.getListener().fetched(exchange.getClient(), exchange.getReceived());
+		}
+		catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to give up on a request. A request that failed on a reused connection before any
+	 * byte arrived is sent once more on a new connection, since the server may have closed the
+	 * connection while it was idle.
+	 * @param exchange
+	 * @param key is the key of the connection, or null if there is none
+	 * @param e
+	 */
+	private void fail(NioExchange exchange, SelectionKey key, IOException e) {
+		if (key != null)
+			close(key);
+		if (running && exchange.isReused() && exchange.getAttempts() == 1 && exchange.getReceived().length() == 0) {
+			exchange.reset();
+			start(exchange, false);
+			return;
+		}
+		in_flight.release();
+		try {
+			exchange.getListener().failed(exchange.getClient(), e);
+		}
+		catch (RuntimeException e1) {
+			e1.printStackTrace();
+		}
+	}
+
+	/**
+	 * Function to close the connections that have timed out, whether they are idle or carrying a request
+	 * @param now
+	 */
+	private void sweep(long now) {
+		ArrayList<SelectionKey> keys = new ArrayList<SelectionKey>(selector.keys());
+		for (SelectionKey key : keys) {
+			if (!key.isValid())
+				continue;
+			Object attachment = key.attachment();
+			if (attachment instanceof NioExchange) {
+				NioExchange exchange = (NioExchange) attachment;
+				if (now > exchange.getDeadline())
+					fail(exchange, key, new SocketTimeoutException("Read timed out"));
+			}
+			else if (attachment instanceof Long && now - ((Long) attachment).longValue() >= IDLE_TIMEOUT) {
+				close_idle(key);
+			}
+		}
+	}
+
+	/**
+	 * Function to close an idle connection, because it timed out or the server closed it
+	 * @param key
+	 */
+	private void close_idle(SelectionKey key) {
+		for (ArrayDeque<SelectionKey> connections : idle.values()) {
+			if (connections.remove(key))
+				break;
+		}
+		close(key);
+	}
+
+	private void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		}
+		catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Function to fail the requests that are still in flight and close every connection, when the fetcher is closed
+	 */
+	private void shutdown() {
+		running = false;
+		IOException closed = new IOException("Fetcher is closed");
+		try {
+			for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+				if (!key.isValid()) // Cancelled once its exchange ended, and not yet deregistered by a select
+					continue;
+				if (key.attachment() instanceof NioExchange)
+					fail((NioExchange) key.attachment(), key, closed);
+				else
+					close(key);
+			}
+			selector.close();
+		}
+		catch (IOException | ClosedSelectorException e) {
+			System.out.println(e);
+		}
+		idle.clear();
+		NioExchange exchange;
+		while ((exchange = submitted.poll()) != null)
+			fail(exchange, null, closed);
+	}
+
+}
@@ -0,0 +1,78 @@
+package edu.upenn.cis455.crawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import edu.upenn.cis455.storage.Crawled_URLS;
+
+/**
+ * A URL that has passed the seen and robots checks, with the client prepared to fetch it and the
+ * record of its previous crawl, if any, that the response is compared with. Once fetched, it also
+ * carries the page through the stages of the CrawlPipeline.
+ */
+class PendingFetch {
+
+	private String url;
+	private Client client;
+	private Crawled_URLS crawled_url; // Null if the URL was never crawled before
+	private boolean not_modified; // True if the server answered 304 and the stored content is used
+	private String content_type;
+	private byte[] content_bytes; // UTF-8 bytes of the page, set by the parse stage
+	private String content; // Page decoded from content_bytes on first use
+	private ArrayList<String> links; // Links of the page, found while it downloads or by the extract stage
+
+	public PendingFetch(String url, Client client, Crawled_URLS crawled_url) {
+		this.url = url;
+		this.client = client;
+		this.crawled_url = crawled_url;
+		links = new ArrayList<String>();
+	}
+
+	public String getURL() {
+		return url;
+	}
+
+	public Client getClient() {
+		return client;
+	}
+
+	public Crawled_URLS getCrawledURL() {
+		return crawled_url;
+	}
+
+	public void setNotModified(boolean data) {
+		not_modified = data;
+	}
+
+	public boolean isNotModified() {
+		return not_modified;
+	}
+
+	public void setContentType(String data) {
+		content_type = data;
+	}
+
+	public String getContentType() {
+		return content_type;
+	}
+
+	public void setContentBytes(byte[] data) {
+		content_bytes = data;
+		content = null;
+	}
+
+	public byte[] getContentBytes() {
+		return content_bytes;
+	}
+
+	public ArrayList<String> getLinks() {
+		return links;
+	}
+
+	public String getContent() {
+		if (content == null && content_bytes != null)
+			content = new String(content_bytes, StandardCharsets.UTF_8);
+		return content;
+	}
+
+}
@@ -0,0 +1,130 @@
+package edu.upenn.cis455.crawler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One stage of a CrawlPipeline: a bounded queue of tasks and a fixed number of threads that run them. A thread
+ * that submits a task while the queue is full waits until there is room, so a stage that falls behind slows down
+ * the stages that feed it instead of piling up pages in memory.
+ */
+class PipelineStage implements Runnable {
+
+	private final String name;
+	private final ArrayBlockingQueue<Runnable> queue;
+	private final Thread[] threads;
+	private volatile boolean closed;
+	private long completed; // Number of tasks run
+	private long busy_time; // Time spent running tasks, in nanoseconds
+
+	/**
+	 * Constructor. Starts the threads of the stage.
+	 * @param name of the stage, also used for its threads
+	 * @param thread_count is the number of threads that run the tasks
+	 * @param queue_capacity is the largest number of tasks waiting, after which submit() blocks
+	 */
+	public PipelineStage(String name, int thread_count, int queue_capacity) {
+		this.name = name;
+		queue = new ArrayBlockingQueue<Runnable>(queue_capacity);
+		closed = false;
+		completed = 0;
+		busy_time = 0;
+		threads = new Thread[thread_count];
+		for (int i=0; i<thread_count; i++) {
+			threads[i] = new Thread(this, "CrawlPipeline-" + name + "-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Function to queue a task, waiting for room in the queue if it is full
+	 * @param task
+	 */
+	public void submit(Runnable task) {
+		if (closed)
+			throw new IllegalStateException("Pipeline stage " + name + " is closed");
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(task);
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Function to run the tasks still queued and stop the threads of the stage
+	 */
+	public void close() {
+		closed = true;
+		boolean interrupted = false;
+		for (Thread thread : threads) {
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getThreadCount() {
+		return threads.length;
+	}
+
+	public synchronized long get_completed() {
+		return completed;
+	}
+
+	/**
+	 * @return the time the threads of the stage have spent running tasks, in milliseconds
+	 */
+	public synchronized long get_busy_time() {
+		return busy_time / 1000000;
+	}
+
+	public void run() {
+		while (true) {
+			Runnable task = null;
+			try {
+				task = queue.poll(100, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				// Stop only once closed and drained
+			}
+			if (task == null) {
+				if (closed && queue.isEmpty())
+					break;
+				continue;
+			}
+			long start = System.nanoTime();
+			try {
+				task.run();
+			}
+			catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+			count(System.nanoTime() - start);
+		}
+	}
+
+	private synchronized void count(long time) {
+		completed++;
+		busy_time += time;
+	}
+
+}
@@ -0,0 +1,72 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * A persistent connection to a host, handed out by the ConnectionPool
+ */
+class PooledConnection {
+
+	private String key; // host:port the connection belongs to
+	private Socket socket;
+	private InputStream input;
+	private OutputStream output;
+	private long last_used;
+	private boolean reused; // True if the connection has already carried a request
+
+	public PooledConnection(String key, Socket socket) throws IOException {
+		this.key = key;
+		this.socket = socket;
+		input = new BufferedInputStream(socket.getInputStream());
+		output = new BufferedOutputStream(socket.getOutputStream());
+		last_used = System.currentTimeMillis();
+		reused = false;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public InputStream getInputStream() {
+		return input;
+	}
+
+	public OutputStream getOutputStream() {
+		return output;
+	}
+
+	public long getLastUsed() {
+		return last_used;
+	}
+
+	public void setLastUsed(long time) {
+		last_used = time;
+	}
+
+	public boolean isReused() {
+		return reused;
+	}
+
+	public void setReused(boolean value) {
+		reused = value;
+	}
+
+	public boolean isOpen() {
+		return !socket.isClosed() && !socket.isInputShutdown() && !socket.isOutputShutdown();
+	}
+
+	public void close() {
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves host names for the DnsCache. The system resolver is used by default, and a stub
+ * can be plugged in instead so that the crawler can run against fixed addresses offline.
+ */
+public interface Resolver {
+
+	/**
+	 * Function to look up the address of a host. Called on a resolver thread of the DnsCache, so it may block.
+	 * @param host
+	 * @return
+	 * @throws UnknownHostException if the host has no address
+	 */
+	InetAddress resolve(String host) throws UnknownHostException;
+
+}
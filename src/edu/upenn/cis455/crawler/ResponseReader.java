@@ -0,0 +1,194 @@
+package edu.upenn.cis455.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Reads an HTTP response from a byte stream. The status line and the headers are parsed as
+ * ISO-8859-1 text and the body is copied byte for byte into a BodyBuffer, honoring the
+ * Content-Length header and the chunked transfer encoding. The lines and the headers of a response
+ * are capped, so that a server that never ends a line or the head cannot grow them without bound.
+ */
+class ResponseReader {
+
+	private static final int MAX_LINE_LENGTH = 16 * 1024; // Bytes in a status, header, chunk size or trailer line
+	private static final int MAX_HEADERS = 200; // Header or trailer lines in a response
+	static final int MAX_HEAD_SIZE = 256 * 1024; // Bytes in the status line and the headers together
+
+	private InputStream in;
+	private byte[] line = new byte[1024];
+	private int max_body_size = Integer.MAX_VALUE;
+	private boolean exceeded; // True if the body was abandoned because it was larger than max_body_size
+
+	/**
+	 * Constructor
+	 * @param in should be buffered, since the status line and headers are read a byte at a time
+	 */
+	public ResponseReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Function to set the largest body that read_body will accept. Larger bodies are abandoned as
+	 * soon as their size is known, without reading the rest of them.
+	 * @param max_size in bytes
+	 */
+	public void set_max_body_size(int max_size) {
+		max_body_size = max_size;
+	}
+
+	/**
+	 * @return true if the last body was abandoned because it was larger than the maximum size
+	 */
+	public boolean exceeded_max_size() {
+		return exceeded;
+	}
+
+	/**
+	 * Function to read the status line and the headers of the response. The status code is stored
+	 * under the key "status" and the header names are lower cased.
+	 * @param headers is the map that the status and the headers are put in
+	 * @return false if the connection was closed before a status line was received
+	 * @throws IOException
+	 */
+	public boolean read_head(HashMap<String, String> headers) throws IOException {
+		String status_line = read_line();
+		if (status_line == null)
+			return false;
+		String[] parts = status_line.split(" ", 3);
+		if (parts.length < 2)
+			throw new IOException("Malformed status line : " + status_line);
+		headers.put("status", parts[1].trim());
+		int count = 0;
+		int size = status_line.length();
+		String header;
+		while ((header = read_line()) != null && header.length() != 0) { // Process Headers
+			count++;
+			size += header.length();
+			if (count > MAX_HEADERS || size > MAX_HEAD_SIZE)
+				throw new IOException("Response head is too large");
+			String[] header_parts = header.split(":", 2);
+			if (header_parts.length == 2)
+				headers.put(header_parts[0].trim().toLowerCase(), header_parts[1].trim());
+		}
+		return true;
+	}
+
+	/**
+	 * Function to check if a response has a body, based on the request method and the status
+	 * @param method
+	 * @param status
+	 * @return
+	 */
+	public static boolean has_body(String method, int status) {
+		if (method.equalsIgnoreCase("HEAD"))
+			return false;
+		return !(status / 100 == 1 || status == 204 || status == 304);
+	}
+
+	/**
+	 * Function to read the body of the response into the buffer
+	 * @param headers are the headers returned by read_head
+	 * @param buffer
+	 * @return true if the body was read up to its end as given by its framing and false if the
+	 * connection was closed early or the body was delimited by the end of the connection
+	 * @throws IOException
+	 */
+	public boolean read_body(HashMap<String, String> headers, BodyBuffer buffer) throws IOException {
+		exceeded = false;
+		String transfer_encoding = headers.get("transfer-encoding");
+		if (transfer_encoding != null && transfer_encoding.toLowerCase().contains("chunked"))
+			return read_chunked(buffer);
+		String content_length = headers.get("content-length");
+		if (content_length != null) {
+			int length = -1;
+			try {
+				length = Integer.parseInt(content_length);
+			}
+			catch (NumberFormatException e) {
+				// Treat an invalid length as if there were none
+			}
+			if (length > max_body_size) {
+				exceeded = true;
+				return false;
+			}
+			if (length >= 0)
+				return buffer.read_fully(in, length);
+		}
+		if (!buffer.read_to_end(in, max_body_size))
+			exceeded = true;
+		return false;
+	}
+
+	/**
+	 * Function to decode a body sent with the chunked transfer encoding
+	 * @param buffer
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean read_chunked(BodyBuffer buffer) throws IOException {
+		while (true) {
+			String size_line = read_line();
+			if (size_line == null)
+				return false;
+			int extension = size_line.indexOf(';');
+			if (extension >= 0)
+				size_line = size_line.substring(0, extension);
+			int size;
+			try {
+				size = Integer.parseInt(size_line.trim(), 16);
+			}
+			catch (NumberFormatException e) {
+				throw new IOException("Malformed chunk size : " + size_line);
+			}
+			if (size < 0)
+				throw new IOException("Negative chunk size : " + size_line);
+			if (size == 0) {
+				String trailer;
+				int trailers = 0;
+				while ((trailer = read_line()) != null && trailer.length() != 0) { // Skip the trailers
+					if (++trailers > MAX_HEADERS)
+						throw new IOException("Too many trailers");
+				}
+				return trailer != null;
+			}
+			if (size > max_body_size - buffer.length()) {
+				exceeded = true;
+				return false;
+			}
+			if (!buffer.read_fully(in, size))
+				return false;
+			read_line(); // CRLF at the end of the chunk
+		}
+	}
+
+	/**
+	 * Function to read a line terminated by LF, dropping the CR before it
+	 * @return the line, or null if the stream ended before any byte was read
+	 * @throws IOException if the line is longer than MAX_LINE_LENGTH
+	 */
+	private String read_line() throws IOException {
+		int length = 0;
+		int b;
+		while ((b = in.read()) != -1) {
+			if (b == '\n')
+				break;
+			if (length == MAX_LINE_LENGTH)
+				throw new IOException("Line is longer than " + MAX_LINE_LENGTH + " bytes");
+			if (length == line.length) {
+				byte[] new_line = new byte[line.length * 2];
+				System.arraycopy(line, 0, new_line, 0, length);
+				line = new_line;
+			}
+			line[length++] = (byte) b;
+		}
+		if (b == -1 && length == 0)
+			return null;
+		if (length > 0 && line[length - 1] == '\r')
+			length--;
+		return new String(line, 0, length, StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,232 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import edu.upenn.cis455.storage.Indices;
+import edu.upenn.cis455.storage.PersistenceWriter;
+import edu.upenn.cis455.storage.Robots;
+
+/**
+ * In-memory LRU cache of the compiled robots.txt rules of the hosts, keyed by scheme, host and port. A robots.txt
+ * is fetched once per time to live; in between, the rules are read from the cache, or from the Robots store after
+ * a restart or once they have been evicted, so the store is kept across runs instead of being flushed. A robots.txt
+ * that cannot be fetched because of a server error disallows everything, and is tried again after a shorter time.
+ * A host is loaded by one thread at a time: the threads that need the same host while it is loading wait for the
+ * outcome of that load instead of fetching the robots.txt themselves.
+ */
+public class RobotsCache {
+
+	public static final int DEFAULT_CAPACITY = 10000; // Hosts remembered at most
+	public static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L; // Milliseconds before a robots.txt is fetched again
+	public static final long ERROR_TTL = 10 * 60 * 1000L; // Milliseconds before a robots.txt that failed is fetched again
+	private static final int MAX_REDIRECTS = 5;
+	private static final int MAX_SIZE = 500 * 1024; // Bytes of a robots.txt read at most
+
+	private final Indices pk_index;
+	private final PersistenceWriter writer;
+	private final long ttl;
+	private final LinkedHashMap<String, RobotsRules> cache;
+	private final HashMap<String, FutureTask<RobotsRules>> loading; // Loads in progress, by host
+	private long hits;
+	private long misses;
+	private long fetches;
+	private long waits; // Misses that waited for the load of another thread
+
+	public RobotsCache(Indices pk_index, PersistenceWriter writer) {
+		this(pk_index, writer, DEFAULT_CAPACITY, DEFAULT_TTL);
+	}
+
+	/**
+	 * Constructor
+	 * @param pk_index holds the Robots store
+	 * @param writer writes the rules fetched to the store
+	 * @param capacity is the largest number of hosts whose rules are kept in memory
+	 * @param ttl is the time in milliseconds after which a robots.txt is fetched again
+	 */
+	public RobotsCache(Indices pk_index, PersistenceWriter writer, final int capacity, long ttl) {
+		this.pk_index = pk_index;
+		this.writer = writer;
+		this.ttl = ttl;
+		// Access order, so that the eldest entry is the least recently used one
+		cache = new LinkedHashMap<String, RobotsRules>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, RobotsRules> eldest) {
+				return size() > capacity;
+			}
+		};
+		loading = new HashMap<String, FutureTask<RobotsRules>>();
+		hits = 0;
+		misses = 0;
+		fetches = 0;
+		waits = 0;
+	}
+
+	/**
+	 * Function to get the key a robots.txt is stored under
+	 * @param url
+	 * @return the scheme, the host and the port of the url
+	 */
+	public static String key_of(URL url) {
+		String key = url.getProtocol() + "://" + url.getHost();
+		return (url.getPort() == -1 || url.getPort() == url.getDefaultPort() ? key : key + ":" + url.getPort());
+	}
+
+	/**
+	 * Function to get the rules that apply to a url, fetching the robots.txt of its host if it is not known
+	 * or has expired. If another thread is loading the rules of the host already, waits for it instead.
+	 * @param url
+	 * @return
+	 */
+	public RobotsRules get(URL url) {
+		final String key = key_of(url);
+		final long now = System.currentTimeMillis();
+		FutureTask<RobotsRules> task;
+		boolean owner = false;
+		synchronized (this) {
+			RobotsRules rules = cache.get(key);
+			if (rules != null && !rules.is_expired(now)) {
+				hits++;
+				return rules;
+			}
+			misses++;
+			task = loading.get(key);
+			if (task == null) {
+				task = new FutureTask<RobotsRules>(new Callable<RobotsRules>() {
+					public RobotsRules call() {
+						return load(key, now);
+					}
+				});
+				loading.put(key, task);
+				owner = true;
+			}
+			else
+				waits++;
+		}
+		if (owner)
+			task.run(); // Outside the lock, so that other hosts are not held up
+		RobotsRules rules = null;
+		boolean interrupted = false;
+		while (rules == null) {
+			try {
+				rules = task.get();
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+			catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				break;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (owner) {
+			synchronized (this) {
+				if (rules != null)
+					cache.put(key, rules);
+				loading.remove(key);
+			}
+		}
+		if (rules == null) // Not cached, so the next url of the host tries again
+			rules = RobotsRules.disallow_all(now + ERROR_TTL);
+		return rules;
+	}
+
+	/**
+	 * Function to read the rules of a host from the store, or fetch them if they are not stored or have expired
+	 * @param key of the host
+	 * @param now
+	 * @return
+	 */
+	private RobotsRules load(String key, long now) {
+		Robots stored = pk_index.robots_pk.get(key);
+		if (stored != null && stored.getExpiresTime() > now)
+			return new RobotsRules(stored.getAllowedLinks(), stored.getDisallowedLinks(), stored.getCrawlDelay(), stored.getExpiresTime());
+		RobotsRules rules = fetch(key, now);
+		Robots robots = new Robots();
+		robots.setDomain(key);
+		robots.setAllowedLinks(new ArrayList<String>(rules.getAllowed()));
+		robots.setDisallowedLinks(new ArrayList<String>(rules.getDisallowed()));
+		robots.setCrawlDelay(rules.getCrawlDelay());
+		robots.setLastCrawledTime(stored == null ? 0 : stored.getLastCrawledTime());
+		robots.setExpiresTime(rules.getExpiresTime());
+		writer.put(pk_index.robots_pk, robots);
+		return rules;
+	}
+
+	/**
+	 * Function to fetch and parse the robots.txt of a host, following redirects. A robots.txt that is not found
+	 * allows everything, and one that cannot be fetched disallows everything for a while.
+	 * @param key of the host
+	 * @param now
+	 * @return
+	 */
+	private RobotsRules fetch(String key, long now) {
+		synchronized (this) {
+			fetches++;
+		}
+		String req_url = key + "/robots.txt";
+		for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+			Client client = new Client(req_url, "GET");
+			client.set_max_size(MAX_SIZE);
+			client.send_request();
+			String status = client.get_response_header("status");
+			int code = 0;
+			try {
+				code = (status == null ? 0 : Integer.parseInt(status));
+			}
+			catch (NumberFormatException e) {
+				code = 0;
+			}
+			if (code == 200) {
+				String body = client.getBody();
+				return RobotsRules.parse(body == null ? "" : body, now + ttl);
+			}
+			if (code / 100 == 3 && client.get_response_header("location") != null) {
+				try {
+					req_url = new URL(new URL(req_url), client.get_response_header("location")).toString();
+					continue;
+				}
+				catch (MalformedURLException e) {
+					System.out.println("[ROBOTS] Invalid redirect for : " + req_url);
+					return RobotsRules.allow_all(now + ttl);
+				}
+			}
+			if (code / 100 == 4 || code / 100 == 3) {
+				System.out.println("[ROBOTS] Robots.txt not present for : " + req_url + ". Therefore allowing all urls.");
+				return RobotsRules.allow_all(now + ttl);
+			}
+			System.out.println("[ROBOTS] Robots.txt could not be fetched for : " + req_url + ". Therefore disallowing all urls for now.");
+			return RobotsRules.disallow_all(now + Math.min(ttl, ERROR_TTL));
+		}
+		System.out.println("[ROBOTS] Too many redirects for : " + key + "/robots.txt. Therefore allowing all urls.");
+		return RobotsRules.allow_all(now + ttl);
+	}
+
+	public synchronized long get_hits() {
+		return hits;
+	}
+
+	public synchronized long get_misses() {
+		return misses;
+	}
+
+	public synchronized long get_fetches() {
+		return fetches;
+	}
+
+	/**
+	 * @return the number of times a thread waited for another thread to load the same host
+	 */
+	public synchronized long get_waits() {
+		return waits;
+	}
+
+}
@@ -0,0 +1,109 @@
+package edu.upenn.cis455.crawler;
+
+import java.util.HashMap;
+
+/**
+ * A node of the trie of the rules of a robots.txt. The path from the root spells the part of a rule read so far,
+ * with a separate child for a '*', which matches any number of characters. A node where a rule ends holds the
+ * length and the kind of the rule, once as a prefix rule and once for a rule anchored by a '$'.
+ * A '*' child is numbered, so that a match expands it from each position of the path only once: what it matches
+ * from a position does not depend on how it was reached, which keeps a match within O(path x rules) steps however
+ * many '*' the rules hold.
+ */
+class RobotsRuleNode {
+
+	private HashMap<Character, RobotsRuleNode> children; // Null while the node has none
+	private RobotsRuleNode any; // Child for a '*'
+	private int star_id; // Number of the node among the '*' nodes of the trie, -1 if it is not one
+	private int prefix_length; // Length of the rule that ends here and matches any rest of the path, -1 if none
+	private boolean prefix_allow;
+	private int end_length; // Length of the rule that ends here with a '$', -1 if none
+	private boolean end_allow;
+
+	public RobotsRuleNode() {
+		prefix_length = -1;
+		end_length = -1;
+		star_id = -1;
+	}
+
+	/**
+	 * Function to add a rule below this node
+	 * @param pattern is the rest of the rule, with no '*' in a row and no '*' at the end
+	 * @param position of the next character of the pattern
+	 * @param length of the whole rule, which decides between rules that match the same path
+	 * @param allow is true for an Allow rule and false for a Disallow rule
+	 * @param stars counts the '*' nodes of the trie, to number the new ones
+	 */
+	public void add(String pattern, int position, int length, boolean allow, int[] stars) {
+		if (position == pattern.length()) {
+			if (length > prefix_length || (length == prefix_length && allow)) {
+				prefix_length = length;
+				prefix_allow = allow;
+			}
+			return;
+		}
+		char c = pattern.charAt(position);
+		if (c == '$' && position == pattern.length() - 1) {
+			if (length > end_length || (length == end_length && allow)) {
+				end_length = length;
+				end_allow = allow;
+			}
+			return;
+		}
+		RobotsRuleNode child;
+		if (c == '*') {
+			if (any == null) {
+				any = new RobotsRuleNode();
+				any.star_id = stars[0]++;
+			}
+			child = any;
+		}
+		else {
+			if (children == null)
+				children = new HashMap<Character, RobotsRuleNode>(4);
+			child = children.get(c);
+			if (child == null) {
+				child = new RobotsRuleNode();
+				children.put(c, child);
+			}
+		}
+		child.add(pattern, position + 1, length, allow, stars);
+	}
+
+	/**
+	 * Function to find the longest rule below this node that matches a path
+	 * @param path
+	 * @param position of the next character of the path
+	 * @param best holds the length of the longest rule found so far, -1 if none, and 1 if it allows the path and 0 otherwise
+	 * @param expanded holds, for each '*' node, the lowest position it has been expanded from, from which on
+	 * every later position has been too
+	 */
+	public void match(String path, int position, int[] best, int[] expanded) {
+		if (prefix_length >= 0)
+			consider(prefix_length, prefix_allow, best);
+		if (end_length >= 0 && position == path.length())
+			consider(end_length, end_allow, best);
+		if (any != null && position < expanded[any.star_id]) {
+			int end = expanded[any.star_id];
+			expanded[any.star_id] = position;
+			for (int i=position; i<end; i++)
+				any.match(path, i, best, expanded);
+		}
+		if (children != null && position < path.length()) {
+			RobotsRuleNode child = children.get(path.charAt(position));
+			if (child != null)
+				child.match(path, position + 1, best, expanded);
+		}
+	}
+
+	/**
+	 * Function to keep the longer of two matching rules, or the Allow rule if they are as long
+	 */
+	private static void consider(int length, boolean allow, int[] best) {
+		if (length > best[0] || (length == best[0] && allow)) {
+			best[0] = length;
+			best[1] = (allow ? 1 : 0);
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package edu.upenn.cis455.crawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rules of a robots.txt that apply to the crawler, compiled into a trie. A path is checked in a single walk
+ * of the trie: of the rules that match the path, the longest one decides, and an Allow rule wins over a Disallow
+ * rule of the same length. A '*' in a rule matches any number of characters and a '$' at its end anchors it to the
+ * end of the path, as in RFC 9309. The rules are immutable once built, so they can be shared by all the threads.
+ */
+public class RobotsRules {
+
+	public static final String AGENT = "cis455crawler"; // Product token of the crawler in robots.txt files
+	public static final int MAX_RULE_LENGTH = 2048; // Longer rules are ignored
+	public static final int MAX_WILDCARDS = 16; // Rules with more '*' are ignored
+
+	private final List<String> allowed;
+	private final List<String> disallowed;
+	private final long crawl_delay; // Milliseconds
+	private final long expires_time; // Time after which the robots.txt is fetched again
+	private final RobotsRuleNode root;
+	private final int[] stars; // Number of '*' nodes in the trie
+
+	/**
+	 * Constructor
+	 * @param allowed are the Allow rules
+	 * @param disallowed are the Disallow rules
+	 * @param crawl_delay in milliseconds
+	 * @param expires_time is the time after which the rules should be fetched again
+	 */
+	public RobotsRules(List<String> allowed, List<String> disallowed, long crawl_delay, long expires_time) {
+		this.allowed = Collections.unmodifiableList(new ArrayList<String>(allowed));
+		this.disallowed = Collections.unmodifiableList(new ArrayList<String>(disallowed));
+		this.crawl_delay = crawl_delay;
+		this.expires_time = expires_time;
+		root = new RobotsRuleNode();
+		stars = new int[] { 0 };
+		for (String rule : allowed)
+			add(rule, true);
+		for (String rule : disallowed)
+			add(rule, false);
+	}
+
+	/**
+	 * @param expires_time
+	 * @return rules that allow every path
+	 */
+	public static RobotsRules allow_all(long expires_time) {
+		return new RobotsRules(new ArrayList<String>(), new ArrayList<String>(), 0, expires_time);
+	}
+
+	/**
+	 * @param expires_time
+	 * @return rules that disallow every path
+	 */
+	public static RobotsRules disallow_all(long expires_time) {
+		return new RobotsRules(new ArrayList<String>(), Collections.singletonList("/"), 0, expires_time);
+	}
+
+	/**
+	 * Function to parse a robots.txt. The groups whose User-agent is the crawler apply if there are any, and the
+	 * groups for '*' otherwise. Rules with an empty path are ignored, since they allow everything.
+	 * @param text of the robots.txt
+	 * @param expires_time is the time after which the rules should be fetched again
+	 * @return
+	 */
+	public static RobotsRules parse(String text, long expires_time) {
+		ArrayList<String> my_allowed = new ArrayList<String>();
+		ArrayList<String> my_disallowed = new ArrayList<String>();
+		ArrayList<String> any_allowed = new ArrayList<String>();
+		ArrayList<String> any_disallowed = new ArrayList<String>();
+		long my_delay = 0;
+		long any_delay = 0;
+		boolean for_me = false; // True if the current group applies to the crawler by name
+		boolean for_any = false; // True if the current group applies to every crawler
+		boolean found_me = false; // True once a group for the crawler by name has been seen
+		boolean reading_agents = false; // True while the User-agent lines that start a group are read
+		for (String line : text.split("\n")) {
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			int colon = line.indexOf(':');
+			if (colon < 0)
+				continue;
+			String key = line.substring(0, colon).trim().toLowerCase();
+			String value = line.substring(colon + 1).trim();
+			if (key.equals("user-agent")) {
+				if (!reading_agents) { // A new group
+					for_me = false;
+					for_any = false;
+					reading_agents = true;
+				}
+				String agent = value.toLowerCase();
+				if (agent.equals("*"))
+					for_any = true;
+				else if (agent.split("/")[0].trim().equals(AGENT))
+					for_me = found_me = true;
+				continue;
+			}
+			reading_agents = false;
+			if (!for_me && !for_any)
+				continue;
+			if (key.equals("allow") || key.equals("disallow")) {
+				if (value.length() == 0)
+					continue;
+				boolean allow = key.equals("allow");
+				if (for_me)
+					(allow ? my_allowed : my_disallowed).add(value);
+				if (for_any)
+					(allow ? any_allowed : any_disallowed).add(value);
+			}
+			else if (key.equals("crawl-delay")) {
+				try {
+					long delay = (long) (Double.parseDouble(value) * 1000);
+					if (for_me)
+						my_delay = delay;
+					if (for_any)
+						any_delay = delay;
+				}
+				catch (NumberFormatException e) {
+					System.out.println("[ROBOTS] Invalid crawl delay : " + value);
+				}
+			}
+		}
+		if (found_me)
+			return new RobotsRules(my_allowed, my_disallowed, my_delay, expires_time);
+		return new RobotsRules(any_allowed, any_disallowed, any_delay, expires_time);
+	}
+
+	/**
+	 * Function to add a rule to the trie. The rule is written the way canonical urls are, so that both compare
+	 * equal, repeated '*' are merged, and a '*' at the end is dropped since every rule matches a prefix.
+	 * Rules longer than MAX_RULE_LENGTH or with more than MAX_WILDCARDS '*' are ignored.
+	 * @param rule
+	 * @param allow
+	 */
+	private void add(String rule, boolean allow) {
+		String pattern = URLCanonicalizer.normalize_escapes(rule.trim());
+		if (pattern.length() == 0)
+			return;
+		if (pattern.charAt(0) != '/' && pattern.charAt(0) != '*')
+			pattern = "/" + pattern;
+		int length = pattern.length();
+		while (pattern.contains("**"))
+			pattern = pattern.replace("**", "*");
+		while (pattern.endsWith("*"))
+			pattern = pattern.substring(0, pattern.length() - 1);
+		int wildcards = 0;
+		for (int i=0; i<pattern.length(); i++) {
+			if (pattern.charAt(i) == '*')
+				wildcards++;
+		}
+		if (length > MAX_RULE_LENGTH || wildcards > MAX_WILDCARDS) {
+			System.out.println("[ROBOTS] Ignoring rule that is too long or has too many wildcards : " + (allow ? "Allow " : "Disallow ") + rule.substring(0, Math.min(rule.length(), 80)));
+			return;
+		}
+		root.add(pattern, 0, length, allow, stars);
+	}
+
+	/**
+	 * Function to check if the crawler may fetch a path
+	 * @param path is the path of a canonical url, followed by its query if any
+	 * @return true if no rule matches the path or the longest rule that matches allows it
+	 */
+	public boolean is_allowed(String path) {
+		if (path.length() == 0)
+			path = "/";
+		if (path.equals("/robots.txt"))
+			return true;
+		int[] best = { -1, 1 };
+		int[] expanded = new int[stars[0]];
+		Arrays.fill(expanded, path.length() + 1);
+		root.match(path, 0, best, expanded);
+		return best[1] == 1;
+	}
+
+	public List<String> getAllowed() {
+		return allowed;
+	}
+
+	public List<String> getDisallowed() {
+		return disallowed;
+	}
+
+	public long getCrawlDelay() {
+		return crawl_delay;
+	}
+
+	public long getExpiresTime() {
+		return expires_time;
+	}
+
+	public boolean is_expired(long now) {
+		return now >= expires_time;
+	}
+
+}
@@ -0,0 +1,332 @@
+package edu.upenn.cis455.crawler;
+
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Rewrites http and https urls into a canonical form, so that the different ways of writing the same url are
+ * admitted into the frontier and stored under one key. The scheme and the host are lower cased, a default or empty
+ * port is dropped, the fragment is dropped, dot segments are removed from the path, percent escapes are decoded
+ * where they stand for an unreserved character and upper cased otherwise, characters a url may not contain are
+ * escaped, and the query parameters that only track the visitor are dropped. The parameters to drop can be
+ * configured, with a trailing '*' for a prefix, and the remaining parameters can optionally be sorted.
+ * The fingerprints of the frontier and the Bloom filter of the crawler hash the canonical url, so that they
+ * catch these duplicates as well.
+ */
+public class URLCanonicalizer {
+
+	public static final String[] DEFAULT_IGNORED_PARAMETERS = { "utm_*", "gclid", "fbclid", "jsessionid", "phpsessid" };
+
+	private final String[] ignored_names; // Lower cased names of the parameters to drop
+	private final String[] ignored_prefixes; // Lower cased prefixes of the names of the parameters to drop
+	private final boolean sort_query;
+
+	public URLCanonicalizer() {
+		this(DEFAULT_IGNORED_PARAMETERS, false);
+	}
+
+	/**
+	 * Constructor
+	 * @param ignored_parameters are the names of the query and path parameters to drop, case insensitive.
+	 * A name ending in '*' drops every parameter whose name starts with the rest of it.
+	 * @param sort_query is true to sort the query parameters that are kept, for sites that do not care about their order
+	 */
+	public URLCanonicalizer(String[] ignored_parameters, boolean sort_query) {
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<String> prefixes = new ArrayList<String>();
+		for (String parameter : ignored_parameters) {
+			String name = parameter.trim().toLowerCase();
+			if (name.endsWith("*"))
+				prefixes.add(name.substring(0, name.length() - 1));
+			else if (name.length() > 0)
+				names.add(name);
+		}
+		ignored_names = names.toArray(new String[names.size()]);
+		ignored_prefixes = prefixes.toArray(new String[prefixes.size()]);
+		this.sort_query = sort_query;
+	}
+
+	/**
+	 * Function to get the canonical form of a url. A url without a scheme is taken to be http.
+	 * @param url
+	 * @return the canonical url, or null if it is not a valid http or https url
+	 */
+	public String canonicalize(String url) {
+		String str = url.trim();
+		int fragment = str.indexOf('#');
+		if (fragment >= 0)
+			str = str.substring(0, fragment);
+		String scheme = "http";
+		int scheme_end = str.indexOf("://");
+		if (scheme_end >= 0) {
+			scheme = str.substring(0, scheme_end).toLowerCase();
+			str = str.substring(scheme_end + 3);
+		}
+		else if (has_other_scheme(str))
+			return null;
+		if (!scheme.equals("http") && !scheme.equals("https"))
+			return null;
+		int authority_end = str.length();
+		for (int i=0; i<str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == '/' || c == '?' || c == '\\') {
+				authority_end = i;
+				break;
+			}
+		}
+		String authority = str.substring(0, authority_end);
+		String path = str.substring(authority_end).replace('\\', '/');
+		String query = null;
+		int query_start = path.indexOf('?');
+		if (query_start >= 0) {
+			query = path.substring(query_start + 1);
+			path = path.substring(0, query_start);
+		}
+		// Host and port
+		int at = authority.lastIndexOf('@');
+		String user_info = authority.substring(0, at + 1);
+		String host = authority.substring(at + 1);
+		String port = "";
+		int colon = host.lastIndexOf(':');
+		if (colon >= 0 && colon > host.lastIndexOf(']')) { // Not within an IPv6 address
+			port = host.substring(colon + 1);
+			host = host.substring(0, colon);
+		}
+		host = host.toLowerCase();
+		if (!is_ascii(host)) {
+			try {
+				host = IDN.toASCII(host);
+			}
+			catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		while (host.endsWith("."))
+			host = host.substring(0, host.length() - 1);
+		if (host.length() == 0 || !is_host(host))
+			return null;
+		if (port.length() > 0) {
+			for (int i=0; i<port.length(); i++) {
+				if (port.charAt(i) < '0' || port.charAt(i) > '9')
+					return null;
+			}
+			while (port.length() > 1 && port.charAt(0) == '0')
+				port = port.substring(1);
+			if ((scheme.equals("http") && port.equals("80")) || (scheme.equals("https") && port.equals("443")))
+				port = "";
+		}
+		// Path
+		path = remove_dot_segments(strip_path_parameters(normalize_escapes(path)));
+		if (path.length() == 0)
+			path = "/";
+		StringBuilder canonical = new StringBuilder(url.length() + 8);
+		canonical.append(scheme).append("://").append(normalize_escapes(user_info)).append(host);
+		if (port.length() > 0)
+			canonical.append(':').append(port);
+		canonical.append(path);
+		if (query != null) {
+			query = filter_query(normalize_escapes(query));
+			if (query.length() > 0)
+				canonical.append('?').append(query);
+		}
+		return canonical.toString();
+	}
+
+	/**
+	 * Function to drop the ignored parameters from a query, and sort the rest if configured to
+	 * @param query
+	 * @return
+	 */
+	private String filter_query(String query) {
+		ArrayList<String> kept = new ArrayList<String>();
+		for (String parameter : query.split("&")) {
+			if (parameter.length() == 0)
+				continue;
+			int equals = parameter.indexOf('=');
+			if (!is_ignored(equals < 0 ? parameter : parameter.substring(0, equals)))
+				kept.add(parameter);
+		}
+		if (sort_query)
+			Collections.sort(kept);
+		StringBuilder filtered = new StringBuilder(query.length());
+		for (String parameter : kept) {
+			if (filtered.length() > 0)
+				filtered.append('&');
+			filtered.append(parameter);
+		}
+		return filtered.toString();
+	}
+
+	/**
+	 * Function to drop the ignored parameters that follow a ';' in the segments of a path, such as ;jsessionid=...
+	 * @param path
+	 * @return
+	 */
+	private String strip_path_parameters(String path) {
+		if (path.indexOf(';') < 0)
+			return path;
+		StringBuilder stripped = new StringBuilder(path.length());
+		int i = 0;
+		while (i < path.length()) {
+			char c = path.charAt(i);
+			if (c != ';') {
+				stripped.append(c);
+				i++;
+				continue;
+			}
+			int end = i + 1;
+			while (end < path.length() && path.charAt(end) != ';' && path.charAt(end) != '/')
+				end++;
+			String parameter = path.substring(i + 1, end);
+			int equals = parameter.indexOf('=');
+			if (!is_ignored(equals < 0 ? parameter : parameter.substring(0, equals)))
+				stripped.append(path, i, end);
+			i = end;
+		}
+		return stripped.toString();
+	}
+
+	private boolean is_ignored(String name) {
+		name = name.toLowerCase();
+		for (String ignored : ignored_names) {
+			if (name.equals(ignored))
+				return true;
+		}
+		for (String prefix : ignored_prefixes) {
+			if (name.startsWith(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Function to remove the "." and ".." segments of a path, as in section 5.2.4 of RFC 3986
+	 * @param path
+	 * @return
+	 */
+	static String remove_dot_segments(String path) {
+		if (path.indexOf('.') < 0 || path.length() == 0)
+			return path;
+		String[] segments = path.substring(1).split("/", -1);
+		ArrayList<String> output = new ArrayList<String>(segments.length);
+		for (int i=0; i<segments.length; i++) {
+			String segment = segments[i];
+			boolean last = (i == segments.length - 1);
+			if (segment.equals(".") || segment.equals("..")) {
+				if (segment.equals("..") && !output.isEmpty())
+					output.remove(output.size() - 1);
+				if (last)
+					output.add(""); // The path still ends in a directory
+			}
+			else
+				output.add(segment);
+		}
+		StringBuilder normalized = new StringBuilder(path.length());
+		for (String segment : output)
+			normalized.append('/').append(segment);
+		return (normalized.length() == 0 ? "/" : normalized.toString());
+	}
+
+	/**
+	 * Function to escape the characters a url may not contain, then decode the escapes of unreserved characters
+	 * and upper case the hex digits of the other escapes, so that equal urls are written alike
+	 * @param str
+	 * @return
+	 */
+	static String normalize_escapes(String str) {
+		str = escape(str);
+		if (str.indexOf('%') < 0)
+			return str;
+		StringBuilder normalized = new StringBuilder(str.length());
+		for (int i=0; i<str.length(); i++) {
+			char c = str.charAt(i);
+			if (c != '%') {
+				normalized.append(c);
+				continue;
+			}
+			int value = Character.digit(str.charAt(i + 1), 16) * 16 + Character.digit(str.charAt(i + 2), 16);
+			if (is_unreserved(value))
+				normalized.append((char) value);
+			else
+				normalized.append('%').append(Character.toUpperCase(str.charAt(i + 1))).append(Character.toUpperCase(str.charAt(i + 2)));
+			i += 2;
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Function to percent-encode the characters that browsers accept in links but a url may not contain: spaces,
+	 * controls, non-ASCII characters as UTF-8 bytes, a few ASCII symbols, and any '%' not followed by two hex digits
+	 * @param str
+	 * @return
+	 */
+	static String escape(String str) {
+		StringBuilder escaped = null;
+		for (int i=0; i<str.length(); i++) {
+			char c = str.charAt(i);
+			boolean illegal = (c <= ' ' || c >= 0x7f || "\"<>\\^`{|}".indexOf(c) >= 0
+					|| (c == '%' && !(i + 2 < str.length() && is_hex(str.charAt(i + 1)) && is_hex(str.charAt(i + 2)))));
+			if (!illegal) {
+				if (escaped != null)
+					escaped.append(c);
+				continue;
+			}
+			if (escaped == null)
+				escaped = new StringBuilder(str.length() + 16).append(str, 0, i);
+			int end = i + 1;
+			if (Character.isHighSurrogate(c) && end < str.length() && Character.isLowSurrogate(str.charAt(end)))
+				end++;
+			for (byte b : str.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+				escaped.append('%');
+				escaped.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)));
+				escaped.append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+			}
+			i = end - 1;
+		}
+		return (escaped == null ? str : escaped.toString());
+	}
+
+	/**
+	 * @param str is a url without "://"
+	 * @return true if it starts with a scheme such as mailto: or javascript:, and not with a host and a port
+	 */
+	private static boolean has_other_scheme(String str) {
+		int colon = str.indexOf(':');
+		if (colon <= 0 || (colon + 1 < str.length() && Character.isDigit(str.charAt(colon + 1))))
+			return false;
+		for (int i=0; i<colon; i++) {
+			char c = str.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean is_ascii(String str) {
+		for (int i=0; i<str.length(); i++) {
+			if (str.charAt(i) >= 0x80)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean is_host(String host) {
+		for (int i=0; i<host.length(); i++) {
+			char c = host.charAt(i);
+			if (c <= ' ' || c >= 0x7f || "\"<>\\^`{|}%/".indexOf(c) >= 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean is_unreserved(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+	}
+
+	private static boolean is_hex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+}
@@ -0,0 +1,103 @@
+package edu.upenn.cis455.crawler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Crawls with one virtual thread per URL, each running the blocking Client code path. A single
+ * dispatcher takes the URLs from the frontier and starts a thread for each of them, as long as
+ * fewer than max_in_flight of them are running. The frontier hands out one URL per host at a
+ * time and the ConnectionPool caps the connections per host, so no host sees more than that
+ * however many threads are running.
+ * Virtual threads need a JVM that has them. On an older JVM, the same dispatching is done with
+ * platform threads, which are far more costly, so at most MAX_PLATFORM_THREADS run there.
+ */
+class VirtualThreadCrawler implements Runnable {
+
+	private static final int MAX_PLATFORM_THREADS = 200;
+
+	private Frontier urlsqueue;
+	private CrawlerThread crawler;
+	private ExecutorService executor;
+	private Semaphore in_flight; // Permits for the URLs being crawled
+	private int max_in_flight;
+
+	/**
+	 * Constructor
+	 * @param queue is the frontier
+	 * @param crawler crawls each URL
+	 * @param max_in_flight is the maximum number of URLs crawled at the same time
+	 */
+	public VirtualThreadCrawler(Frontier queue, CrawlerThread crawler, int max_in_flight) {
+		urlsqueue = queue;
+		this.crawler = crawler;
+		executor = virtual_executor();
+		if (executor == null) {
+			System.out.println("[CRAWLER] Virtual threads are not available on this JVM. Using platform threads instead.");
+			executor = Executors.newCachedThreadPool();
+			max_in_flight = Math.min(max_in_flight, MAX_PLATFORM_THREADS);
+		}
+		this.max_in_flight = max_in_flight;
+		in_flight = new Semaphore(max_in_flight);
+	}
+
+	/**
+	 * Function to get an executor that starts a virtual thread per task. It is looked up at run
+	 * time, since the code is built for JVMs that do not have virtual threads.
+	 * @return the executor, or null if the JVM has no virtual threads
+	 */
+	private static ExecutorService virtual_executor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+		catch (ReflectiveOperationException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public void run() {
+		while (!crawler.reached_max_files()) {
+			try {
+				in_flight.acquire();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				break;
+			}
+			final String url;
+			try {
+				url = urlsqueue.dequeue();
+			} catch (InterruptedException e) {
+				in_flight.release();
+				e.printStackTrace();
+				break;
+			}
+			if (url == null) { // The frontier has drained
+				in_flight.release();
+				break;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						if (url.trim().length() != 0)
+							crawler.crawl(url);
+					}
+					finally {
+						urlsqueue.release(url);
+						in_flight.release();
+					}
+				}
+			});
+		}
+		// Wait for the running threads by taking every permit back
+		in_flight.acquireUninterruptibly(max_in_flight);
+		executor.shutdown();
+	}
+
+}
@@ -1,63 +1,176 @@
 package edu.upenn.cis455.crawler;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
+import com.sleepycat.je.Durability;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.Transaction;
 import com.sleepycat.persist.EntityCursor;
 
 import edu.upenn.cis455.storage.DBWrapper;
 import edu.upenn.cis455.storage.Indices;
+import edu.upenn.cis455.storage.PersistenceWriter;
 import edu.upenn.cis455.storage.URLS;
 
 public class XPathCrawler implements Runnable {  
 	
+	public static final String ENGINE_THREADS = "threads"; // A pool of threads, each blocking on its own request
+	public static final String ENGINE_NIO = "nio"; // A selector thread driving all the requests, with a pool of workers for the responses
+	public static final String ENGINE_VIRTUAL = "virtual"; // A virtual thread per url, each blocking on its own request
+	private static final int MAX_VIRTUAL_IN_FLIGHT = 2000; // Urls crawled at the same time by the virtual thread engine
+	
 	private String seed_url;
 	private String directory;
 	private int max_size;
 	private int max_number_of_files;
-	private MyQueue urlsqueue;
+	private Frontier urlsqueue;
+	private CrawlerThread crawler;
+	private CrawlPipeline pipeline; // Parses, extracts and matches the fetched pages, on pools sized apart from the fetching threads
 	private ArrayList<Thread> threadpool = new ArrayList<Thread>();
+	private Thread lifecycle; // Waits for the workers to end and then closes the databases
+	private boolean terminated; // True once the crawl has ended and the databases are closed
 	
 	public XPathCrawler(String url, String dir, int size, int num) {
+		this(url, dir, size, num, ENGINE_THREADS);
+	}
+	
+	/**
+	 * Constructor. Starts the crawl, which ends by itself once the frontier has drained and no url
+	 * is in flight, or once the maximum number of documents has been downloaded.
+	 * @param url is the seed url
+	 * @param dir is the database directory
+	 * @param size is the maximum size of a document in MB
+	 * @param num is the maximum number of documents to download
+	 * @param engine is ENGINE_THREADS, ENGINE_NIO or ENGINE_VIRTUAL
+	 */
+	public XPathCrawler(String url, String dir, int size, int num, String engine) {
+		this(url, dir, size, num, engine, Durability.COMMIT_NO_SYNC);
+	}
+	
+	/**
+	 * Constructor
+	 * @param url is the seed url
+	 * @param dir is the database directory
+	 * @param size is the maximum size of a document in MB
+	 * @param num is the maximum number of documents to download
+	 * @param engine is ENGINE_THREADS, ENGINE_NIO or ENGINE_VIRTUAL
+	 * @param durability of the commits of the crawled pages
+	 */
+	public XPathCrawler(String url, String dir, int size, int num, String engine, Durability durability) {
 		if (!url.startsWith("http"))
 			url = "http://" + url;
 		seed_url = url;
 		directory = dir;
 		max_size = size * 1024 * 1024;
 		max_number_of_files = num;
-		urlsqueue = new MyQueue(directory);
+		terminated = false;
+		urlsqueue = new Frontier(directory);
+		urlsqueue.set_dns_cache(DnsCache.get_shared());
 		urlsqueue.enqueue(url); // Add the seed URL to the queue
-		try {
-			Thread t = new Thread(this);
-			t.start();
+		crawler = new CrawlerThread(urlsqueue, max_size, max_number_of_files, directory, durability);
+		pipeline = new CrawlPipeline(crawler, urlsqueue);
+		crawler.set_pipeline(pipeline);
+		if (ENGINE_NIO.equals(engine)) {
+			try {
+				int workers = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+				threadpool.add(new Thread(new NioCrawler(urlsqueue, crawler, workers), "NioCrawler-dispatcher"));
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
-		catch(Exception e) {
-			e.printStackTrace();
+		else if (ENGINE_VIRTUAL.equals(engine)) {
+			threadpool.add(new Thread(new VirtualThreadCrawler(urlsqueue, crawler, MAX_VIRTUAL_IN_FLIGHT), "VirtualThreadCrawler-dispatcher"));
 		}
-		CrawlerThread crawler = new CrawlerThread(urlsqueue, max_size, max_number_of_files, directory);
-		for(int i=0; i<20; i++) {
-			Thread t = new Thread(crawler);
-			threadpool.add(t);
+		else {
+			for(int i=0; i<20; i++) {
+				Thread t = new Thread(crawler);
+				threadpool.add(t);
+			}
 		}
 		for (Thread t : threadpool) { //Start all the worker threads
 			t.start();
 		}
+		lifecycle = new Thread(this, "XPathCrawler-lifecycle");
+		lifecycle.start();
 	}
 	
+	/**
+	 * Waits for the workers, which end once the frontier hands out no more urls, and for the pages
+	 * still in the pipeline, and then flushes and closes the databases
+	 */
 	public void run() {
-		while (true) {
-			if (urlsqueue.isempty()) {
-				for (Thread t : threadpool) {
-					while (t.isAlive()) {
-						if (t.getState().toString().equals("WAITING")) {
-							t.stop();
-						}
-					}
-				}
-				break;
+		for (Thread t : threadpool) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
 			}
 		}
+		pipeline.close();
+		System.out.println("[FRONTIER] URLs admitted : " + urlsqueue.get_admitted_count() + " --- duplicates dropped : " + urlsqueue.get_dropped_count());
+		System.out.println("[DNS] Cache hits : " + DnsCache.get_shared().get_hits() + " --- misses : " + DnsCache.get_shared().get_misses());
+		crawler.closedb();
+		urlsqueue.closedb();
+		ConnectionPool.close_shared();
+		DnsCache.close_shared();
+		synchronized (this) {
+			terminated = true;
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Function to hold back the urls of the frontier. The urls in flight are still processed.
+	 */
+	public void pause() {
+		urlsqueue.pause();
+	}
+	
+	/**
+	 * Function to continue the crawl after pause()
+	 */
+	public void resume() {
+		urlsqueue.resume();
+	}
+	
+	public boolean is_paused() {
+		return urlsqueue.is_paused();
+	}
+	
+	/**
+	 * @return the number of urls being crawled at the moment
+	 */
+	public int get_in_flight() {
+		return urlsqueue.get_in_flight();
+	}
+	
+	/**
+	 * Function to end the crawl gracefully. No more urls are handed out, the urls in flight are
+	 * finished, and the databases are closed. Returns once all of that is done.
+	 */
+	public void shutdown() {
+		urlsqueue.stop();
+		await_termination();
+	}
+	
+	/**
+	 * Function to wait until the crawl has ended and the databases are closed
+	 */
+	public synchronized void await_termination() {
+		while (!terminated) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+	}
+	
+	public synchronized boolean is_terminated() {
+		return terminated;
 	}
 	
 	public String getDBDirectory() {
@@ -86,10 +199,26 @@ public class XPathCrawler implements Runnable {
 			System.exit(0);
 		}
 		int num = 1000;
-		if (args.length == 4) {
+		if (args.length >= 4) {
 			num = Integer.parseInt(args[3]);
 		}
-		XPathCrawler crawler = new XPathCrawler(args[0], args[1], Integer.parseInt(args[2]), num);
+		String engine = (args.length >= 5 ? args[4] : ENGINE_THREADS);
+		Durability durability = Durability.COMMIT_NO_SYNC; // Bulk crawl, with the log written to disk at each checkpoint
+		if (args.length >= 6) {
+			durability = PersistenceWriter.parse_durability(args[5]);
+			if (durability == null) {
+				System.err.println("Durability must be sync, write_no_sync or no_sync");
+				System.exit(0);
+			}
+		}
+		final XPathCrawler crawler = new XPathCrawler(args[0], args[1], Integer.parseInt(args[2]), num, engine, durability);
+		// On Ctrl-C, let the urls in flight finish and close the databases before the JVM exits
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				crawler.shutdown();
+			}
+		});
+		crawler.await_termination();
 		
 	}
 	
@@ -73,7 +73,7 @@ public class CreateChannelServlet extends HttpServlet{
 		}
 		directory = request.getSession().getServletContext().getInitParameter("BDBstore");
 		opendb();
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		env = wrapper.getEnvironment();
 		Users p = pk_index.users_pk.get(username);
 		ArrayList<String> channels = p.getChannels();
@@ -96,20 +96,26 @@ public class CreateChannelServlet extends HttpServlet{
 		c.setChannelName(channel_name);
 		c.setXsltURL(xslt_url);
 		c.setXPaths(xpaths);
-		c.setMatchedURLS(new ArrayList<String>());
-		Transaction txn2 = env.beginTransaction(null, null);
-		try {
-			pk_index.channels_pk.put(c); // Assuming that only unique channels are entered
-			txn2.commit();
-		}
-		catch(Exception e1) {
-			System.out.println("Transaction failed");
-			if (txn2 != null) {
-				txn2.abort();
-				txn2 = null;
+		// Log the new channel in the same transaction, so that the registries of the crawlers pick it up
+		ChannelChange change = new ChannelChange();
+		change.setChannelName(channel_name);
+		change.setXPaths(xpaths);
+		synchronized (ChannelRegistry.LOG_LOCK) { // The change is committed before another one is given a version
+			Transaction txn2 = env.beginTransaction(null, null);
+			try {
+				pk_index.channels_pk.put(txn2, c); // Assuming that only unique channels are entered
+				pk_index.channel_changes_pk.put(txn2, change);
+				txn2.commit();
+				ChannelRegistry.notify_changed();
+			}
+			catch(Exception e1) {
+				System.out.println("Transaction failed");
+				if (txn2 != null) {
+					txn2.abort();
+					txn2 = null;
+				}
 			}
 		}
-		wrapper.shutdown(); // Close the database
 		response.sendRedirect("NewChannelSuccess.html");
 		out.close();
 	}
@@ -117,9 +123,19 @@ public class CreateChannelServlet extends HttpServlet{
 	/**
 	 * Function that opens the database
 	 */
-	public void opendb() {
-		wrapper = new DBWrapper();
-		wrapper.setup(directory);
+	public synchronized void opendb() {
+		if (wrapper == null) { // Opened once and kept for the life of the servlet
+			wrapper = new DBWrapper();
+			wrapper.setup(directory);
+		}
+	}
+
+	/**
+	 * Function that lets go of the database when the servlet is taken out of service
+	 */
+	public void destroy() {
+		if (wrapper != null)
+			wrapper.shutdown();
 	}
 
 }
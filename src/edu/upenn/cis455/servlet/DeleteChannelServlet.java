@@ -42,7 +42,7 @@ public class DeleteChannelServlet extends HttpServlet{
 		out.println("<body>");
 		directory = request.getSession().getServletContext().getInitParameter("BDBstore");
 		opendb();
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		Users p = pk_index.users_pk.get(username);
 		ArrayList<String> channels = p.getChannels();
 		if (channels.size() > 0) {
@@ -55,7 +55,6 @@ public class DeleteChannelServlet extends HttpServlet{
 			out.println("<p>You have no channels to delete</p><br><br>Go back to <a href=\"HomePage.html\">HomePage</a></body></html>");
 		}
 		out.close();
-		wrapper.shutdown();
 	}
 
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -64,7 +63,7 @@ public class DeleteChannelServlet extends HttpServlet{
 		channel_name = request.getParameter("cname");
 		directory = request.getSession().getServletContext().getInitParameter("BDBstore");
 		opendb();
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		env = wrapper.getEnvironment();
 		Users p = pk_index.users_pk.get(username);
 		ArrayList<String> channels = p.getChannels();
@@ -88,8 +87,27 @@ public class DeleteChannelServlet extends HttpServlet{
 				txn = null;
 			}
 		}
-		pk_index.channels_pk.delete(channel_name);
-		wrapper.shutdown(); // Close the database
+		// Log the deletion in the same transaction, so that the registries of the crawlers drop the channel
+		ChannelChange change = new ChannelChange();
+		change.setChannelName(channel_name);
+		change.setDeleted(true);
+		synchronized (ChannelRegistry.LOG_LOCK) { // The change is committed before another one is given a version
+			Transaction txn2 = env.beginTransaction(null, null);
+			try {
+				pk_index.channels_pk.delete(txn2, channel_name);
+				pk_index.channel_matches_by_channel.delete(txn2, channel_name);
+				pk_index.channel_changes_pk.put(txn2, change);
+				txn2.commit();
+				ChannelRegistry.notify_changed();
+			}
+			catch(Exception e) {
+				System.out.println("Transaction failed");
+				if (txn2 != null) {
+					txn2.abort();
+					txn2 = null;
+				}
+			}
+		}
 		out.println("<!DOCTYPE html><html><head></head><body><font style=\"color: green\">Channel delete successful</font><br><br>Go back to <a href=\"HomePage.html\">HomePage</a></body></html>");
 		out.close();
 	}
@@ -97,9 +115,19 @@ public class DeleteChannelServlet extends HttpServlet{
 	/**
 	 * Function that opens the database
 	 */
-	public void opendb() {
-		wrapper = new DBWrapper();
-		wrapper.setup(directory);
+	public synchronized void opendb() {
+		if (wrapper == null) { // Opened once and kept for the life of the servlet
+			wrapper = new DBWrapper();
+			wrapper.setup(directory);
+		}
+	}
+
+	/**
+	 * Function that lets go of the database when the servlet is taken out of service
+	 */
+	public void destroy() {
+		if (wrapper != null)
+			wrapper.shutdown();
 	}
 
 }
@@ -12,6 +12,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.sleepycat.persist.EntityCursor;
+
 import edu.upenn.cis455.storage.*;
 
 public class DisplayChannelServlet extends HttpServlet{
@@ -29,7 +31,12 @@ public class DisplayChannelServlet extends HttpServlet{
 		Channels channel = pk_index.channels_pk.get(channelname);
 		String xslt_url = channel.getXsltURL();
 		String xslt_line = "<?xml-stylesheet type=\"text/xsl\" href=\""+xslt_url+"\"?>";
-		ArrayList<String> urls = channel.getMatchedURLS();
+		ArrayList<String> urls = new ArrayList<String>();
+		EntityCursor<ChannelMatch> matches = pk_index.channel_matches_by_channel.subIndex(channelname).entities();
+		for (ChannelMatch match : matches) {
+			urls.add(match.getURL());
+		}
+		matches.close();
 		if (urls.size() == 0) {
 			out.println("<html><body><p>No matches for this channel!</p></body></html>");
 		}
@@ -37,9 +44,12 @@ public class DisplayChannelServlet extends HttpServlet{
 			StringBuilder sb = new StringBuilder();
 			sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"rsl.xsl\"><xsl:template match=\"/\"><documentcollection>");
 			//sb.append(xslt_line+"\n");
+			PageStore page_store = new PageStore(pk_index);
 			for (String url : urls) {
 				Crawled_URLS crawled_url = pk_index.crawled_urls_pk.get(url);
-				String document = crawled_url.getContent();
+				String document = page_store.get(crawled_url.getContentHash());
+				if (document == null)
+					document = "";
 				String url_from_db = crawled_url.getURL(); // url_from_db is same as url
 				long last_crawled_time = crawled_url.getLastCrawledTime();
 				String last_crawled = getDate(last_crawled_time);
@@ -71,10 +81,12 @@ public class DisplayChannelServlet extends HttpServlet{
 	/**
 	 * Function that opens the database
 	 */
-	public void opendb() {
-		wrapper = new DBWrapper();
-		wrapper.setup(directory);
-		pk_index = new Indices(wrapper.getStore());
+	public synchronized void opendb() {
+		if (wrapper == null) { // Opened once and kept for the life of the servlet
+			wrapper = new DBWrapper();
+			wrapper.setup(directory);
+		}
+		pk_index = wrapper.getIndices();
 	}
 	
 	String getDate(long lastCrawlTime)
@@ -87,4 +99,13 @@ public class DisplayChannelServlet extends HttpServlet{
 		String timestamp = date + "T" + time;
 		return timestamp;
 	}
+
+	/**
+	 * Function that lets go of the database when the servlet is taken out of service
+	 */
+	public void destroy() {
+		if (wrapper != null)
+			wrapper.shutdown();
+	}
+
 }
@@ -53,11 +53,21 @@ public class DisplayChannelsServlet extends HttpServlet{
 	/**
 	 * Function that opens the database
 	 */
-	public void opendb() {
-		wrapper = new DBWrapper();
-		wrapper.setup(directory);
+	public synchronized void opendb() {
+		if (wrapper == null) { // Opened once and kept for the life of the servlet
+			wrapper = new DBWrapper();
+			wrapper.setup(directory);
+		}
 		env = wrapper.getEnvironment();
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
+	}
+
+	/**
+	 * Function that lets go of the database when the servlet is taken out of service
+	 */
+	public void destroy() {
+		if (wrapper != null)
+			wrapper.shutdown();
 	}
 
 }
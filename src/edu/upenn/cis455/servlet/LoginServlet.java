@@ -49,9 +49,11 @@ public class LoginServlet extends HttpServlet{
 	/**
 	 * Function that opens the database
 	 */
-	public void opendb() {
-		wrapper = new DBWrapper();
-		wrapper.setup(directory);
+	public synchronized void opendb() {
+		if (wrapper == null) { // Opened once and kept for the life of the servlet
+			wrapper = new DBWrapper();
+			wrapper.setup(directory);
+		}
 	}
 
 	/**
@@ -59,7 +61,7 @@ public class LoginServlet extends HttpServlet{
 	 * @return true if username already exists and false otherwise
 	 */
 	public boolean check_if_username_exists() {
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		try {
 			db_username = pk_index.users_pk.get(username).getUsername(); 
 		}
@@ -82,4 +84,12 @@ public class LoginServlet extends HttpServlet{
 			return false;
 	}
 
+	/**
+	 * Function that lets go of the database when the servlet is taken out of service
+	 */
+	public void destroy() {
+		if (wrapper != null)
+			wrapper.shutdown();
+	}
+
 }
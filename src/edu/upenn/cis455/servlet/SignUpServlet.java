@@ -50,20 +50,11 @@ public class SignUpServlet extends HttpServlet{
 	/**
 	 * Function that opens the database
 	 */
-	public void opendb() {
-		wrapper = new DBWrapper();
-		wrapper.setup(directory);
-	}
-
-	/**
-	 * Function that closes the database
-	 */
-	public void closedb() {
-		ArrayList<String> c = pk_index.users_pk.get(username).getChannels();
-		for (String channel : c) {
-			System.out.println(c);
+	public synchronized void opendb() {
+		if (wrapper == null) { // Opened once and kept for the life of the servlet
+			wrapper = new DBWrapper();
+			wrapper.setup(directory);
 		}
-		wrapper.shutdown();
 	}
 
 	/**
@@ -71,7 +62,7 @@ public class SignUpServlet extends HttpServlet{
 	 * @return true if username already exists and false otherwise
 	 */
 	public boolean check_if_username_exists() {
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		try {
 			String uname = pk_index.users_pk.get(username).getUsername(); 
 		}
@@ -85,7 +76,7 @@ public class SignUpServlet extends HttpServlet{
 	 * Function to add the new user to the database
 	 */
 	public void store_new_user() {
-		pk_index = new Indices(wrapper.getStore());
+		pk_index = wrapper.getIndices();
 		env = wrapper.getEnvironment();
 		Users p = new Users();
 		p.setUsername(username);
@@ -106,7 +97,14 @@ public class SignUpServlet extends HttpServlet{
 			}
 		}
 		//System.out.println("Insertion to Password successful");
-		closedb();
+	}
+
+	/**
+	 * Function that lets go of the database when the servlet is taken out of service
+	 */
+	public void destroy() {
+		if (wrapper != null)
+			wrapper.shutdown();
 	}
 
 }
@@ -0,0 +1,53 @@
+package edu.upenn.cis455.storage;
+
+import java.util.ArrayList;
+
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+
+/**
+ * An entry of the change log of the channels, written together with every channel that is created or deleted,
+ * so that a ChannelRegistry can catch up on the changes without reading all the channels again
+ */
+@Entity
+public class ChannelChange {
+
+	@PrimaryKey(sequence="ChannelChange")
+	private Long version; // Assigned in the order the changes are written
+	private String channel_name;
+	private ArrayList<String> xpaths; // Xpaths of a created channel
+	private boolean deleted;
+
+	public ChannelChange() {
+		xpaths = new ArrayList<String>();
+	}
+
+	public long getVersion() {
+		return version.longValue();
+	}
+
+	public void setChannelName(String data) {
+		channel_name = data;
+	}
+
+	public String getChannelName() {
+		return channel_name;
+	}
+
+	public void setXPaths(ArrayList<String> paths) {
+		xpaths = paths;
+	}
+
+	public ArrayList<String> getXPaths() {
+		return xpaths;
+	}
+
+	public void setDeleted(boolean data) {
+		deleted = data;
+	}
+
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+}
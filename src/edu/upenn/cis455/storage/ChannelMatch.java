@@ -0,0 +1,42 @@
+package edu.upenn.cis455.storage;
+
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+import com.sleepycat.persist.model.Relationship;
+import com.sleepycat.persist.model.SecondaryKey;
+
+/**
+ * A url that matched a channel, stored as a record of its own so that a new match only appends one small record
+ * instead of rewriting the channel with every url it has matched
+ */
+@Entity
+public class ChannelMatch {
+
+	@PrimaryKey
+	private ChannelMatchKey key;
+	@SecondaryKey(relate=Relationship.MANY_TO_ONE)
+	private String channel_name; // Same as in the key, indexed to get all the matches of a channel
+	private Long matched_time;
+
+	public void setKey(String channel, String url) {
+		key = new ChannelMatchKey(channel, url);
+		channel_name = channel;
+	}
+
+	public String getChannelName() {
+		return channel_name;
+	}
+
+	public String getURL() {
+		return key.getURL();
+	}
+
+	public void setMatchedTime(long time) {
+		matched_time = Long.valueOf(time);
+	}
+
+	public long getMatchedTime() {
+		return matched_time.longValue();
+	}
+
+}
@@ -0,0 +1,35 @@
+package edu.upenn.cis455.storage;
+
+import com.sleepycat.persist.model.KeyField;
+import com.sleepycat.persist.model.Persistent;
+
+/**
+ * Key of a ChannelMatch: the channel and the url that matched it. Keys sort by channel first, so the matches
+ * of a channel are stored next to each other.
+ */
+@Persistent
+public class ChannelMatchKey {
+
+	@KeyField(1)
+	private String channel_name;
+	@KeyField(2)
+	private String url;
+
+	public ChannelMatchKey() {
+
+	}
+
+	public ChannelMatchKey(String channel_name, String url) {
+		this.channel_name = channel_name;
+		this.url = url;
+	}
+
+	public String getChannelName() {
+		return channel_name;
+	}
+
+	public String getURL() {
+		return url;
+	}
+
+}
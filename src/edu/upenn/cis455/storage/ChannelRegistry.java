@@ -0,0 +1,176 @@
+package edu.upenn.cis455.storage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sleepycat.je.CursorConfig;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.persist.EntityCursor;
+
+/**
+ * In-memory registry of the channels and their xpaths. The channels are read from the store once; after that
+ * the registry only reads the entries of the change log it has not applied yet, at most once per REFRESH_INTERVAL
+ * or right away when a change in the same process calls notify_changed(). Readers get an immutable snapshot,
+ * which changes only when a channel was created or deleted.
+ * The writers of the change log hold LOG_LOCK from the put of a change until its commit, so the changes commit
+ * in the order of their versions and a refresh never skips a change that commits after a later one. The log is
+ * compacted whenever a registry loads the channels: only the latest change of each channel is kept, so the log
+ * grows with the number of channel names ever used rather than with every create and delete.
+ */
+public class ChannelRegistry {
+
+	public static final long REFRESH_INTERVAL = 1000; // Milliseconds between two reads of the change log
+
+	public static final Object LOG_LOCK = new Object(); // Held by the writers of the change log until their change is committed
+
+	private static final AtomicLong notifications = new AtomicLong(); // Number of changes made in this process
+
+	private LinkedHashMap<String, List<String>> channels; // Xpaths of each channel
+	private long version; // Version of the last change applied
+	private long seen_notifications;
+	private long last_refresh;
+	private volatile ChannelSnapshot snapshot;
+
+	public ChannelRegistry() {
+		channels = new LinkedHashMap<String, List<String>>();
+		version = 0;
+		seen_notifications = 0;
+		last_refresh = 0;
+		snapshot = null;
+	}
+
+	/**
+	 * Function for the writers of channels to let the registries of this process know of a change at once,
+	 * instead of at their next refresh
+	 */
+	public static void notify_changed() {
+		notifications.incrementAndGet();
+	}
+
+	/**
+	 * Function to get the current channels, catching up on the change log first if it is time to
+	 * @param pk_index are the indices to read the channels and the change log through
+	 * @return
+	 */
+	public synchronized ChannelSnapshot current(Indices pk_index) {
+		long now = System.currentTimeMillis();
+		long notified = notifications.get();
+		try {
+			if (snapshot == null) {
+				load(pk_index);
+			}
+			else if (notified != seen_notifications || now - last_refresh >= REFRESH_INTERVAL) {
+				refresh(pk_index);
+			}
+			seen_notifications = notified;
+			last_refresh = now;
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			if (snapshot == null) // No channels until they can be read
+				return new ChannelSnapshot(0, new ArrayList<String>(), new ArrayList<List<String>>());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return the last snapshot published, or null if the channels have not been read yet
+	 */
+	public ChannelSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Function to read all the channels. The version is read first, so that a change made while the channels
+	 * are read is applied again at the next refresh, which does no harm.
+	 * @param pk_index
+	 */
+	private void load(Indices pk_index) {
+		compact(pk_index);
+		EntityCursor<Long> versions = pk_index.channel_changes_pk.keys();
+		try {
+			Long last = versions.last();
+			version = (last == null ? 0 : last.longValue());
+		}
+		finally {
+			versions.close();
+		}
+		channels.clear();
+		EntityCursor<Channels> all_channels = pk_index.channels_pk.entities();
+		try {
+			for (Channels channel : all_channels)
+				channels.put(channel.getChannelName(), new ArrayList<String>(channel.getXPaths()));
+		}
+		finally {
+			all_channels.close();
+		}
+		publish();
+	}
+
+	/**
+	 * Function to apply the entries of the change log written since the last one applied
+	 * @param pk_index
+	 */
+	private void refresh(Indices pk_index) {
+		boolean changed = false;
+		EntityCursor<ChannelChange> changes = pk_index.channel_changes_pk.entities(version, false, null, false);
+		try {
+			for (ChannelChange change : changes) {
+				if (change.isDeleted())
+					channels.remove(change.getChannelName());
+				else
+					channels.put(change.getChannelName(), new ArrayList<String>(change.getXPaths()));
+				version = change.getVersion();
+				changed = true;
+			}
+		}
+		finally {
+			changes.close();
+		}
+		if (changed)
+			publish();
+	}
+
+	/**
+	 * Function to delete the changes of the log that a later change of the same channel supersedes. A registry
+	 * that is behind still ends with the right channels, since it applies the latest change of each channel
+	 * made after its version.
+	 * @param pk_index
+	 */
+	private void compact(Indices pk_index) {
+		Transaction txn = pk_index.channel_changes_pk.getDatabase().getEnvironment().beginTransaction(null, null);
+		EntityCursor<ChannelChange> changes = null;
+		try {
+			changes = pk_index.channel_changes_pk.entities(txn, CursorConfig.DEFAULT);
+			HashSet<String> seen = new HashSet<String>();
+			for (ChannelChange change = changes.last(); change != null; change = changes.prev()) {
+				if (!seen.add(change.getChannelName()))
+					changes.delete();
+			}
+			changes.close();
+			changes = null;
+			txn.commit();
+		}
+		catch (Exception e) {
+			e.printStackTrace(); // The log is compacted at the next load instead
+			if (changes != null)
+				changes.close();
+			txn.abort();
+		}
+	}
+
+	private void publish() {
+		ArrayList<String> channel_names = new ArrayList<String>();
+		ArrayList<List<String>> channel_xpaths = new ArrayList<List<String>>();
+		for (Map.Entry<String, List<String>> channel : channels.entrySet()) {
+			channel_names.add(channel.getKey());
+			channel_xpaths.add(channel.getValue());
+		}
+		snapshot = new ChannelSnapshot(version, channel_names, channel_xpaths);
+	}
+
+}
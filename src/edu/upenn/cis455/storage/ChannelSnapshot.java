@@ -0,0 +1,63 @@
+package edu.upenn.cis455.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The channels and their xpaths as of one version of the change log. A snapshot is never changed once it is
+ * published, so the xpaths of all the channels can be compiled once per snapshot and shared by all the threads.
+ */
+public class ChannelSnapshot {
+
+	private final long version;
+	private final List<String> channel_names;
+	private final List<String> xpaths; // Xpaths of all the channels, in the order of the channels
+	private final int[] first_xpath; // Index in xpaths of the first xpath of each channel, plus the total at the end
+
+	public ChannelSnapshot(long version, List<String> channel_names, List<List<String>> channel_xpaths) {
+		this.version = version;
+		this.channel_names = Collections.unmodifiableList(new ArrayList<String>(channel_names));
+		ArrayList<String> all_xpaths = new ArrayList<String>();
+		first_xpath = new int[channel_names.size() + 1];
+		for (int i=0; i<channel_xpaths.size(); i++) {
+			first_xpath[i] = all_xpaths.size();
+			all_xpaths.addAll(channel_xpaths.get(i));
+		}
+		first_xpath[channel_names.size()] = all_xpaths.size();
+		xpaths = Collections.unmodifiableList(all_xpaths);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public int size() {
+		return channel_names.size();
+	}
+
+	public String getChannelName(int i) {
+		return channel_names.get(i);
+	}
+
+	public List<String> getXPaths() {
+		return xpaths;
+	}
+
+	/**
+	 * @param i is the index of a channel
+	 * @return the index in getXPaths() of the first xpath of the channel
+	 */
+	public int getFirstXPath(int i) {
+		return first_xpath[i];
+	}
+
+	/**
+	 * @param i is the index of a channel
+	 * @return the index in getXPaths() just past the last xpath of the channel
+	 */
+	public int getEndXPath(int i) {
+		return first_xpath[i + 1];
+	}
+
+}
@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import com.sleepycat.persist.model.Entity;
 import com.sleepycat.persist.model.PrimaryKey;
 
-@Entity
+@Entity(version=1) // Version 1 moved the matched urls to ChannelMatch
 public class Channels {
 
 	@PrimaryKey
@@ -13,10 +13,8 @@ public class Channels {
 	private String xslt_url;
 	private String username;
 	ArrayList<String> xpaths;
-	ArrayList<String> matched_urls;
 
 	public Channels() {
-		matched_urls = new ArrayList<String>();
 		xpaths = new ArrayList<String>();
 	}
 	
@@ -28,14 +26,6 @@ public class Channels {
 		return channel_name;
 	}
 	
-	public void setMatchedURLS(ArrayList<String> docs) {
-		matched_urls = docs;
-	}
-	
-	public ArrayList<String> getMatchedURLS() {
-		return matched_urls;
-	}
-
 	public void setXPaths(ArrayList<String> paths) {
 		xpaths = paths;
 	}
@@ -0,0 +1,99 @@
+package edu.upenn.cis455.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process LRU cache in front of the Crawled_URLS store. The records only hold the metadata of the pages,
+ * so a probe never reads a body, and urls that were never crawled are remembered too, since most of the urls
+ * handed out by the frontier are new. The records written through put() replace the cached ones, so the cache
+ * stays current as long as the crawler writes its records through it. The cache keeps copies of the records and
+ * hands out copies, so that a record the caller changes or queues for writing is never shared with another thread.
+ */
+public class CrawledURLCache {
+
+	public static final int DEFAULT_CAPACITY = 50000; // Urls remembered at most
+
+	private static final Crawled_URLS NOT_CRAWLED = new Crawled_URLS(); // Cached for the urls that are not in the store
+
+	private final Indices pk_index;
+	private final LinkedHashMap<String, Crawled_URLS> cache;
+	private long hits;
+	private long misses;
+
+	public CrawledURLCache(Indices pk_index) {
+		this(pk_index, DEFAULT_CAPACITY);
+	}
+
+	public CrawledURLCache(Indices pk_index, final int capacity) {
+		this.pk_index = pk_index;
+		// Access order, so that the eldest entry is the least recently used one
+		cache = new LinkedHashMap<String, Crawled_URLS>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, Crawled_URLS> eldest) {
+				return size() > capacity;
+			}
+		};
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Function to get the metadata of a url
+	 * @param url
+	 * @return the record of the url, or null if the url has never been crawled
+	 */
+	public Crawled_URLS get(String url) {
+		synchronized (this) {
+			Crawled_URLS crawled_url = cache.get(url);
+			if (crawled_url != null) {
+				hits++;
+				return (crawled_url == NOT_CRAWLED ? null : copy_of(crawled_url));
+			}
+			misses++;
+		}
+		Crawled_URLS crawled_url = pk_index.crawled_urls_pk.get(url); // Read outside the lock
+		synchronized (this) {
+			if (!cache.containsKey(url)) // Unless put() got there first
+				cache.put(url, crawled_url == null ? NOT_CRAWLED : copy_of(crawled_url));
+			else
+				crawled_url = cache.get(url);
+			return (crawled_url == null || crawled_url == NOT_CRAWLED ? null : copy_of(crawled_url));
+		}
+	}
+
+	/**
+	 * @param url
+	 * @return true if the url has been crawled before
+	 */
+	public boolean contains(String url) {
+		return get(url) != null;
+	}
+
+	/**
+	 * Function to record the metadata of a url that is being written to the store
+	 * @param crawled_url
+	 */
+	public synchronized void put(Crawled_URLS crawled_url) {
+		cache.put(crawled_url.getURL(), copy_of(crawled_url));
+	}
+
+	private static Crawled_URLS copy_of(Crawled_URLS crawled_url) {
+		Crawled_URLS copy = new Crawled_URLS();
+		copy.setURL(crawled_url.getURL());
+		copy.setLastCrawledTime(crawled_url.getLastCrawledTime());
+		copy.setContentHash(crawled_url.getContentHash());
+		copy.setContentLength(crawled_url.getContentLength());
+		copy.setContentType(crawled_url.getContentType());
+		copy.setETag(crawled_url.getETag());
+		return copy;
+	}
+
+	public synchronized long get_hits() {
+		return hits;
+	}
+
+	public synchronized long get_misses() {
+		return misses;
+	}
+
+}
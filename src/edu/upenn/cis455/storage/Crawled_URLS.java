@@ -3,14 +3,16 @@ package edu.upenn.cis455.storage;
 import com.sleepycat.persist.model.Entity;
 import com.sleepycat.persist.model.PrimaryKey;
 
-@Entity
+@Entity(version = 3) // Version 2 moved the content to PageStore, version 3 added the content length
 public class Crawled_URLS {
 
 	@PrimaryKey
 	private String url;
 	private Long last_crawled_time;
-	private String content;
+	private String content_hash; // Key of the content in the PageStore
+	private int content_length; // Length of the content in bytes
 	private String content_type;
+	private String etag; // Entity tag sent by the server, used for conditional requests
 	
 	public void setLastCrawledTime(long time) {
 		last_crawled_time = new Long(time);
@@ -36,12 +38,28 @@ public class Crawled_URLS {
 		return content_type;
 	}
 	
-	public void setContent(String data) {
-		content = data;
+	public void setContentHash(String data) {
+		content_hash = data;
 	}
 
-	public String getContent() {
-		return content;
+	public String getContentHash() {
+		return content_hash;
+	}
+
+	public void setContentLength(int data) {
+		content_length = data;
+	}
+
+	public int getContentLength() {
+		return content_length;
+	}
+
+	public void setETag(String data) {
+		etag = data;
+	}
+
+	public String getETag() {
+		return etag;
 	}
 } 
 
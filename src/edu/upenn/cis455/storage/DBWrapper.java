@@ -1,50 +1,150 @@
 package edu.upenn.cis455.storage;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
 import com.sleepycat.je.Environment;
 import com.sleepycat.persist.EntityStore;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.EnvironmentConfig;
 import com.sleepycat.persist.StoreConfig; 
+import com.sleepycat.persist.evolve.Deleter;
+import com.sleepycat.persist.evolve.Mutations;
 
+/**
+ * Handle on the environment and entity store of a database directory. The environment of a directory is opened
+ * by the first wrapper set up on it and shared by all the wrappers of the process, and is closed when the last
+ * of them is shut down, so that the servlets and the components of the crawler never open it twice.
+ */
 public class DBWrapper {
 
-	private static String envDirectory = null;
-	private static File envHome = null;
-	private static Environment env;
-	private static EntityStore store;
+	public static final int DEFAULT_CACHE_PERCENT = 40; // Share of the heap used by the cache of an environment
+	public static final long DEFAULT_LOG_FILE_MAX = 64L * 1024 * 1024; // Size of a log file in bytes
+	public static final int DEFAULT_LOG_BUFFER_SIZE = 4 * 1024 * 1024; // Total size of the log buffers in bytes
+
+	private static final HashMap<String, SharedEnvironment> environments = new HashMap<String, SharedEnvironment>();
+	private static int cache_percent = DEFAULT_CACHE_PERCENT;
+	private static long log_file_max = DEFAULT_LOG_FILE_MAX;
+	private static int log_buffer_size = DEFAULT_LOG_BUFFER_SIZE;
+
+	private SharedEnvironment shared; // Environment used by this wrapper, null until setup and after shutdown
 
-	/* TODO: write object store wrapper for BerkeleyDB */
+	/**
+	 * Function to set the cache and log settings of the environments opened from now on
+	 * @param cache_percent is the share of the heap used by the cache, in percent
+	 * @param log_file_max is the size of a log file in bytes
+	 * @param log_buffer_size is the total size of the log buffers in bytes
+	 */
+	public static synchronized void configure(int cache_percent, long log_file_max, int log_buffer_size) {
+		DBWrapper.cache_percent = cache_percent;
+		DBWrapper.log_file_max = log_file_max;
+		DBWrapper.log_buffer_size = log_buffer_size;
+	}
 
+	/**
+	 * Function to open the database in a directory, or to share it if it is already open in this process
+	 * @param directory
+	 * @throws DatabaseException
+	 */
 	public void setup(String directory) throws DatabaseException {
+		if (shared != null)
+			return;
+		synchronized (DBWrapper.class) {
+			String path = directory;
+			try {
+				path = new File(directory).getCanonicalPath();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+			SharedEnvironment environment = environments.get(path);
+			if (environment == null) {
+				environment = open(path);
+				if (environment == null)
+					return;
+				environments.put(path, environment);
+			}
+			environment.acquire();
+			shared = environment;
+		}
+	}
+
+	/**
+	 * Function to open the environment and the entity store of a directory
+	 * @param path
+	 * @return
+	 */
+	private static SharedEnvironment open(String path) {
 		EnvironmentConfig envConfig = new EnvironmentConfig();
 		StoreConfig storeConfig = new StoreConfig();
 		envConfig.setAllowCreate(true);
 		envConfig.setTransactional(true);
+		envConfig.setCachePercent(cache_percent);
+		envConfig.setConfigParam(EnvironmentConfig.LOG_FILE_MAX, Long.toString(log_file_max));
+		envConfig.setConfigParam(EnvironmentConfig.LOG_TOTAL_BUFFER_BYTES, Integer.toString(log_buffer_size));
 		storeConfig.setAllowCreate(true);
 		storeConfig.setTransactional(true);
+		storeConfig.setMutations(get_mutations());
+		Environment env = null;
 		try {
-			envDirectory = directory;
-			envHome = new File(envDirectory);
-			env = new Environment(envHome, envConfig);
-			store = new EntityStore(env, "EntityStore", storeConfig);
+			env = new Environment(new File(path), envConfig);
+			EntityStore store = new EntityStore(env, "EntityStore", storeConfig);
+			return new SharedEnvironment(path, env, store);
 		}
 		catch (Exception e) {
 			System.out.println("Error creating database. Please check directory path");
+			if (env != null)
+				env.close();
+			return null;
 		}
 	}
 
+	/**
+	 * Function to get the changes made to the entity classes that the store has to be told about
+	 * @return
+	 */
+	private static Mutations get_mutations() {
+		Mutations mutations = new Mutations();
+		// Version 1 of Channels moved the matched urls to ChannelMatch
+		mutations.addDeleter(new Deleter(Channels.class.getName(), 0, "matched_urls"));
+		// Version 2 of Crawled_URLS moved the content to PageStore
+		mutations.addDeleter(new Deleter(Crawled_URLS.class.getName(), 1, "content"));
+		return mutations;
+	}
+
 	public Environment getEnvironment() {
-		return env;
+		return (shared == null ? null : shared.getEnvironment());
 	}
 
 	public EntityStore getStore() {
-		return store;
+		return (shared == null ? null : shared.getStore());
 	}
 
+	/**
+	 * @return the indices of the store, shared by all the wrappers of the directory
+	 */
+	public Indices getIndices() {
+		return (shared == null ? null : shared.getIndices());
+	}
+
+	/**
+	 * Function to let go of the database. The environment is closed once no wrapper uses it any more.
+	 * Calling it again does nothing.
+	 * @throws DatabaseException
+	 */
 	public void shutdown() throws DatabaseException {
-		store.close();
-		env.close();
+		synchronized (DBWrapper.class) {
+			if (shared == null)
+				return;
+			SharedEnvironment environment = shared;
+			shared = null;
+			if (environment.release()) {
+				environments.remove(environment.getDirectory());
+				environment.getStore().close();
+				environment.getEnvironment().close();
+			}
+		}
 	} 
 
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.persist.EntityStore;
 import com.sleepycat.persist.PrimaryIndex;
+import com.sleepycat.persist.SecondaryIndex;
 
 public class Indices {
 
@@ -13,6 +14,10 @@ public class Indices {
 	public PrimaryIndex<String, Robots> robots_pk;
 	public PrimaryIndex<String, Crawled_URLS> crawled_urls_pk;
 	public PrimaryIndex<String, URLS> urls_pk;
+	public PrimaryIndex<Long, ChannelChange> channel_changes_pk;
+	public PrimaryIndex<ChannelMatchKey, ChannelMatch> channel_matches_pk;
+	public SecondaryIndex<String, ChannelMatchKey, ChannelMatch> channel_matches_by_channel;
+	public PrimaryIndex<String, PageContent> pages_pk;
 
 	public Indices(EntityStore store) throws DatabaseException {
 		users_pk = store.getPrimaryIndex(String.class, Users.class);
@@ -21,6 +26,10 @@ public class Indices {
 		robots_pk = store.getPrimaryIndex(String.class, Robots.class);
 		crawled_urls_pk = store.getPrimaryIndex(String.class, Crawled_URLS.class);
 		urls_pk = store.getPrimaryIndex(String.class, URLS.class);
+		channel_changes_pk = store.getPrimaryIndex(Long.class, ChannelChange.class);
+		channel_matches_pk = store.getPrimaryIndex(ChannelMatchKey.class, ChannelMatch.class);
+		channel_matches_by_channel = store.getSecondaryIndex(channel_matches_pk, String.class, "channel_name");
+		pages_pk = store.getPrimaryIndex(String.class, PageContent.class);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package edu.upenn.cis455.storage;
+
+import com.sleepycat.persist.model.Entity;
+import com.sleepycat.persist.model.PrimaryKey;
+
+/**
+ * The body of a crawled page, compressed and stored under the hash of its content, so that pages with the
+ * same content are stored once
+ */
+@Entity
+public class PageContent {
+
+	@PrimaryKey
+	private String hash; // Hash of the uncompressed content
+	private byte[] data; // Content compressed with deflate
+	private int length; // Length of the uncompressed content in bytes
+
+	public PageContent() {
+
+	}
+
+	public PageContent(String hash, byte[] data, int length) {
+		this.hash = hash;
+		this.data = data;
+		this.length = length;
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+}
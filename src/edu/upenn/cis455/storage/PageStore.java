@@ -0,0 +1,161 @@
+package edu.upenn.cis455.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.sleepycat.je.Transaction;
+
+/**
+ * Store of the bodies of the crawled pages. A body is compressed with deflate and stored under the SHA-1 hash
+ * of its content, and the record of the url only keeps the hash, so that reading the record of a url does not
+ * read its body and pages that mirror each other share one body.
+ */
+public class PageStore {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Indices pk_index;
+
+	public PageStore(Indices pk_index) {
+		this.pk_index = pk_index;
+	}
+
+	/**
+	 * @param content
+	 * @return the bytes of the content that are hashed and stored
+	 */
+	public static byte[] encode(String content) {
+		return content.getBytes(UTF8);
+	}
+
+	/**
+	 * Function to get the key of a body
+	 * @param bytes of the body
+	 * @return the SHA-1 hash of the bytes in hexadecimal
+	 */
+	public static String hash(byte[] bytes) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = digest.digest(bytes);
+		char[] hex = new char[hash.length * 2];
+		for (int i=0; i<hash.length; i++) {
+			hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX[hash[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Function to compress a body into the record stored for it
+	 * @param hash of the body
+	 * @param bytes of the body
+	 * @return
+	 */
+	public static PageContent compress(String hash, byte[] bytes) {
+		Deflater deflater = new Deflater();
+		deflater.setInput(bytes);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int count = deflater.deflate(buffer);
+			out.write(buffer, 0, count);
+		}
+		deflater.end();
+		return new PageContent(hash, out.toByteArray(), bytes.length);
+	}
+
+	/**
+	 * Function to get the body back from its record
+	 * @param page
+	 * @return the body, or null if the record is corrupt
+	 */
+	public static String decompress(PageContent page) {
+		byte[] bytes = inflate(page);
+		return (bytes == null ? null : new String(bytes, UTF8));
+	}
+
+	/**
+	 * Function to get the bytes of the body back from its record, as they were hashed
+	 * @param page
+	 * @return the bytes, or null if the record is corrupt
+	 */
+	public static byte[] inflate(PageContent page) {
+		Inflater inflater = new Inflater();
+		inflater.setInput(page.getData());
+		byte[] bytes = new byte[page.getLength()];
+		try {
+			int offset = 0;
+			while (offset < bytes.length && !inflater.finished()) {
+				int count = inflater.inflate(bytes, offset, bytes.length - offset);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				offset += count;
+			}
+			if (offset != bytes.length)
+				return null;
+		}
+		catch (DataFormatException e) {
+			e.printStackTrace();
+			return null;
+		}
+		finally {
+			inflater.end();
+		}
+		return bytes;
+	}
+
+	public boolean contains(String hash) {
+		return pk_index.pages_pk.contains(hash);
+	}
+
+	/**
+	 * Function to read a body
+	 * @param hash of the body
+	 * @return the body, or null if no body is stored under the hash
+	 */
+	public String get(String hash) {
+		if (hash == null)
+			return null;
+		PageContent page = pk_index.pages_pk.get(hash);
+		return (page == null ? null : decompress(page));
+	}
+
+	/**
+	 * Function to read the bytes of a body, which are UTF-8
+	 * @param hash of the body
+	 * @return the bytes, or null if no body is stored under the hash
+	 */
+	public byte[] get_bytes(String hash) {
+		if (hash == null)
+			return null;
+		PageContent page = pk_index.pages_pk.get(hash);
+		return (page == null ? null : inflate(page));
+	}
+
+	/**
+	 * Function to store a body unless the same body is stored already
+	 * @param txn
+	 * @param content
+	 * @return the hash to read the body back with
+	 */
+	public String put(Transaction txn, String content) {
+		byte[] bytes = encode(content);
+		String hash = hash(bytes);
+		if (!pk_index.pages_pk.contains(txn, hash, null)) // Checked in the transaction, which may hold the lock of the hash already
+			pk_index.pages_pk.putNoOverwrite(txn, compress(hash, bytes));
+		return hash;
+	}
+
+}
@@ -0,0 +1,75 @@
+package edu.upenn.cis455.storage;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.persist.PrimaryIndex;
+
+/**
+ * A write waiting in the queue of a PersistenceWriter, or a marker that is counted down once the writes
+ * queued before it have been committed
+ */
+class PendingWrite {
+
+	private final PrimaryIndex<Object, Object> index; // Null for a marker
+	private final Object entity;
+	private final boolean no_overwrite; // True to keep the record already stored under the key, if any
+	private final CountDownLatch committed; // Set for a marker
+	private Object key; // Key of the record, only set if the writer tracks the index
+
+	@SuppressWarnings("unchecked")
+	public PendingWrite(PrimaryIndex<?, ?> index, Object entity, boolean no_overwrite) {
+		this.index = (PrimaryIndex<Object, Object>) index;
+		this.entity = entity;
+		this.no_overwrite = no_overwrite;
+		committed = null;
+	}
+
+	public PendingWrite(CountDownLatch committed) {
+		index = null;
+		entity = null;
+		no_overwrite = false;
+		this.committed = committed;
+	}
+
+	public boolean is_marker() {
+		return committed != null;
+	}
+
+	public PrimaryIndex<Object, Object> getIndex() {
+		return index;
+	}
+
+	/**
+	 * Function to get the primary key of the record, which is kept once it has been read from the record
+	 * @return
+	 */
+	public Object key() {
+		if (key == null) {
+			DatabaseEntry entry = new DatabaseEntry();
+			index.getEntityBinding().objectToKey(entity, entry);
+			key = index.getKeyBinding().entryToObject(entry);
+		}
+		return key;
+	}
+
+	/**
+	 * Function to apply the write within a transaction
+	 * @param txn
+	 */
+	public void apply(Transaction txn) {
+		if (no_overwrite)
+			index.putNoOverwrite(txn, entity);
+		else
+			index.putNoReturn(txn, entity);
+	}
+
+	/**
+	 * Function to release the threads waiting on a marker
+	 */
+	public void release() {
+		committed.countDown();
+	}
+
+}
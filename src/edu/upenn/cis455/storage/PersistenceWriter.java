@@ -0,0 +1,307 @@
+package edu.upenn.cis455.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sleepycat.je.CheckpointConfig;
+import com.sleepycat.je.Durability;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.je.TransactionConfig;
+import com.sleepycat.persist.PrimaryIndex;
+
+/**
+ * Write-behind stage for the records of the crawler. Writers hand their records to a queue and go on; a single
+ * thread takes whatever has piled up, up to the batch size, and commits it in one transaction, so that many
+ * records share one commit. The durability of the commits is configurable: with Durability.COMMIT_NO_SYNC the
+ * log is only written to disk at the periodic checkpoints and when the writer is closed.
+ * The keys of the records queued for the indices the writer tracks are remembered until they are committed, so
+ * that a lookup can tell a record that is about to be written from one that does not exist.
+ */
+public class PersistenceWriter implements Runnable {
+
+	public static final int DEFAULT_BATCH_SIZE = 500; // Records committed in one transaction at most
+	public static final int DEFAULT_QUEUE_CAPACITY = 10000; // Records waiting at most, after which writers block
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 30000; // Milliseconds between two checkpoints
+
+	private final Environment env;
+	private final TransactionConfig txn_config;
+	private final boolean sync; // True if every commit is already written to disk
+	private final int batch_size;
+	private final long checkpoint_interval;
+	private final LinkedBlockingQueue<PendingWrite> queue;
+	private final Thread thread;
+	private final HashMap<PrimaryIndex<?, ?>, HashMap<Object, Integer>> pending; // Keys queued per tracked index, with their number of writes
+	private volatile boolean closed;
+	private long last_checkpoint;
+	private long write_count;
+	private long commit_count;
+
+	public PersistenceWriter(Environment env, Durability durability) {
+		this(env, durability, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Constructor. Starts the thread of the writer.
+	 * @param env
+	 * @param durability of the commits
+	 * @param batch_size is the largest number of records committed in one transaction
+	 * @param queue_capacity is the largest number of records waiting to be written
+	 * @param checkpoint_interval is the time between two checkpoints in milliseconds
+	 */
+	public PersistenceWriter(Environment env, Durability durability, int batch_size, int queue_capacity, long checkpoint_interval) {
+		this.env = env;
+		txn_config = new TransactionConfig();
+		txn_config.setDurability(durability);
+		sync = (durability.getLocalSync() == Durability.SyncPolicy.SYNC);
+		this.batch_size = batch_size;
+		this.checkpoint_interval = checkpoint_interval;
+		queue = new LinkedBlockingQueue<PendingWrite>(queue_capacity);
+		pending = new HashMap<PrimaryIndex<?, ?>, HashMap<Object, Integer>>();
+		closed = false;
+		last_checkpoint = System.currentTimeMillis();
+		write_count = 0;
+		commit_count = 0;
+		thread = new Thread(this, "PersistenceWriter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Function to get the durability named by a string
+	 * @param name is sync, write_no_sync or no_sync
+	 * @return the durability, or null if the name is none of these
+	 */
+	public static Durability parse_durability(String name) {
+		if ("sync".equalsIgnoreCase(name))
+			return Durability.COMMIT_SYNC;
+		if ("write_no_sync".equalsIgnoreCase(name))
+			return Durability.COMMIT_WRITE_NO_SYNC;
+		if ("no_sync".equalsIgnoreCase(name))
+			return Durability.COMMIT_NO_SYNC;
+		return null;
+	}
+
+	/**
+	 * Function to queue a record to be stored, replacing the record stored under its key if any
+	 * @param index
+	 * @param entity
+	 */
+	public <K, E> void put(PrimaryIndex<K, E> index, E entity) {
+		enqueue(new PendingWrite(index, entity, false));
+	}
+
+	/**
+	 * Function to queue a record to be stored only if no record is stored under its key yet
+	 * @param index
+	 * @param entity
+	 */
+	public <K, E> void put_no_overwrite(PrimaryIndex<K, E> index, E entity) {
+		enqueue(new PendingWrite(index, entity, true));
+	}
+
+	/**
+	 * Function to remember the keys of the records queued for an index until they are committed
+	 * @param index
+	 */
+	public synchronized void track(PrimaryIndex<?, ?> index) {
+		if (!pending.containsKey(index))
+			pending.put(index, new HashMap<Object, Integer>());
+	}
+
+	/**
+	 * Function to check if a record is queued for a tracked index and not yet committed
+	 * @param index
+	 * @param key
+	 * @return
+	 */
+	public synchronized boolean is_pending(PrimaryIndex<?, ?> index, Object key) {
+		HashMap<Object, Integer> keys = pending.get(index);
+		return keys != null && keys.containsKey(key);
+	}
+
+	private void enqueue(PendingWrite write) {
+		if (closed)
+			throw new IllegalStateException("PersistenceWriter is closed");
+		if (!write.is_marker())
+			add_pending(write); // Before the write is queued, so that the record is always either pending or stored
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(write);
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Function to wait until all the records queued before the call have been committed
+	 * @throws InterruptedException
+	 */
+	public void flush() throws InterruptedException {
+		CountDownLatch committed = new CountDownLatch(1);
+		enqueue(new PendingWrite(committed));
+		committed.await();
+	}
+
+	/**
+	 * Function to commit the records still queued, write the log to disk and stop the writer
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (!sync)
+			env.flushLog(true);
+	}
+
+	public synchronized long get_write_count() {
+		return write_count;
+	}
+
+	public synchronized long get_commit_count() {
+		return commit_count;
+	}
+
+	public void run() {
+		ArrayList<PendingWrite> batch = new ArrayList<PendingWrite>(batch_size);
+		while (true) {
+			PendingWrite first = null;
+			try {
+				first = queue.poll(100, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				// Stop only once closed and drained
+			}
+			if (first == null) {
+				if (closed && queue.isEmpty())
+					break;
+			}
+			else {
+				batch.add(first);
+				queue.drainTo(batch, batch_size - 1);
+				commit(batch);
+				batch.clear();
+			}
+			if (checkpoint_interval > 0 && System.currentTimeMillis() - last_checkpoint >= checkpoint_interval)
+				checkpoint();
+		}
+	}
+
+	/**
+	 * Function to commit a batch of records in a single transaction. If the transaction fails, the records are
+	 * written one by one, so that one bad record does not lose the others.
+	 * @param batch
+	 */
+	private void commit(ArrayList<PendingWrite> batch) {
+		int writes = 0;
+		Transaction txn = null;
+		try {
+			txn = env.beginTransaction(null, txn_config);
+			for (PendingWrite write : batch) {
+				if (!write.is_marker()) {
+					write.apply(txn);
+					writes++;
+				}
+			}
+			txn.commit();
+			count(writes, 1);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			if (txn != null) {
+				txn.abort();
+				txn = null;
+			}
+			for (PendingWrite write : batch) {
+				if (!write.is_marker())
+					commit_one(write);
+			}
+		}
+		finally {
+			for (PendingWrite write : batch) {
+				if (write.is_marker())
+					write.release();
+				else
+					remove_pending(write);
+			}
+		}
+	}
+
+	private synchronized void add_pending(PendingWrite write) {
+		HashMap<Object, Integer> keys = pending.get(write.getIndex());
+		if (keys == null)
+			return;
+		Integer count = keys.get(write.key());
+		keys.put(write.key(), count == null ? 1 : count + 1);
+	}
+
+	private synchronized void remove_pending(PendingWrite write) {
+		HashMap<Object, Integer> keys = pending.get(write.getIndex());
+		if (keys == null)
+			return;
+		Integer count = keys.get(write.key());
+		if (count == null || count <= 1)
+			keys.remove(write.key());
+		else
+			keys.put(write.key(), count - 1);
+	}
+
+	private void commit_one(PendingWrite write) {
+		Transaction txn = null;
+		try {
+			txn = env.beginTransaction(null, txn_config);
+			write.apply(txn);
+			txn.commit();
+			count(1, 1);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			if (txn != null) {
+				txn.abort();
+				txn = null;
+			}
+		}
+	}
+
+	private synchronized void count(int writes, int commits) {
+		write_count += writes;
+		commit_count += commits;
+	}
+
+	/**
+	 * Function to write the log to disk and checkpoint the environment, which bounds what a crash can lose
+	 * when commits are not written to disk and how much log recovery has to replay
+	 */
+	private void checkpoint() {
+		try {
+			if (!sync)
+				env.flushLog(true);
+			env.checkpoint(new CheckpointConfig());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+		}
+		last_checkpoint = System.currentTimeMillis();
+	}
+
+}
@@ -4,15 +4,16 @@ import java.util.ArrayList;
 import com.sleepycat.persist.model.Entity;
 import com.sleepycat.persist.model.PrimaryKey;
 
-@Entity
+@Entity(version = 1) // Version 1 added the expiry time
 public class Robots {
 
 	@PrimaryKey
-	private String domain;
+	private String domain; // Scheme, host and port the robots.txt applies to
 	private Long last_crawled_time;
 	private Long crawl_delay;
-	private ArrayList<String> allowed_links;
-	private ArrayList<String> disallowed_links;
+	private ArrayList<String> allowed_links; // Allow rules for the crawler, which may contain '*' and end in '$'
+	private ArrayList<String> disallowed_links; // Disallow rules for the crawler, which may contain '*' and end in '$'
+	private long expires_time; // Time after which the robots.txt is fetched again, 0 for records written before version 1
 	
 	public void setLastCrawledTime(long time) {
 		last_crawled_time = new Long(time);
@@ -53,5 +54,13 @@ public class Robots {
 	public ArrayList<String> getDisallowedLinks() {
 		return disallowed_links;
 	}
+
+	public void setExpiresTime(long time) {
+		expires_time = time;
+	}
+
+	public long getExpiresTime() {
+		return expires_time;
+	}
 } 
 
@@ -0,0 +1,54 @@
+package edu.upenn.cis455.storage;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.persist.EntityStore;
+
+/**
+ * The environment and entity store opened for one directory, together with the number of DBWrappers using them
+ */
+class SharedEnvironment {
+
+	private final String directory; // Canonical path of the directory
+	private final Environment env;
+	private final EntityStore store;
+	private Indices indices; // Created on first use
+	private int references;
+
+	public SharedEnvironment(String directory, Environment env, EntityStore store) {
+		this.directory = directory;
+		this.env = env;
+		this.store = store;
+		indices = null;
+		references = 0;
+	}
+
+	public String getDirectory() {
+		return directory;
+	}
+
+	public Environment getEnvironment() {
+		return env;
+	}
+
+	public EntityStore getStore() {
+		return store;
+	}
+
+	public synchronized Indices getIndices() {
+		if (indices == null)
+			indices = new Indices(store);
+		return indices;
+	}
+
+	public void acquire() {
+		references++;
+	}
+
+	/**
+	 * @return true if that was the last reference
+	 */
+	public boolean release() {
+		return --references == 0;
+	}
+
+}
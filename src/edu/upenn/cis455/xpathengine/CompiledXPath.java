@@ -0,0 +1,44 @@
+package edu.upenn.cis455.xpathengine;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * An xpath compiled into its chain of steps. An invalid xpath is compiled too, with no steps,
+ * so that its invalidity is also remembered.
+ */
+class CompiledXPath {
+
+	private final String expression;
+	private final XPathStep first; // Null if the xpath is invalid
+
+	public CompiledXPath(String expression, XPathStep first) {
+		this.expression = expression;
+		this.first = first;
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	public XPathStep getFirstStep() {
+		return first;
+	}
+
+	public boolean isValid() {
+		return first != null;
+	}
+
+	/**
+	 * Function to evaluate the xpath against a document
+	 * @param d
+	 * @return true if the xpath is valid and matches the document, and false otherwise
+	 */
+	public boolean matches(Document d) {
+		if (first == null || d == null)
+			return false;
+		Node root = d.getDocumentElement();
+		return root != null && first.matches(root);
+	}
+
+}
@@ -0,0 +1,40 @@
+package edu.upenn.cis455.xpathengine;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Keeps one DocumentBuilder per thread. Looking up a DocumentBuilderFactory and creating a builder for every
+ * document costs more than parsing a small document, and a builder may be reused by the thread that owns it
+ * once it has been reset.
+ */
+public class DocumentBuilderCache {
+
+	private static final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+	private static final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<DocumentBuilder>();
+
+	private DocumentBuilderCache() {
+	}
+
+	/**
+	 * Function to get the document builder of the calling thread, ready to parse a new document. It must not be
+	 * handed to another thread.
+	 * @return
+	 * @throws ParserConfigurationException
+	 */
+	public static DocumentBuilder get_builder() throws ParserConfigurationException {
+		DocumentBuilder builder = builders.get();
+		if (builder == null) {
+			synchronized (factory) { // The factory itself is not thread safe
+				builder = factory.newDocumentBuilder();
+			}
+			builders.set(builder);
+		}
+		else {
+			builder.reset();
+		}
+		return builder;
+	}
+
+}
@@ -9,7 +9,6 @@ import java.net.URL;
 import java.util.StringTokenizer;
 import javax.net.ssl.HttpsURLConnection;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 import org.w3c.tidy.Tidy;
@@ -103,8 +102,7 @@ public class HTTPClient {
     	    tidy.setQuiet(true);
     	    doc = tidy.parseDOM(new BufferedReader(getReader()), null);
 		} else if(resourcetype.contains("xml")) {
-			DocumentBuilder db = DocumentBuilderFactory.newInstance()
-					.newDocumentBuilder();
+			DocumentBuilder db = DocumentBuilderCache.get_builder();
 			InputSource is = new InputSource();
 			is.setCharacterStream(new BufferedReader(getReader()));
 			doc = db.parse(is);
@@ -0,0 +1,91 @@
+package edu.upenn.cis455.xpathengine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.w3c.dom.Node;
+
+/**
+ * A state of the automaton built by XPathMatcher. Each state stands for one step, shared by every
+ * xpath whose steps up to this one are the same. The next states are indexed by nodename, so that
+ * an element only ever tries the states that can match its name.
+ */
+class MatcherState {
+
+	private final XPathStep step; // The step without its next steps, null for the start state
+	private HashMap<XPathStep, MatcherState> next_states; // Next states by their step, used while the automaton is built
+	private HashMap<String, ArrayList<MatcherState>> by_nodename; // Next states by the nodename of their step
+	private int[] accepting; // Indices of the xpaths that end with this step
+
+	public MatcherState(XPathStep step) {
+		this.step = step;
+		next_states = new HashMap<XPathStep, MatcherState>();
+		by_nodename = new HashMap<String, ArrayList<MatcherState>>();
+		accepting = new int[0];
+	}
+
+	public XPathStep getStep() {
+		return step;
+	}
+
+	public int[] getAccepting() {
+		return accepting;
+	}
+
+	/**
+	 * Function to get the state for a step following this one, creating it if no xpath added so far has it
+	 * @param next_step is the step, without the steps that follow it
+	 * @return
+	 */
+	public MatcherState add_next(XPathStep next_step) {
+		MatcherState state = next_states.get(next_step);
+		if (state == null) {
+			state = new MatcherState(next_step);
+			next_states.put(next_step, state);
+			ArrayList<MatcherState> states = by_nodename.get(next_step.getNodename());
+			if (states == null) {
+				states = new ArrayList<MatcherState>();
+				by_nodename.put(next_step.getNodename(), states);
+			}
+			states.add(state);
+		}
+		return state;
+	}
+
+	/**
+	 * Function to record that an xpath ends at this state
+	 * @param index of the xpath
+	 */
+	public void add_accepting(int index) {
+		int[] new_accepting = new int[accepting.length + 1];
+		System.arraycopy(accepting, 0, new_accepting, 0, accepting.length);
+		new_accepting[accepting.length] = index;
+		accepting = new_accepting;
+	}
+
+	/**
+	 * @param nodename
+	 * @return the next states whose step has the nodename, or null if there are none
+	 */
+	public ArrayList<MatcherState> next_for(String nodename) {
+		return by_nodename.get(nodename);
+	}
+
+	public boolean has_next() {
+		return !by_nodename.isEmpty();
+	}
+
+	/**
+	 * Function to check if an element whose name matched the step passes the filters of the step
+	 * @param element
+	 * @return
+	 */
+	public boolean passes(Node element) {
+		for (XPathFilter filter : step.getFilters()) {
+			if (!filter.matches(element))
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,168 @@
+package edu.upenn.cis455.xpathengine;
+
+import java.util.ArrayList;
+
+/**
+ * An attempt to match a step at an element of a document that is being streamed. The filters of the
+ * step are decided as the events of the element arrive: attribute filters at the start of the element,
+ * text filters at each of its text nodes and nested paths when an attempt at a child succeeds.
+ * Whenever an attempt further down the path succeeds, it hands a token to the attempt at its parent:
+ * the index of the xpath that matched, or any value within a nested path. The token moves on up as
+ * soon as all the filters of the parent have passed, and waits at the parent until then.
+ */
+class StepAttempt {
+
+	private final StreamMatch match;
+	private final MatcherState state; // State of the automaton for a step of the xpaths, null for a step of a nested path
+	private final XPathStep step;
+	private final StepAttempt parent; // Attempt at the parent element, null for the first step of the xpaths
+	private final int filter_index; // Index of the filter of the parent for a first step of a nested path, -1 otherwise
+	private final boolean[] passed; // Filters of the step that have passed
+	private int failing; // Number of filters that have not passed yet
+	private ArrayList<Integer> pending; // Tokens waiting for the filters to pass
+	private boolean emitted; // Set once a nested path has handed on its token
+
+	private StepAttempt(StreamMatch match, MatcherState state, XPathStep step, StepAttempt parent, int filter_index) {
+		this.match = match;
+		this.state = state;
+		this.step = step;
+		this.parent = parent;
+		this.filter_index = filter_index;
+		passed = new boolean[step.getFilters().length];
+		failing = passed.length;
+		pending = null;
+		emitted = false;
+	}
+
+	/**
+	 * Function to start an attempt at the element the stream is at
+	 * @param match
+	 * @param state
+	 * @param step
+	 * @param parent
+	 * @param filter_index
+	 * @return the attempt, or null if an attribute filter of the step fails
+	 */
+	public static StepAttempt create(StreamMatch match, MatcherState state, XPathStep step, StepAttempt parent, int filter_index) {
+		StepAttempt attempt = new StepAttempt(match, state, step, parent, filter_index);
+		XPathFilter[] filters = step.getFilters();
+		for (int i=0; i<filters.length; i++) {
+			if (filters[i].getType() != XPathFilter.ATTRIBUTE_EQUALS)
+				continue;
+			if (!filters[i].getValue().equals(match.attribute(filters[i].getName())))
+				return null;
+			attempt.passed[i] = true;
+			attempt.failing--;
+		}
+		return attempt;
+	}
+
+	/**
+	 * Function to succeed at once if the step has no filters left to decide, once the attempt is in place
+	 */
+	public void start() {
+		if (failing == 0)
+			succeed();
+	}
+
+	/**
+	 * Function to start the attempts that a child element of this one can take part in
+	 * @param nodename of the child element
+	 * @param attempts to add the attempts at the child element to
+	 */
+	public void spawn(String nodename, ArrayList<StepAttempt> attempts) {
+		if (state != null) {
+			ArrayList<MatcherState> states = state.next_for(nodename);
+			if (states != null) {
+				for (int i=0; i<states.size(); i++)
+					add(StepAttempt.create(match, states.get(i), states.get(i).getStep(), this, -1), attempts);
+			}
+		}
+		else if (!emitted && step.getNext() != null && step.getNext().getNodename().equals(nodename)) {
+			add(StepAttempt.create(match, null, step.getNext(), this, -1), attempts);
+		}
+		XPathFilter[] filters = step.getFilters();
+		for (int i=0; i<filters.length; i++) {
+			if (!passed[i] && filters[i].getType() == XPathFilter.PATH && filters[i].getPath().getNodename().equals(nodename))
+				add(StepAttempt.create(match, null, filters[i].getPath(), this, i), attempts);
+		}
+	}
+
+	private static void add(StepAttempt attempt, ArrayList<StepAttempt> attempts) {
+		if (attempt != null)
+			attempts.add(attempt);
+	}
+
+	/**
+	 * Function to decide the text filters of the step on a text node of the element
+	 * @param text
+	 */
+	public void text(String text) {
+		XPathFilter[] filters = step.getFilters();
+		for (int i=0; i<filters.length; i++) {
+			int type = filters[i].getType();
+			if (!passed[i] && (type == XPathFilter.TEXT_EQUALS || type == XPathFilter.CONTAINS_TEXT) && filters[i].matches_text(text))
+				pass(i);
+		}
+	}
+
+	/**
+	 * Function to record that a filter of the step has passed
+	 * @param index of the filter
+	 */
+	private void pass(int index) {
+		if (passed[index])
+			return;
+		passed[index] = true;
+		if (--failing == 0)
+			succeed();
+	}
+
+	/**
+	 * Function called once all the filters have passed, to hand on the tokens of the paths ending here and those that waited
+	 */
+	private void succeed() {
+		if (state != null) {
+			for (int index : state.getAccepting())
+				emit(index);
+		}
+		else if (step.getNext() == null) {
+			emit(0);
+		}
+		if (pending != null) {
+			for (int token : pending)
+				emit(token);
+			pending = null;
+		}
+	}
+
+	/**
+	 * Function to take a token from an attempt at a child element
+	 * @param token
+	 */
+	private void receive(int token) {
+		if (failing == 0) {
+			emit(token);
+			return;
+		}
+		if (pending == null)
+			pending = new ArrayList<Integer>();
+		if (!pending.contains(token))
+			pending.add(token);
+	}
+
+	private void emit(int token) {
+		if (state == null) {
+			if (emitted)
+				return;
+			emitted = true;
+		}
+		if (parent == null)
+			match.matched(token);
+		else if (filter_index >= 0)
+			parent.pass(filter_index);
+		else
+			parent.receive(token);
+	}
+
+}
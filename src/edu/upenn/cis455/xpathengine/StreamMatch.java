@@ -0,0 +1,184 @@
+package edu.upenn.cis455.xpathengine;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * One run of the automaton of an XPathMatcher over the events of a streamed document. Only the
+ * attempts at the open elements are kept, so memory depends on the depth of the document and not
+ * on its size, and the stream is left as soon as every xpath is decided.
+ */
+class StreamMatch {
+
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+	private static final XMLInputFactory factory = create_factory();
+
+	private final boolean[] results;
+	private int remaining; // Number of valid xpaths that have not matched yet
+	private int live; // Number of attempts at the open elements
+	private ArrayList<ArrayList<StepAttempt>> open; // Attempts at each of the open elements, the innermost last
+	private StringBuilder text; // Text node of the innermost open element read so far
+	private int text_type; // Event type of the text node being read
+	private XMLStreamReader reader;
+
+	public StreamMatch(int size, int valid_count) {
+		results = new boolean[size];
+		remaining = valid_count;
+		live = 0;
+		open = new ArrayList<ArrayList<StepAttempt>>();
+		text = new StringBuilder();
+		text_type = XMLStreamConstants.CHARACTERS;
+	}
+
+	/**
+	 * Function to create the factory of the stream readers. External entities are never fetched, and CDATA
+	 * sections are reported on their own so that text nodes are split as in the DOM.
+	 * @return
+	 */
+	private static XMLInputFactory create_factory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		if (factory.isPropertySupported(REPORT_CDATA)) // Otherwise the JDK reader merges CDATA sections into the text around them
+			factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+		factory.setXMLResolver(new XMLResolver() {
+			public Object resolveEntity(String public_id, String system_id, String base_uri, String namespace) {
+				return new ByteArrayInputStream(new byte[0]);
+			}
+		});
+		return factory;
+	}
+
+	public static XMLInputFactory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Function to run the automaton over the rest of a stream
+	 * @param reader
+	 * @param start is the start state of the automaton
+	 * @return an array with the i.th element set to true if the document matches the i.th xpath. If the document
+	 * turns out not to be well formed before every xpath is decided, none of the xpaths match.
+	 */
+	public boolean[] run(XMLStreamReader reader, MatcherState start) {
+		this.reader = reader;
+		try {
+			while (remaining > 0 && reader.hasNext()) {
+				int event = reader.next();
+				switch (event) {
+				case XMLStreamConstants.START_ELEMENT:
+					end_text();
+					start_element(start);
+					if (live == 0) // Nothing can match below an element that no attempt is at
+						return results;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					end_text();
+					live -= open.remove(open.size() - 1).size();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.CDATA:
+					// A CDATA section is a text node of its own, as in the DOM
+					int type = (event == XMLStreamConstants.CDATA ? event : XMLStreamConstants.CHARACTERS);
+					if (type != text_type)
+						end_text();
+					text_type = type;
+					text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				default:
+					end_text();
+				}
+			}
+		}
+		catch (XMLStreamException e) {
+			return new boolean[results.length];
+		}
+		finally {
+			try {
+				reader.close();
+			}
+			catch (XMLStreamException e) {
+				e.printStackTrace();
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Function to start the attempts at the element the stream is at
+	 * @param start
+	 */
+	private void start_element(MatcherState start) {
+		String nodename = qualified_name(reader.getPrefix(), reader.getLocalName());
+		ArrayList<StepAttempt> attempts = new ArrayList<StepAttempt>();
+		if (open.isEmpty()) {
+			ArrayList<MatcherState> states = start.next_for(nodename);
+			if (states != null) {
+				for (int i=0; i<states.size(); i++) {
+					StepAttempt attempt = StepAttempt.create(this, states.get(i), states.get(i).getStep(), null, -1);
+					if (attempt != null)
+						attempts.add(attempt);
+				}
+			}
+		}
+		else {
+			ArrayList<StepAttempt> parents = open.get(open.size() - 1);
+			for (int i=0; i<parents.size(); i++)
+				parents.get(i).spawn(nodename, attempts);
+		}
+		open.add(attempts);
+		live += attempts.size();
+		for (int i=0; i<attempts.size(); i++)
+			attempts.get(i).start();
+	}
+
+	/**
+	 * Function to decide the text filters of the innermost open element on the text node read so far
+	 */
+	private void end_text() {
+		if (text.length() == 0)
+			return;
+		if (!open.isEmpty()) {
+			String value = text.toString();
+			ArrayList<StepAttempt> attempts = open.get(open.size() - 1);
+			for (int i=0; i<attempts.size(); i++)
+				attempts.get(i).text(value);
+		}
+		text.setLength(0);
+	}
+
+	/**
+	 * Function to get an attribute of the element the stream is at
+	 * @param name
+	 * @return the value of the attribute, or null if the element has no such attribute
+	 */
+	public String attribute(String name) {
+		for (int i=0; i<reader.getAttributeCount(); i++) {
+			if (name.equals(qualified_name(reader.getAttributePrefix(i), reader.getAttributeLocalName(i))))
+				return reader.getAttributeValue(i);
+		}
+		return null;
+	}
+
+	private static String qualified_name(String prefix, String local_name) {
+		return (prefix == null || prefix.isEmpty() ? local_name : prefix + ":" + local_name);
+	}
+
+	/**
+	 * Function to record that the document matches an xpath
+	 * @param index of the xpath
+	 */
+	public void matched(int index) {
+		if (!results[index]) {
+			results[index] = true;
+			remaining--;
+		}
+	}
+
+}
@@ -0,0 +1,402 @@
+package edu.upenn.cis455.xpathengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles xpaths into chains of XPathStep, so that a document is matched without any string
+ * parsing. The syntax is first checked against the grammar, and a valid xpath is then parsed by
+ * recursive descent. Compiled xpaths are immutable and are cached by expression, so an xpath is
+ * only ever checked and parsed once, whichever engine or thread evaluates it.
+ */
+class XPathCompiler {
+
+	private static final int MAX_CACHED = 10000;
+
+	// Least recently used xpaths are dropped once the cache is full
+	private static final Map<String, CompiledXPath> cache = Collections.synchronizedMap(
+			new LinkedHashMap<String, CompiledXPath>(256, 0.75f, true) {
+				protected boolean removeEldestEntry(Map.Entry<String, CompiledXPath> eldest) {
+					return size() > MAX_CACHED;
+				}
+			});
+
+	private String text; // Xpath being parsed
+	private int pos; // Position of the parser in the xpath
+
+	private XPathCompiler(String text) {
+		this.text = text;
+		this.pos = 0;
+	}
+
+	/**
+	 * Function to get the compiled form of an xpath
+	 * @param xpath
+	 * @return the compiled xpath, which is marked invalid if the xpath does not follow the grammar
+	 */
+	public static CompiledXPath compile(String xpath) {
+		if (xpath == null)
+			return new CompiledXPath(null, null);
+		CompiledXPath compiled = cache.get(xpath);
+		if (compiled == null) {
+			XPathStep first = null;
+			if (check_syntax(xpath))
+				first = new XPathCompiler(xpath).parse();
+			compiled = new CompiledXPath(xpath, first);
+			cache.put(xpath, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Function to parse the whole xpath
+	 * @return the first step, or null if the xpath could not be parsed
+	 */
+	private XPathStep parse() {
+		try {
+			skip_spaces();
+			expect('/');
+			XPathStep first = parse_step();
+			skip_spaces();
+			if (pos != text.length())
+				return null;
+			return first;
+		}
+		catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * step -> nodename([test])*(axis step)?
+	 * @return
+	 */
+	private XPathStep parse_step() {
+		skip_spaces();
+		String nodename = parse_name();
+		ArrayList<XPathFilter> filters = new ArrayList<XPathFilter>();
+		while (true) {
+			skip_spaces();
+			if (pos >= text.length() || text.charAt(pos) != '[')
+				break;
+			pos++;
+			filters.add(parse_test());
+			skip_spaces();
+			expect(']');
+		}
+		XPathStep next = null;
+		if (pos < text.length() && text.charAt(pos) == '/') {
+			pos++;
+			next = parse_step();
+		}
+		return new XPathStep(nodename, filters.toArray(new XPathFilter[filters.size()]), next);
+	}
+
+	/**
+	 * test -> step | text() = "..." | contains(text(), "...") | @attname = "..."
+	 * @return
+	 */
+	private XPathFilter parse_test() {
+		skip_spaces();
+		int start = pos;
+		if (accept_word("text") && accept('(')) {
+			expect(')');
+			expect('=');
+			return XPathFilter.text_equals(parse_quoted(']'));
+		}
+		pos = start;
+		if (accept_word("contains") && accept('(')) {
+			if (!accept_word("text"))
+				throw new IllegalArgumentException("text() expected at " + pos);
+			expect('(');
+			expect(')');
+			expect(',');
+			String value = parse_quoted(')');
+			expect(')');
+			return XPathFilter.contains_text(value);
+		}
+		pos = start;
+		if (accept('@')) {
+			skip_spaces();
+			String name = parse_name();
+			expect('=');
+			return XPathFilter.attribute_equals(name, parse_quoted(']'));
+		}
+		pos = start;
+		return XPathFilter.path(parse_step());
+	}
+
+	/**
+	 * Function to parse a quoted string. The string ends at the first quote that is followed by
+	 * the end of its filter, so it may itself contain quotes and brackets.
+	 * @param terminator is the character that closes the filter after the string
+	 * @return the string without its quotes, with escaped quotes unescaped
+	 */
+	private String parse_quoted(char terminator) {
+		expect('"');
+		int start = pos;
+		for (int i = start; i < text.length(); i++) {
+			if (text.charAt(i) != '"')
+				continue;
+			int j = i + 1;
+			while (j < text.length() && Character.isWhitespace(text.charAt(j)))
+				j++;
+			if (j < text.length() && text.charAt(j) == terminator) {
+				pos = i + 1;
+				return text.substring(start, i).replace("\\\"", "\"");
+			}
+		}
+		throw new IllegalArgumentException("Unterminated string at " + start);
+	}
+
+	private String parse_name() {
+		int start = pos;
+		while (pos < text.length() && is_name_char(text.charAt(pos), pos == start))
+			pos++;
+		if (pos == start)
+			throw new IllegalArgumentException("Name expected at " + pos);
+		String name = text.substring(start, pos);
+		if (name.toLowerCase().startsWith("xml"))
+			throw new IllegalArgumentException("Names cannot start with xml");
+		return name;
+	}
+
+	private static boolean is_name_char(char ch, boolean first) {
+		if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_' || ch == ':')
+			return true;
+		return !first && ((ch >= '0' && ch <= '9') || ch == '-' || ch == '.');
+	}
+
+	/**
+	 * Function to consume a word, if it is next and is not the start of a longer name
+	 * @param word
+	 * @return true if the word was consumed
+	 */
+	private boolean accept_word(String word) {
+		skip_spaces();
+		if (!text.startsWith(word, pos))
+			return false;
+		int end = pos + word.length();
+		if (end < text.length() && is_name_char(text.charAt(end), false))
+			return false;
+		pos = end;
+		return true;
+	}
+
+	private boolean accept(char ch) {
+		skip_spaces();
+		if (pos < text.length() && text.charAt(pos) == ch) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(char ch) {
+		if (!accept(ch))
+			throw new IllegalArgumentException("'" + ch + "' expected at " + pos);
+	}
+
+	private void skip_spaces() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+			pos++;
+	}
+
+	/**
+	 * Check if an xpath is valid according to the grammar
+	 * @param xpath
+	 * @return true if it is valid and false otherwise
+	 */
+	private static boolean check_syntax(String xpath) {
+		if (!xpath.startsWith("/")) { // If the xpath does not start with a '/', it is invalid according to our grammar
+			return false;
+		}
+		if (xpath.replace("/", "").equals("")) { // If only '/'s are present in the whole xpath, eg: ////
+			return false;
+		}
+		String[] xpath_parts = split_xpath(xpath); // Get all the steps in the xpath
+		for (String xpath_part : xpath_parts) {
+			if (xpath_part.equals(""))
+				continue;
+			if (!check_step(xpath_part)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * This function is used to extract the steps from the xpath
+	 * @param xpath is the xpath string
+	 * @return a string array containing all the steps of the xpath
+	 */
+	private static String[] split_xpath(String xpath) {
+		ArrayList<String> parts = new ArrayList<String>(); 
+		char[] xpath_array = xpath.toCharArray();
+		String part = "";
+		int inside_bracket = 0;
+		int start;
+		if (xpath.startsWith("/"))
+			start = 1;
+		else
+			start = 0;
+		for (int i=start; i<xpath_array.length; i++) {
+			if (xpath_array[i] == '[')
+				inside_bracket++;
+			if (xpath_array[i] == ']')
+				inside_bracket--;
+			if (xpath_array[i] == '/' && (inside_bracket == 0)) { // The '/' here is a step seperator, eg: a/b
+				parts.add(part); // Add the step to the array
+				part = "";
+				continue;
+			}
+			part += xpath_array[i]; // If not, the '/' is part of the step (specifically the filter), eg: [a/b]
+		}
+		parts.add(part); // Add the last step of the xpath to our steps array
+		String[] xpath_parts = new String[parts.size()];
+		xpath_parts = parts.toArray(xpath_parts);
+		return xpath_parts;
+	}
+
+	/**
+	 * Check if it is a nodename according to the grammar
+	 * @param str is the string to check whether or not its a filter
+	 * @return true it is nodename or false otherwise
+	 */
+	private static boolean check_if_nodename(String str) {
+		String regex = "^[a-zA-Z_:]+[a-zA-Z0-9_\\-:.\\/]*";
+		if (str.matches(regex)) {
+			if (str.toLowerCase().startsWith("xml")) // Nodename should not begin with "xml"
+				return false;
+			return true;
+		}
+		else
+			return false;
+	}
+
+	/**
+	 * Check if the filter is of the form text()=""
+	 * @param str is the filter
+	 * @return true if it is of this form and false otherwise
+	 */
+	private static boolean check_if_step1(String str) {
+		String regex = "\\s*text\\s*\\(\\s*\\)\\s*=\\s*\"(.*?)\"\\s*";
+		if (str.matches(regex))
+			return true;
+		else
+			return false;
+	}
+
+	/**
+	 * Check if the filter is of the form @attname=""
+	 * @param str is the filter
+	 * @return true if it is of this form and false otherwise
+	 */
+	private static boolean check_if_step2(String str) {
+		String regex = "\\s*@\\s*([a-zA-Z_:]+[a-zA-Z0-9_\\-\\/]*)\\s*=\\s*\"(.*?)\"\\s*";
+		if (str.matches(regex))
+			return true;
+		else
+			return false;
+	}
+
+	/**
+	 * Check if the filter is of the form contains(text(),"")
+	 * @param str is the filter
+	 * @return true if it is of this form and false otherwise
+	 */
+	private static boolean check_if_step3(String str) {
+		String regex = "\\s*contains\\s*\\(\\s*text\\s*\\(\\s*\\)\\s*\\,\\s*\"(.*?)\"\\s*\\)\\s*";
+		if (str.matches(regex))
+			return true;
+		else
+			return false;
+	}
+
+	/**
+	 * Check if the step is valid
+	 * @param str is the step
+	 * @return true if it is a valid step and false otherwise
+	 */
+	private static boolean check_step(String str) {
+		if (!str.contains("[")) {
+			if (!check_if_nodename(str))
+				return false;
+			else
+				return true;
+		}
+		int counter = 0; // To keep track of the number of open and close brackets
+		boolean first_bracket = true;
+		boolean inside_quote = false;
+		char[] str_chars = str.toCharArray();
+		String str_part = "";
+		for (int i=0; i<str_chars.length; i++) {
+			if (str_chars[i] == ' ') {
+				if (inside_quote) {
+					str_part += str_chars[i];
+					continue;
+				}
+				else {
+					continue;
+				}
+			}
+			if (str_chars[i] == '"') {
+				str_part += str_chars[i];
+				inside_quote = !inside_quote;
+				continue;
+			}
+			if (str_chars[i] == '[') {
+				if (inside_quote) {
+					str_part += str_chars[i];
+					continue;
+				}
+				counter++;
+				if (first_bracket) {
+					if (str_part.equals("")) { //xyz/[test()]
+						return false;
+					}
+					if (!check_if_nodename(str_part)) {
+						return false;
+					}
+					first_bracket = false;
+					str_part = "";
+				}
+				else {
+					if (!str_part.equals("") && !inside_quote) {
+						String str_part_new = str_part.replace("/", "");
+						if (!check_if_nodename(str_part_new)) {
+							return false;
+						}
+						first_bracket = false;
+						str_part = "";
+					}
+				}
+			}
+			else if (str_chars[i] == ']') {
+				if (inside_quote) {
+					str_part += str_chars[i];
+					continue;
+				}
+				counter--;
+				if (str_part.equals("")) //]]
+					continue;
+				if (check_if_nodename(str_part) || check_if_step1(str_part) || check_if_step2(str_part) || check_if_step3(str_part)) {
+					str_part = "";
+				}
+				else {
+					return false;
+				}
+			}
+			else {
+				str_part += str_chars[i];
+			}
+		}
+		if (counter!=0) { // Mismatch of open and close brackets
+			return false;
+		}
+		return true;
+	}
+
+}
@@ -1,5 +1,7 @@
 package edu.upenn.cis455.xpathengine;
 
+import java.io.InputStream;
+
 import org.w3c.dom.Document;
 
 public interface XPathEngine {
@@ -26,4 +28,11 @@ public interface XPathEngine {
 	 */
 	boolean[] evaluate(Document d);
 
+	/**
+	 * Takes the XML document as a stream and matches it as it is read, without building
+	 * a DOM. Reading stops as soon as every XPath expression is decided. Returns an array
+	 * like evaluate(Document) does.
+	 */
+	boolean[] evaluate(InputStream is);
+
 }
\ No newline at end of file
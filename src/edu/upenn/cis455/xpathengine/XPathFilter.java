@@ -0,0 +1,121 @@
+package edu.upenn.cis455.xpathengine;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A compiled filter of a step, i.e. one of
+ * text() = "...", contains(text(), "..."), @attname = "..." or a nested step
+ */
+class XPathFilter {
+
+	public static final int TEXT_EQUALS = 0;
+	public static final int CONTAINS_TEXT = 1;
+	public static final int ATTRIBUTE_EQUALS = 2;
+	public static final int PATH = 3;
+
+	private final int type;
+	private final String name; // Attribute name, for ATTRIBUTE_EQUALS
+	private final String value; // Quoted string of the filter, with escaped quotes already unescaped
+	private final XPathStep path; // Nested step, for PATH
+
+	private XPathFilter(int type, String name, String value, XPathStep path) {
+		this.type = type;
+		this.name = name;
+		this.value = value;
+		this.path = path;
+	}
+
+	public static XPathFilter text_equals(String value) {
+		return new XPathFilter(TEXT_EQUALS, null, value, null);
+	}
+
+	public static XPathFilter contains_text(String value) {
+		return new XPathFilter(CONTAINS_TEXT, null, value, null);
+	}
+
+	public static XPathFilter attribute_equals(String name, String value) {
+		return new XPathFilter(ATTRIBUTE_EQUALS, name, value, null);
+	}
+
+	public static XPathFilter path(XPathStep path) {
+		return new XPathFilter(PATH, null, null, path);
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public XPathStep getPath() {
+		return path;
+	}
+
+	/**
+	 * Filters are equal if they test the same thing, so that equal steps of different xpaths can be shared
+	 */
+	public boolean equals(Object other) {
+		if (!(other instanceof XPathFilter))
+			return false;
+		XPathFilter filter = (XPathFilter) other;
+		return type == filter.type && equal(name, filter.name) && equal(value, filter.value) && equal(path, filter.path);
+	}
+
+	public int hashCode() {
+		int hash = type;
+		hash = 31 * hash + (name == null ? 0 : name.hashCode());
+		hash = 31 * hash + (value == null ? 0 : value.hashCode());
+		hash = 31 * hash + (path == null ? 0 : path.hashCode());
+		return hash;
+	}
+
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Function to check if a text node passes a text filter
+	 * @param text is the value of the text node
+	 * @return
+	 */
+	public boolean matches_text(String text) {
+		if (type == TEXT_EQUALS)
+			return text.equals(value);
+		return text.contains(value);
+	}
+
+	/**
+	 * Function to check if an element node passes the filter
+	 * @param node
+	 * @return
+	 */
+	public boolean matches(Node node) {
+		switch (type) {
+		case TEXT_EQUALS:
+		case CONTAINS_TEXT:
+			NodeList children = node.getChildNodes();
+			for (int i=0; i<children.getLength(); i++) {
+				Node child = children.item(i);
+				short child_type = child.getNodeType();
+				if ((child_type == Node.TEXT_NODE || child_type == Node.CDATA_SECTION_NODE) && matches_text(child.getNodeValue()))
+					return true;
+			}
+			return false;
+		case ATTRIBUTE_EQUALS:
+			NamedNodeMap attributes = node.getAttributes();
+			Node attribute = (attributes == null ? null : attributes.getNamedItem(name));
+			return attribute != null && value.equals(attribute.getNodeValue());
+		default:
+			return path.matches_child(node);
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+package edu.upenn.cis455.xpathengine;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Matches a document against a whole set of xpaths at once, such as the xpaths of all the
+ * channels. The xpaths are compiled into a single automaton in which the steps that xpaths have
+ * in common at their start are shared, in the spirit of YFilter. A single walk over the document
+ * then runs the automaton: an element is only tested against the states that were reached at its
+ * parent and that expect its nodename, and the walk stops as soon as every xpath has matched.
+ * The filters of a step are evaluated on the element that reached the step.
+ * A document can also be streamed through the automaton instead of being parsed into a DOM first.
+ * A matcher is not changed once it is built, so it can be shared by any number of threads.
+ */
+public class XPathMatcher {
+
+	private String[] xpaths;
+	private boolean[] valids;
+	private int valid_count;
+	private MatcherState start;
+
+	/**
+	 * Constructor
+	 * @param xpaths are the xpaths to match documents against. Invalid xpaths never match.
+	 */
+	public XPathMatcher(String[] xpaths) {
+		this.xpaths = xpaths;
+		valids = new boolean[xpaths.length];
+		valid_count = 0;
+		start = new MatcherState(null);
+		for (int i=0; i<xpaths.length; i++) {
+			CompiledXPath compiled = XPathCompiler.compile(xpaths[i]);
+			if (!compiled.isValid())
+				continue;
+			valids[i] = true;
+			valid_count++;
+			MatcherState state = start;
+			for (XPathStep step = compiled.getFirstStep(); step != null; step = step.getNext())
+				state = state.add_next(step.without_next());
+			state.add_accepting(i);
+		}
+	}
+
+	public int size() {
+		return xpaths.length;
+	}
+
+	public String getXPath(int i) {
+		return xpaths[i];
+	}
+
+	public boolean isValid(int i) {
+		return valids[i];
+	}
+
+	/**
+	 * Function to match a document against all the xpaths
+	 * @param d
+	 * @return an array with the i.th element set to true if the document matches the i.th xpath
+	 */
+	public boolean[] match(Document d) {
+		boolean[] results = new boolean[xpaths.length];
+		if (d == null || d.getDocumentElement() == null || valid_count == 0)
+			return results;
+		ArrayList<MatcherState> states = new ArrayList<MatcherState>(1);
+		states.add(start);
+		int[] remaining = {valid_count};
+		visit(d.getDocumentElement(), states, results, remaining);
+		return results;
+	}
+
+	/**
+	 * Function to match a streamed document against all the xpaths, reading only as much of it as it takes
+	 * to decide every xpath
+	 * @param is
+	 * @return an array with the i.th element set to true if the document matches the i.th xpath
+	 */
+	public boolean[] match(InputStream is) {
+		try {
+			return match(StreamMatch.getFactory().createXMLStreamReader(is));
+		}
+		catch (XMLStreamException e) {
+			return new boolean[xpaths.length];
+		}
+	}
+
+	/**
+	 * Function to match a streamed document against all the xpaths
+	 * @param reader
+	 * @return an array with the i.th element set to true if the document matches the i.th xpath
+	 */
+	public boolean[] match(Reader reader) {
+		try {
+			return match(StreamMatch.getFactory().createXMLStreamReader(reader));
+		}
+		catch (XMLStreamException e) {
+			return new boolean[xpaths.length];
+		}
+	}
+
+	/**
+	 * Function to match the rest of a stream against all the xpaths. The reader is closed once every xpath is decided.
+	 * @param reader
+	 * @return an array with the i.th element set to true if the document matches the i.th xpath
+	 */
+	public boolean[] match(XMLStreamReader reader) {
+		return new StreamMatch(xpaths.length, valid_count).run(reader, start);
+	}
+
+	/**
+	 * Function to run the automaton on an element and then on its children
+	 * @param element
+	 * @param parent_states are the states reached at the parent of the element
+	 * @param results
+	 * @param remaining holds the number of valid xpaths that have not matched yet
+	 * @return true once every xpath has matched, so that the walk can stop
+	 */
+	private boolean visit(Node element, ArrayList<MatcherState> parent_states, boolean[] results, int[] remaining) {
+		String nodename = element.getNodeName();
+		ArrayList<MatcherState> states = null; // States reached at this element that have next states
+		for (int i=0; i<parent_states.size(); i++) {
+			ArrayList<MatcherState> candidates = parent_states.get(i).next_for(nodename);
+			if (candidates == null)
+				continue;
+			for (int j=0; j<candidates.size(); j++) {
+				MatcherState state = candidates.get(j);
+				if (!state.passes(element))
+					continue;
+				for (int index : state.getAccepting()) {
+					if (!results[index]) {
+						results[index] = true;
+						if (--remaining[0] == 0)
+							return true;
+					}
+				}
+				if (state.has_next()) {
+					if (states == null)
+						states = new ArrayList<MatcherState>();
+					states.add(state);
+				}
+			}
+		}
+		if (states == null)
+			return false;
+		NodeList children = element.getChildNodes();
+		for (int i=0; i<children.getLength(); i++) {
+			Node child = children.item(i);
+			if (child.getNodeType() == Node.ELEMENT_NODE && visit(child, states, results, remaining))
+				return true;
+		}
+		return false;
+	}
+
+}
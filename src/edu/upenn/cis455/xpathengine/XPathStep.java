@@ -0,0 +1,94 @@
+package edu.upenn.cis455.xpathengine;
+
+import java.util.Arrays;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A compiled step of an xpath: a nodename, the filters on it and the step that follows it, if any.
+ * Steps are immutable, so a compiled xpath can be shared by any number of threads.
+ */
+class XPathStep {
+
+	private final String nodename;
+	private final XPathFilter[] filters;
+	private final XPathStep next; // Step applied to the children of the matched node, null for the last step
+
+	public XPathStep(String nodename, XPathFilter[] filters, XPathStep next) {
+		this.nodename = nodename;
+		this.filters = filters;
+		this.next = next;
+	}
+
+	public String getNodename() {
+		return nodename;
+	}
+
+	public XPathFilter[] getFilters() {
+		return filters;
+	}
+
+	public XPathStep getNext() {
+		return next;
+	}
+
+	/**
+	 * Function to get this step on its own, without the steps that follow it
+	 * @return
+	 */
+	public XPathStep without_next() {
+		return (next == null ? this : new XPathStep(nodename, filters, null));
+	}
+
+	/**
+	 * Steps are equal if they have the same nodename, the same filters in the same order and equal next steps
+	 */
+	public boolean equals(Object other) {
+		if (!(other instanceof XPathStep))
+			return false;
+		XPathStep step = (XPathStep) other;
+		return nodename.equals(step.nodename) && Arrays.equals(filters, step.filters)
+				&& (next == null ? step.next == null : next.equals(step.next));
+	}
+
+	public int hashCode() {
+		int hash = nodename.hashCode();
+		hash = 31 * hash + Arrays.hashCode(filters);
+		hash = 31 * hash + (next == null ? 0 : next.hashCode());
+		return hash;
+	}
+
+	/**
+	 * Function to check if this step and the steps after it match, starting at the given node
+	 * @param node
+	 * @return true if the node has the nodename, passes all the filters and, if there is a next
+	 * step, has a child that the next step matches
+	 */
+	public boolean matches(Node node) {
+		if (node.getNodeType() != Node.ELEMENT_NODE || !nodename.equals(node.getNodeName()))
+			return false;
+		for (XPathFilter filter : filters) {
+			if (!filter.matches(node))
+				return false;
+		}
+		if (next == null)
+			return true;
+		return next.matches_child(node);
+	}
+
+	/**
+	 * Function to check if this step matches any of the children of the given node
+	 * @param parent
+	 * @return
+	 */
+	public boolean matches_child(Node parent) {
+		NodeList children = parent.getChildNodes();
+		for (int i=0; i<children.getLength(); i++) {
+			if (matches(children.item(i)))
+				return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,52 @@
+package test.edu.upenn.cis455;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.BloomFilter;
+
+public class BloomFilterTestCases extends TestCase
+{
+	/**
+	 * Test case for every string put in the filter being reported as possibly present
+	 */
+	@Test
+	public void test_no_false_negatives()
+	{
+		BloomFilter filter = new BloomFilter(100000, 0.01);
+		for (int i = 0; i < 100000; i++)
+			filter.put("http://host" + (i % 100) + ".com/page" + i);
+		for (int i = 0; i < 100000; i++)
+			assertTrue(filter.might_contain("http://host" + (i % 100) + ".com/page" + i));
+	}
+
+	/**
+	 * Test case for the false positive rate staying near the rate the filter was sized for
+	 */
+	@Test
+	public void test_false_positive_rate()
+	{
+		BloomFilter filter = new BloomFilter(100000, 0.01);
+		for (int i = 0; i < 100000; i++)
+			filter.put("http://a.com/" + i);
+		int false_positives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.might_contain("http://b.com/" + i))
+				false_positives++;
+		}
+		assertTrue(false_positives < 2000);
+	}
+
+	/**
+	 * Test case for an empty filter containing nothing
+	 */
+	@Test
+	public void test_empty()
+	{
+		BloomFilter filter = new BloomFilter(0, 0.01);
+		assertFalse(filter.might_contain(""));
+		assertFalse(filter.might_contain("http://a.com/"));
+	}
+
+}
@@ -0,0 +1,114 @@
+package test.edu.upenn.cis455;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.storage.ChannelChange;
+import edu.upenn.cis455.storage.ChannelRegistry;
+import edu.upenn.cis455.storage.ChannelSnapshot;
+import edu.upenn.cis455.storage.Channels;
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.Indices;
+
+public class ChannelRegistryTestCases extends DirectoryTestCase
+{
+	private DBWrapper wrapper;
+	private Indices pk_index;
+	private ChannelRegistry registry;
+
+	public void setUp()
+	{
+		super.setUp();
+		wrapper = new DBWrapper();
+		wrapper.setup(directory.getPath());
+		pk_index = new Indices(wrapper.getStore());
+		registry = new ChannelRegistry();
+	}
+
+	public void tearDown()
+	{
+		wrapper.shutdown();
+		super.tearDown();
+	}
+
+	private void create_channel(String name, String... xpaths)
+	{
+		Channels channel = new Channels();
+		channel.setChannelName(name);
+		channel.setXPaths(new ArrayList<String>(Arrays.asList(xpaths)));
+		pk_index.channels_pk.put(channel);
+		ChannelChange change = new ChannelChange();
+		change.setChannelName(name);
+		change.setXPaths(channel.getXPaths());
+		pk_index.channel_changes_pk.put(change);
+		ChannelRegistry.notify_changed();
+	}
+
+	private void delete_channel(String name)
+	{
+		pk_index.channels_pk.delete(name);
+		ChannelChange change = new ChannelChange();
+		change.setChannelName(name);
+		change.setDeleted(true);
+		pk_index.channel_changes_pk.put(change);
+		ChannelRegistry.notify_changed();
+	}
+
+	/**
+	 * Test case for the registry reading the channels once and then following the change log
+	 */
+	@Test
+	public void test_incremental_changes()
+	{
+		create_channel("news", "/rss/channel", "/rss/item");
+		ChannelSnapshot first = registry.current(pk_index);
+		assertEquals(1, first.size());
+		assertEquals(Arrays.asList("/rss/channel", "/rss/item"), first.getXPaths());
+		assertSame(first, registry.current(pk_index));
+
+		create_channel("sports", "/a/b");
+		delete_channel("news");
+		ChannelSnapshot second = registry.current(pk_index);
+		assertEquals(1, second.size());
+		assertEquals("sports", second.getChannelName(0));
+		assertEquals(0, second.getFirstXPath(0));
+		assertEquals(1, second.getEndXPath(0));
+		assertTrue(second.getVersion() > first.getVersion());
+		// The snapshot handed out before is left as it was
+		assertEquals(2, first.getXPaths().size());
+
+		// A new registry reads the channels as they are now
+		ChannelSnapshot loaded = new ChannelRegistry().current(pk_index);
+		assertEquals(Arrays.asList("/a/b"), loaded.getXPaths());
+		assertEquals(second.getVersion(), loaded.getVersion());
+	}
+
+	/**
+	 * Test case for a load keeping only the latest change of each channel, with a registry that is behind
+	 * still catching up to the right channels
+	 */
+	@Test
+	public void test_compaction()
+	{
+		create_channel("news", "/rss/channel");
+		ChannelSnapshot behind = registry.current(pk_index);
+		delete_channel("news");
+		create_channel("news", "/rss/item");
+		create_channel("sports", "/a/b");
+		delete_channel("sports");
+		create_channel("sports", "/a/c");
+		assertEquals(6, pk_index.channel_changes_pk.count());
+
+		ChannelSnapshot loaded = new ChannelRegistry().current(pk_index);
+		assertEquals(2, pk_index.channel_changes_pk.count());
+		assertEquals(Arrays.asList("/rss/item", "/a/c"), loaded.getXPaths());
+
+		ChannelSnapshot caught_up = registry.current(pk_index);
+		assertNotSame(behind, caught_up);
+		assertEquals(Arrays.asList("/rss/item", "/a/c"), caught_up.getXPaths());
+		assertEquals(loaded.getVersion(), caught_up.getVersion());
+	}
+
+}
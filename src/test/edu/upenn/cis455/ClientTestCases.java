@@ -0,0 +1,184 @@
+package test.edu.upenn.cis455;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.BodyBuffer;
+import edu.upenn.cis455.crawler.Client;
+import edu.upenn.cis455.crawler.ConnectionPool;
+
+public class ClientTestCases extends TestCase
+{
+	private LocalServer server;
+	private ConnectionPool pool;
+
+	public void setUp() throws IOException
+	{
+		server = new LocalServer();
+		pool = new ConnectionPool(2, 15000);
+	}
+
+	public void tearDown()
+	{
+		pool.close();
+		server.close();
+	}
+
+	private Client get(String path)
+	{
+		Client client = new Client(server.url(path), "GET", pool);
+		client.send_request();
+		return client;
+	}
+
+	/**
+	 * Test case for a body framed by its Content-Length
+	 */
+	@Test
+	public void test_content_length()
+	{
+		server.respond_ok("/a.html", "text/html", "hello");
+		Client client = get("/a.html");
+		assertEquals("200", client.get_response_header("status"));
+		assertEquals("text/html", client.get_response_header("content-type"));
+		assertEquals("hello", client.getBody());
+		assertNull(client.get_abort_reason());
+	}
+
+	/**
+	 * Test case for a body sent in chunks, with a chunk extension and a trailer
+	 */
+	@Test
+	public void test_chunked()
+	{
+		server.respond("/a.html", "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "5\r\nhello\r\n6;name=value\r\n world\r\n0\r\nX-Trailer: 1\r\n\r\n");
+		assertEquals("hello world", get("/a.html").getBody());
+		assertEquals("hello world", get("/a.html").getBody());
+		assertEquals(1, server.get_connections());
+	}
+
+	/**
+	 * Test case for the body of a response larger than the maximum size not being downloaded, whether the
+	 * size is given up front or only found while the chunks arrive
+	 */
+	@Test
+	public void test_early_abort()
+	{
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			body.append('x');
+		server.respond_ok("/large.html", "text/html", body.toString());
+		server.respond("/chunked.html", "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "400\r\n" + body.substring(0, 1024) + "\r\n400\r\n" + body.substring(0, 1024) + "\r\n0\r\n\r\n");
+		Client client = new Client(server.url("/large.html"), "GET", pool);
+		client.set_max_size(1500);
+		client.send_request();
+		assertEquals("File size exceeds maximum size", client.get_abort_reason());
+		assertNull(client.getBodyBytes());
+		client = new Client(server.url("/chunked.html"), "GET", pool);
+		client.set_max_size(1500);
+		client.send_request();
+		assertEquals("File size exceeds maximum size", client.get_abort_reason());
+		assertNull(client.getBodyBytes());
+		assertEquals(2, server.get_connections());
+	}
+
+	/**
+	 * Test case for a negative chunk size being rejected, with the connection not kept for another request
+	 */
+	@Test
+	public void test_negative_chunk_size()
+	{
+		server.respond("/a.html", "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "-5\r\nhello\r\n0\r\n\r\n");
+		server.respond_ok("/b.html", "text/html", "b");
+		assertEquals("", get("/a.html").getBody());
+		assertEquals("b", get("/b.html").getBody());
+		assertEquals(2, server.get_connections());
+	}
+
+	/**
+	 * Test case for a response with too many headers or too long a line being rejected
+	 */
+	@Test
+	public void test_head_limits()
+	{
+		StringBuilder response = new StringBuilder("HTTP/1.1 200 OK\r\n");
+		for (int i = 0; i < 300; i++)
+			response.append("X-Header-" + i + ": " + i + "\r\n");
+		server.respond("/headers.html", response.append("Content-Length: 1\r\n\r\nx").toString());
+		StringBuilder line = new StringBuilder("HTTP/1.1 200 ");
+		for (int i = 0; i < 20000; i++)
+			line.append('x');
+		server.respond("/line.html", line.append("\r\nContent-Length: 1\r\n\r\nx").toString());
+		assertNull(get("/headers.html").getBodyBytes());
+		Client client = get("/line.html");
+		assertNull(client.get_response_header("status"));
+		assertNull(client.getBodyBytes());
+	}
+
+	/**
+	 * Test case for a conditional GET sending its validators and getting a 304 without a body
+	 */
+	@Test
+	public void test_conditional_get()
+	{
+		server.respond("/a.html", "HTTP/1.1 304 Not Modified\r\nETag: \"v1\"\r\n\r\n");
+		server.respond_ok("/b.html", "text/html", "b");
+		Client client = new Client(server.url("/a.html"), "GET", pool);
+		client.set_request_header("If-Modified-Since", "Sat, 17 Oct 2026 10:00:00 GMT");
+		client.set_request_header("If-None-Match", "\"v1\"");
+		client.send_request();
+		String request = server.get_requests().get(0);
+		assertTrue(request.startsWith("GET /a.html HTTP/1.1\r\n"));
+		assertTrue(request.contains("If-Modified-Since: Sat, 17 Oct 2026 10:00:00 GMT\r\n"));
+		assertTrue(request.contains("If-None-Match: \"v1\"\r\n"));
+		assertEquals("304", client.get_response_header("status"));
+		assertEquals("\"v1\"", client.get_response_header("etag"));
+		assertNull(client.getBodyBytes());
+		assertEquals("b", get("/b.html").getBody());
+		assertEquals(1, server.get_connections());
+	}
+
+	/**
+	 * Test case for the body of a content type that is not accepted not being downloaded
+	 */
+	@Test
+	public void test_accepted_types()
+	{
+		server.respond_ok("/a.png", "image/png", "png");
+		server.respond_ok("/a.xml", "application/rss+xml; charset=UTF-8", "<rss/>");
+		Client client = new Client(server.url("/a.png"), "GET", pool);
+		client.set_accepted_types("html", "xml");
+		client.send_request();
+		assertEquals("200", client.get_response_header("status"));
+		assertEquals("Content type image/png is not one of [html, xml]", client.get_abort_reason());
+		assertNull(client.getBodyBytes());
+		client = new Client(server.url("/a.xml"), "GET", pool);
+		client.set_accepted_types("html", "xml");
+		client.send_request();
+		assertNull(client.get_abort_reason());
+		assertEquals("<rss/>", client.getBody());
+		assertEquals(2, server.get_connections());
+	}
+
+	/**
+	 * Test case for a large count that the stream does not live up to not being allocated up front
+	 */
+	@Test
+	public void test_read_fully_short_stream() throws IOException
+	{
+		BodyBuffer buffer = new BodyBuffer();
+		byte[] bytes = "0123456789".getBytes(StandardCharsets.ISO_8859_1);
+		assertFalse(buffer.read_fully(new ByteArrayInputStream(bytes), 1000000000));
+		assertEquals(10, buffer.length());
+		assertTrue(buffer.array().length < 1024 * 1024);
+	}
+
+}
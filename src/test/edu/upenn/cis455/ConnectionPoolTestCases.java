@@ -0,0 +1,105 @@
+package test.edu.upenn.cis455;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.Client;
+import edu.upenn.cis455.crawler.ConnectionPool;
+
+public class ConnectionPoolTestCases extends TestCase
+{
+	private LocalServer server;
+
+	public void setUp() throws IOException
+	{
+		server = new LocalServer();
+		server.respond_ok("/a.html", "text/html", "a");
+		server.respond("/close.html", "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nContent-Length: 1\r\nConnection: close\r\n\r\nc");
+	}
+
+	public void tearDown()
+	{
+		server.close();
+	}
+
+	private String get(ConnectionPool pool, String path)
+	{
+		Client client = new Client(server.url(path), "GET", pool);
+		client.send_request();
+		return client.getBody();
+	}
+
+	/**
+	 * Test case for requests one after the other being sent over the same connection
+	 */
+	@Test
+	public void test_reuse()
+	{
+		ConnectionPool pool = new ConnectionPool(2, 15000);
+		for (int i = 0; i < 3; i++)
+			assertEquals("a", get(pool, "/a.html"));
+		pool.close();
+		assertEquals(3, server.get_requests().size());
+		assertEquals(1, server.get_connections());
+	}
+
+	/**
+	 * Test case for a connection the server asked to close not being reused
+	 */
+	@Test
+	public void test_connection_close()
+	{
+		ConnectionPool pool = new ConnectionPool(2, 15000);
+		assertEquals("c", get(pool, "/close.html"));
+		assertEquals("a", get(pool, "/a.html"));
+		pool.close();
+		assertEquals(2, server.get_connections());
+	}
+
+	/**
+	 * Test case for a connection idle for longer than the idle timeout not being reused
+	 */
+	@Test
+	public void test_idle_timeout() throws InterruptedException
+	{
+		ConnectionPool pool = new ConnectionPool(2, 200);
+		assertEquals("a", get(pool, "/a.html"));
+		Thread.sleep(500);
+		assertEquals("a", get(pool, "/a.html"));
+		pool.close();
+		assertEquals(2, server.get_connections());
+	}
+
+	/**
+	 * Test case for no more than max_per_host connections being open to a host, however many threads
+	 * send requests to it at the same time
+	 */
+	@Test
+	public void test_per_host_limit() throws InterruptedException
+	{
+		final ConnectionPool pool = new ConnectionPool(2, 15000);
+		server.set_delay(200);
+		final String[] bodies = new String[6];
+		Thread[] threads = new Thread[bodies.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					bodies[index] = get(pool, "/a.html");
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join(10000);
+		pool.close();
+		for (String body : bodies)
+			assertEquals("a", body);
+		assertEquals(2, server.get_max_open());
+		assertEquals(2, server.get_connections());
+	}
+
+}
@@ -0,0 +1,152 @@
+package test.edu.upenn.cis455;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.XPathCrawler;
+import edu.upenn.cis455.storage.ChannelChange;
+import edu.upenn.cis455.storage.ChannelMatchKey;
+import edu.upenn.cis455.storage.Channels;
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.Indices;
+
+public class CrawlEngineTestCases extends DirectoryTestCase
+{
+	private LocalServer server;
+
+	public void setUp()
+	{
+		super.setUp();
+		try {
+			server = new LocalServer();
+		} catch (IOException e) {
+			fail(e.toString());
+		}
+		server.respond_ok("/index.html", "text/html; charset=UTF-8",
+				"<html><body><a href=\"/a.html\">a</a> <a href=\"/b.html\">b</a> <a href=\"/c.png\">c</a></body></html>");
+		server.respond_ok("/a.html", "text/html; charset=UTF-8", "<html><body><a href=\"/b.html\">b</a></body></html>");
+		server.respond("/b.html", "HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=UTF-8\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "d\r\n<html>b</html\r\n1\r\n>\r\n0\r\n\r\n");
+		server.respond_ok("/c.png", "image/png", "png");
+		server.respond_ok("/feed.xml", "text/xml", "<rss><channel><title>feed</title></channel></rss>");
+	}
+
+	public void tearDown()
+	{
+		server.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Function to crawl the site of the local server with an engine and check the pages that were stored
+	 * @param engine
+	 */
+	private void crawl(String engine)
+	{
+		XPathCrawler crawler = new XPathCrawler(server.url("/index.html"), directory.getPath(), 1, 100, engine);
+		crawler.await_termination();
+		DBWrapper wrapper = new DBWrapper();
+		wrapper.setup(directory.getPath());
+		Indices pk_index = wrapper.getIndices();
+		try {
+			assertTrue(pk_index.crawled_urls_pk.contains(server.url("/index.html")));
+			assertTrue(pk_index.crawled_urls_pk.contains(server.url("/a.html")));
+			assertTrue(pk_index.crawled_urls_pk.contains(server.url("/b.html")));
+			assertFalse(pk_index.crawled_urls_pk.contains(server.url("/c.png")));
+		}
+		finally {
+			wrapper.shutdown();
+		}
+		int pages = 0;
+		for (String request : server.get_requests()) {
+			if (request.startsWith("GET /b.html "))
+				pages++;
+		}
+		assertEquals(1, pages);
+	}
+
+	/**
+	 * Test case for the NIO engine crawling a site, with bodies framed by Content-Length and by chunks
+	 */
+	@Test
+	public void test_nio()
+	{
+		crawl(XPathCrawler.ENGINE_NIO);
+	}
+
+	/**
+	 * Test case for the virtual thread engine crawling a site, with no more connections open to the host
+	 * than the pool allows
+	 */
+	@Test
+	public void test_virtual()
+	{
+		crawl(XPathCrawler.ENGINE_VIRTUAL);
+		assertTrue(server.get_max_open() <= 2);
+	}
+
+	/**
+	 * Function to create a channel in the database of a directory, the way the channel servlets do
+	 * @param dir
+	 * @param name
+	 * @param xpath
+	 */
+	private void create_channel(File dir, String name, String xpath)
+	{
+		DBWrapper wrapper = new DBWrapper();
+		wrapper.setup(dir.getPath());
+		Indices pk_index = wrapper.getIndices();
+		Channels channel = new Channels();
+		channel.setChannelName(name);
+		channel.setXPaths(new ArrayList<String>(Arrays.asList(xpath)));
+		pk_index.channels_pk.put(channel);
+		ChannelChange change = new ChannelChange();
+		change.setChannelName(name);
+		change.setXPaths(channel.getXPaths());
+		pk_index.channel_changes_pk.put(change);
+		wrapper.shutdown();
+	}
+
+	/**
+	 * Function to check if the feed of the local server was stored as a match of a channel
+	 * @param dir
+	 * @param name of the channel
+	 * @return
+	 */
+	private boolean feed_matched(File dir, String name)
+	{
+		DBWrapper wrapper = new DBWrapper();
+		wrapper.setup(dir.getPath());
+		try {
+			return wrapper.getIndices().channel_matches_pk.contains(new ChannelMatchKey(name, server.url("/feed.xml")));
+		}
+		finally {
+			wrapper.shutdown();
+		}
+	}
+
+	/**
+	 * Test case for crawls of different databases in the same process each matching against the channels of
+	 * their own database
+	 */
+	@Test
+	public void test_channels_per_database()
+	{
+		File first = new File(directory, "first");
+		File second = new File(directory, "second");
+		first.mkdirs();
+		second.mkdirs();
+		create_channel(first, "first", "/rss/channel/title");
+		create_channel(second, "second", "/rss/channel");
+		new XPathCrawler(server.url("/feed.xml"), first.getPath(), 1, 10).await_termination();
+		new XPathCrawler(server.url("/feed.xml"), second.getPath(), 1, 10).await_termination();
+		assertTrue(feed_matched(first, "first"));
+		assertTrue(feed_matched(second, "second"));
+		assertFalse(feed_matched(second, "first"));
+	}
+
+}
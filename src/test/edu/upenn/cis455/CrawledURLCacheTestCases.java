@@ -0,0 +1,102 @@
+package test.edu.upenn.cis455;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.storage.CrawledURLCache;
+import edu.upenn.cis455.storage.Crawled_URLS;
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.Indices;
+
+public class CrawledURLCacheTestCases extends DirectoryTestCase
+{
+	private DBWrapper wrapper;
+	private Indices pk_index;
+
+	public void setUp()
+	{
+		super.setUp();
+		wrapper = new DBWrapper();
+		wrapper.setup(directory.getPath());
+		pk_index = wrapper.getIndices();
+	}
+
+	public void tearDown()
+	{
+		wrapper.shutdown();
+		super.tearDown();
+	}
+
+	private Crawled_URLS record(String url, String hash)
+	{
+		Crawled_URLS crawled_url = new Crawled_URLS();
+		crawled_url.setURL(url);
+		crawled_url.setLastCrawledTime(1000);
+		crawled_url.setContentHash(hash);
+		crawled_url.setContentType("text/html");
+		return crawled_url;
+	}
+
+	/**
+	 * Test case for the cache handing out copies, so that changing a record does not change the cached one
+	 */
+	@Test
+	public void test_copies()
+	{
+		CrawledURLCache cache = new CrawledURLCache(pk_index, 10);
+		Crawled_URLS written = record("http://a.com/", "h1");
+		cache.put(written);
+		written.setContentHash("changed");
+		Crawled_URLS first = cache.get("http://a.com/");
+		assertEquals("h1", first.getContentHash());
+		first.setContentHash("changed again");
+		Crawled_URLS second = cache.get("http://a.com/");
+		assertNotSame(first, second);
+		assertEquals("h1", second.getContentHash());
+		pk_index.crawled_urls_pk.put(record("http://b.com/", "h2"));
+		Crawled_URLS stored = cache.get("http://b.com/");
+		stored.setContentHash("changed");
+		assertEquals("h2", cache.get("http://b.com/").getContentHash());
+	}
+
+	/**
+	 * Test case for the urls that were never crawled being remembered, so that the store is read once for them
+	 */
+	@Test
+	public void test_negative_entries()
+	{
+		CrawledURLCache cache = new CrawledURLCache(pk_index, 10);
+		assertNull(cache.get("http://a.com/"));
+		assertEquals(0, cache.get_hits());
+		assertEquals(1, cache.get_misses());
+		pk_index.crawled_urls_pk.put(record("http://a.com/", "h1")); // Not written through the cache
+		assertFalse(cache.contains("http://a.com/"));
+		assertEquals(1, cache.get_hits());
+		assertEquals(1, cache.get_misses());
+		cache.put(record("http://a.com/", "h2"));
+		assertEquals("h2", cache.get("http://a.com/").getContentHash());
+		assertEquals(2, cache.get_hits());
+	}
+
+	/**
+	 * Test case for the least recently used url being evicted once the cache is full, and read from the store again
+	 */
+	@Test
+	public void test_eviction()
+	{
+		CrawledURLCache cache = new CrawledURLCache(pk_index, 2);
+		pk_index.crawled_urls_pk.put(record("http://a.com/", "stored"));
+		pk_index.crawled_urls_pk.put(record("http://b.com/", "stored"));
+		cache.put(record("http://a.com/", "cached"));
+		cache.put(record("http://b.com/", "cached"));
+		assertEquals("cached", cache.get("http://a.com/").getContentHash()); // b is now the least recently used
+		cache.put(record("http://c.com/", "cached"));
+		assertEquals(1, cache.get_hits());
+		assertEquals(0, cache.get_misses());
+		assertEquals("cached", cache.get("http://a.com/").getContentHash());
+		assertEquals("stored", cache.get("http://b.com/").getContentHash());
+		assertEquals(2, cache.get_hits());
+		assertEquals(1, cache.get_misses());
+		assertNull(cache.get("http://c.com/")); // Evicted by b, and never written to the store
+		assertEquals(2, cache.get_misses());
+	}
+}
@@ -0,0 +1,40 @@
+package test.edu.upenn.cis455;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.URLS;
+
+public class DBWrapperTestCases extends DirectoryTestCase
+{
+	/**
+	 * Test case for the wrappers of a directory sharing one environment, which is closed with the last of them
+	 */
+	@Test
+	public void test_shared_environment()
+	{
+		DBWrapper first = new DBWrapper();
+		first.setup(directory.getPath());
+		DBWrapper second = new DBWrapper();
+		second.setup(directory.getPath() + File.separator + "." + File.separator);
+		assertSame(first.getEnvironment(), second.getEnvironment());
+		assertSame(first.getIndices(), second.getIndices());
+		URLS url = new URLS();
+		url.setURL("http://a.com/");
+		first.getIndices().urls_pk.put(url);
+		first.shutdown();
+		first.shutdown(); // Does nothing the second time
+		assertNull(first.getEnvironment());
+		assertTrue(second.getEnvironment().isValid());
+		assertTrue(second.getIndices().urls_pk.contains("http://a.com/"));
+		second.shutdown();
+		// Opened again once every wrapper has let go of it
+		DBWrapper third = new DBWrapper();
+		third.setup(directory.getPath());
+		assertTrue(third.getIndices().urls_pk.contains("http://a.com/"));
+		third.shutdown();
+	}
+
+}
@@ -0,0 +1,35 @@
+package test.edu.upenn.cis455;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * Base of the test cases that need a database directory. A fresh directory is created in the
+ * temporary directory before each test and deleted, with everything in it, after the test.
+ */
+public abstract class DirectoryTestCase extends TestCase
+{
+	protected File directory;
+
+	public void setUp()
+	{
+		directory = new File(System.getProperty("java.io.tmpdir"), getClass().getSimpleName() + "_" + System.nanoTime());
+		directory.mkdirs();
+	}
+
+	public void tearDown()
+	{
+		delete(directory);
+	}
+
+	private static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files)
+				delete(child);
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,101 @@
+package test.edu.upenn.cis455;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.DnsCache;
+import edu.upenn.cis455.crawler.Resolver;
+
+public class DnsCacheTestCases extends TestCase
+{
+	/**
+	 * Stub resolver that knows a single host and counts its lookups
+	 */
+	private static class StubResolver implements Resolver
+	{
+		AtomicInteger lookups = new AtomicInteger();
+		CountDownLatch released = new CountDownLatch(0);
+
+		public InetAddress resolve(String host) throws UnknownHostException
+		{
+			lookups.incrementAndGet();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				throw new UnknownHostException(host);
+			}
+			if (!host.equals("crawler.test"))
+				throw new UnknownHostException(host);
+			return InetAddress.getByAddress(host, new byte[] { 10, 0, 0, 1 });
+		}
+	}
+
+	/**
+	 * Test case for an address being looked up once while it is cached, and again once it has expired
+	 */
+	@Test
+	public void test_ttl() throws Exception
+	{
+		StubResolver resolver = new StubResolver();
+		DnsCache dns = new DnsCache(resolver, 10, 2, 200, 200);
+		assertEquals("10.0.0.1", dns.lookup("crawler.test").getHostAddress());
+		assertEquals("10.0.0.1", dns.lookup("Crawler.Test").getHostAddress());
+		assertEquals(1, resolver.lookups.get());
+		Thread.sleep(300);
+		dns.lookup("crawler.test");
+		assertEquals(2, resolver.lookups.get());
+		dns.close();
+	}
+
+	/**
+	 * Test case for a host that could not be resolved being remembered for the negative time to live
+	 */
+	@Test
+	public void test_negative_caching() throws Exception
+	{
+		StubResolver resolver = new StubResolver();
+		DnsCache dns = new DnsCache(resolver, 10, 2, 60000, 200);
+		for (int i=0; i<3; i++) {
+			try {
+				dns.lookup("unknown.test");
+				fail("unknown.test should not resolve");
+			} catch (UnknownHostException e) {
+				// Expected
+			}
+		}
+		assertEquals(1, resolver.lookups.get());
+		Thread.sleep(300);
+		try {
+			dns.lookup("unknown.test");
+		} catch (UnknownHostException e) {
+			// Expected
+		}
+		assertEquals(2, resolver.lookups.get());
+		dns.close();
+	}
+
+	/**
+	 * Test case for a prefetch not waiting for the lookup, and the lookups of the host sharing it
+	 */
+	@Test
+	public void test_prefetch() throws Exception
+	{
+		StubResolver resolver = new StubResolver();
+		resolver.released = new CountDownLatch(1);
+		DnsCache dns = new DnsCache(resolver, 10, 2, 60000, 60000);
+		dns.prefetch("crawler.test"); // Would hang if it waited for the stub
+		dns.prefetch("crawler.test");
+		resolver.released.countDown();
+		assertEquals("10.0.0.1", dns.lookup("crawler.test").getHostAddress());
+		assertEquals(1, resolver.lookups.get());
+		assertEquals(1, dns.get_misses());
+		assertEquals(2, dns.get_hits());
+		dns.close();
+	}
+}
@@ -0,0 +1,156 @@
+package test.edu.upenn.cis455;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.Frontier;
+
+public class FrontierTestCases extends DirectoryTestCase
+{
+	private Frontier frontier;
+
+	public void setUp()
+	{
+		super.setUp();
+		frontier = new Frontier(directory.getPath());
+	}
+
+	public void tearDown()
+	{
+		frontier.closedb();
+		super.tearDown();
+	}
+
+	/**
+	 * Test case for the urls already admitted being dropped
+	 */
+	@Test
+	public void test_duplicates_dropped() throws InterruptedException
+	{
+		assertTrue(frontier.enqueue("http://a.com/1"));
+		assertFalse(frontier.enqueue("http://a.com/1"));
+		assertEquals(1, frontier.enqueue_all(Arrays.asList("http://a.com/1", "http://b.com/1", "http://b.com/1")));
+		assertEquals(2, frontier.get_admitted_count());
+		assertEquals(3, frontier.get_dropped_count());
+	}
+
+	/**
+	 * Test case for a host being handed out only once at a time
+	 */
+	@Test
+	public void test_host_checked_out() throws InterruptedException
+	{
+		frontier.enqueue("http://a.com/1");
+		frontier.enqueue("http://a.com/2");
+		frontier.enqueue("http://b.com/1");
+		String first = frontier.dequeue();
+		String second = frontier.dequeue();
+		assertFalse(first.substring(0, 12).equals(second.substring(0, 12)));
+		assertEquals(2, frontier.get_in_flight());
+		frontier.release(first);
+		frontier.release(second);
+		assertEquals("http://a.com/2", frontier.dequeue());
+	}
+
+	/**
+	 * Test case for the next url of a host being held back until the crawl delay of the host has passed
+	 */
+	@Test
+	public void test_crawl_delay() throws InterruptedException
+	{
+		frontier.set_crawl_delay("a.com", 500);
+		frontier.enqueue("http://a.com/1");
+		frontier.enqueue("http://a.com/2");
+		assertEquals("http://a.com/1", frontier.dequeue());
+		frontier.enqueue("http://b.com/1");
+		frontier.release("http://a.com/1");
+		long released = System.currentTimeMillis();
+		assertEquals("http://b.com/1", frontier.dequeue());
+		assertTrue(System.currentTimeMillis() - released < 500);
+		frontier.release("http://b.com/1");
+		assertEquals("http://a.com/2", frontier.dequeue());
+		assertTrue(System.currentTimeMillis() - released >= 500);
+	}
+
+	/**
+	 * Test case for dequeue returning null once the frontier is empty and nothing is in flight
+	 */
+	@Test
+	public void test_drained() throws InterruptedException
+	{
+		frontier.enqueue("http://a.com/1");
+		String url = frontier.dequeue();
+		assertEquals("http://a.com/1", url);
+		frontier.release(url);
+		assertEquals(0, frontier.get_in_flight());
+		assertNull(frontier.dequeue());
+	}
+
+	/**
+	 * Test case for dequeue waiting while a released page is still being processed, since it may add links
+	 */
+	@Test
+	public void test_processing_holds_drain() throws InterruptedException
+	{
+		frontier.enqueue("http://a.com/1");
+		String url = frontier.dequeue();
+		frontier.begin_processing();
+		frontier.release(url);
+		final String[] result = new String[1];
+		Thread worker = new Thread() {
+			public void run() {
+				try {
+					result[0] = frontier.dequeue();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		worker.start();
+		worker.join(300);
+		assertTrue(worker.isAlive());
+		frontier.enqueue("http://b.com/1");
+		frontier.end_processing();
+		worker.join(5000);
+		assertEquals("http://b.com/1", result[0]);
+	}
+
+	/**
+	 * Test case for stop ending dequeue even though urls are waiting
+	 */
+	@Test
+	public void test_stop() throws InterruptedException
+	{
+		frontier.enqueue("http://a.com/1");
+		frontier.stop();
+		assertNull(frontier.dequeue());
+	}
+
+	/**
+	 * Test case for pause holding back the urls until resume
+	 */
+	@Test
+	public void test_pause() throws InterruptedException
+	{
+		frontier.enqueue("http://a.com/1");
+		frontier.pause();
+		final String[] result = new String[1];
+		Thread worker = new Thread() {
+			public void run() {
+				try {
+					result[0] = frontier.dequeue();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		worker.start();
+		worker.join(300);
+		assertTrue(worker.isAlive());
+		frontier.resume();
+		worker.join(5000);
+		assertEquals("http://a.com/1", result[0]);
+	}
+
+}
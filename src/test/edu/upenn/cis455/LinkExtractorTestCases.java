@@ -0,0 +1,109 @@
+package test.edu.upenn.cis455;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.BodyBuffer;
+import edu.upenn.cis455.crawler.LinkExtractor;
+import edu.upenn.cis455.crawler.LinkListener;
+
+public class LinkExtractorTestCases extends TestCase
+{
+	/**
+	 * Function to extract the links of a page, feeding it to the extractor in pieces of the given size
+	 */
+	private ArrayList<String> extract(String url, String html, int piece)
+	{
+		final ArrayList<String> links = new ArrayList<String>();
+		LinkExtractor extractor = new LinkExtractor(url, new LinkListener() {
+			public void link(String link) {
+				links.add(link);
+			}
+		});
+		byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+		for (int i=0; i<bytes.length; i+=piece)
+			extractor.feed(bytes, i, Math.min(piece, bytes.length - i));
+		return links;
+	}
+
+	/**
+	 * Test case for quoted and unquoted attributes, relative links and the port of the page being kept
+	 */
+	@Test
+	public void test_resolve()
+	{
+		String html = "<html><body><a href=\"a.html\">a</a> <A HREF='/b'>b</A> <a class=x href=c?x=1&amp;y=2>c</a>"
+				+ "<a href=\"../d#frag\">d</a><a href=\"mailto:me@host\">m</a><a href=\"#top\">t</a>"
+				+ "<iframe src=\"f.html\"></iframe><img src=\"i.png\"><a href=\"http://Other.com\">o</a></body></html>";
+		assertEquals(Arrays.asList("http://host:8080/dir/a.html", "http://host:8080/b", "http://host:8080/dir/c?x=1&y=2",
+				"http://host:8080/d", "http://host:8080/dir/f.html", "http://Other.com"),
+				extract("http://host:8080/dir/page.html", html, 4096));
+	}
+
+	/**
+	 * Test case for the first base tag changing what the links are resolved against
+	 */
+	@Test
+	public void test_base()
+	{
+		String html = "<head><base href=\"http://other.com/x/\"><base href=\"http://ignored.com/\"></head><a href=\"y\">y</a><a href=\"?q\">q</a>";
+		assertEquals(Arrays.asList("http://other.com/x/y", "http://other.com/x/?q"), extract("http://host/page", html, 4096));
+	}
+
+	/**
+	 * Test case for the links in comments, scripts and styles being skipped
+	 */
+	@Test
+	public void test_skipped()
+	{
+		String html = "<!-- <a href=\"no1\"> --><script>var s = '<a href=\"no2\">';</script><style>a{}</style><a href=\"yes\">"
+				+ "<!DOCTYPE html><SCRIPT type=\"text/javascript\">x<y</SCRIPT ><a href=yes2>";
+		assertEquals(Arrays.asList("http://host/yes", "http://host/yes2"), extract("http://host", html, 4096));
+	}
+
+	/**
+	 * Test case for a page fed a byte at a time giving the same links as in a single piece
+	 */
+	@Test
+	public void test_pieces()
+	{
+		String html = "<p>caf\u00e9</p><a href = \"caf\u00e9 menu.html\">x</a><a\nhref='/b?x=1'>y</a><link rel=alternate href=\"feed.xml\">";
+		ArrayList<String> expected = extract("http://host/dir/", html, 4096);
+		assertEquals(Arrays.asList("http://host/dir/caf%C3%A9%20menu.html", "http://host/b?x=1", "http://host/dir/feed.xml"), expected);
+		assertEquals(expected, extract("http://host/dir/", html, 1));
+	}
+
+	/**
+	 * Test case for the links being found while a body is read into a buffer, a few bytes at a time
+	 */
+	@Test
+	public void test_body_buffer() throws Exception
+	{
+		final ArrayList<String> links = new ArrayList<String>();
+		BodyBuffer buffer = new BodyBuffer(4);
+		buffer.set_extractor(new LinkExtractor("http://host/dir/page.html", new LinkListener() {
+			public void link(String link) {
+				links.add(link);
+			}
+		}));
+		byte[] html = "<p><a href=\"one.html\">1</a><iframe src='/two'></iframe>".getBytes(StandardCharsets.UTF_8);
+		InputStream in = new ByteArrayInputStream(html) {
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+		assertTrue(buffer.read_fully(in, 22)); // Up to the closing quote of the first link
+		assertEquals(Arrays.asList("http://host/dir/one.html"), links);
+		assertTrue(buffer.read_to_end(in, 1000));
+		assertEquals(Arrays.asList("http://host/dir/one.html", "http://host/two"), links);
+		assertEquals(html.length, buffer.length());
+	}
+
+}
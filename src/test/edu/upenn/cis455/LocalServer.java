@@ -0,0 +1,181 @@
+package test.edu.upenn.cis455;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A small HTTP server on the loopback interface for the test cases that fetch pages. Each path is
+ * answered with the raw bytes given for it, so a test controls the status line, the headers and the
+ * framing of the body exactly. Unknown paths get an empty 404. Connections are kept alive unless the
+ * response asks to close them. The server records the requests it receives and the connections it
+ * accepts.
+ */
+public class LocalServer implements Runnable
+{
+	private ServerSocket server;
+	private HashMap<String, byte[]> responses = new HashMap<String, byte[]>();
+	private ArrayList<String> requests = new ArrayList<String>(); // Heads of the requests received, in order
+	private long delay = 0; // Milliseconds to wait before each response
+	private int connections = 0; // Connections accepted so far
+	private int open = 0; // Connections open at the moment
+	private int max_open = 0; // Most connections open at the same time
+
+	public LocalServer() throws IOException
+	{
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this, "LocalServer-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Function to set the raw response sent for a path
+	 * @param path such as "/index.html"
+	 * @param response is the status line, the headers and the body
+	 */
+	public synchronized void respond(String path, String response)
+	{
+		responses.put(path, response.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Function to set a 200 response with a Content-Length for a path
+	 * @param path
+	 * @param content_type
+	 * @param body
+	 */
+	public void respond_ok(String path, String content_type, String body)
+	{
+		respond(path, "HTTP/1.1 200 OK\r\nContent-Type: " + content_type + "\r\nContent-Length: "
+				+ body.getBytes(StandardCharsets.ISO_8859_1).length + "\r\n\r\n" + body);
+	}
+
+	public synchronized void set_delay(long delay)
+	{
+		this.delay = delay;
+	}
+
+	public String url(String path)
+	{
+		return "http://127.0.0.1:" + server.getLocalPort() + path;
+	}
+
+	public synchronized ArrayList<String> get_requests()
+	{
+		return new ArrayList<String>(requests);
+	}
+
+	public synchronized int get_connections()
+	{
+		return connections;
+	}
+
+	public synchronized int get_max_open()
+	{
+		return max_open;
+	}
+
+	public void close()
+	{
+		try {
+			server.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void run()
+	{
+		while (!server.isClosed()) {
+			try {
+				final Socket socket = server.accept();
+				synchronized (this) {
+					connections++;
+					open++;
+					max_open = Math.max(max_open, open);
+				}
+				Thread handler = new Thread("LocalServer-handler") {
+					public void run() {
+						serve(socket);
+					}
+				};
+				handler.setDaemon(true);
+				handler.start();
+			}
+			catch (IOException e) {
+				// The server socket was closed
+			}
+		}
+	}
+
+	/**
+	 * Function to answer the requests sent over a connection until either side closes it
+	 * @param socket
+	 */
+	private void serve(Socket socket)
+	{
+		try {
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = socket.getOutputStream();
+			String head;
+			while ((head = read_head(in)) != null) {
+				byte[] response;
+				long wait;
+				synchronized (this) {
+					requests.add(head);
+					String path = head.split(" ", 3)[1];
+					response = responses.get(path);
+					wait = delay;
+				}
+				if (response == null)
+					response = "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+				if (wait > 0)
+					Thread.sleep(wait);
+				out.write(response);
+				out.flush();
+				if (new String(response, StandardCharsets.ISO_8859_1).toLowerCase().contains("connection: close"))
+					break;
+			}
+		}
+		catch (IOException | InterruptedException e) {
+			// The client closed the connection or abandoned the response
+		}
+		finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			synchronized (this) {
+				open--;
+			}
+		}
+	}
+
+	/**
+	 * Function to read the request line and the headers of a request
+	 * @param in
+	 * @return the head, or null if the connection was closed before a request was received
+	 * @throws IOException
+	 */
+	private String read_head(InputStream in) throws IOException
+	{
+		StringBuilder head = new StringBuilder();
+		int b;
+		while ((b = in.read()) != -1) {
+			head.append((char) b);
+			if (head.length() >= 4 && head.substring(head.length() - 4).equals("\r\n\r\n"))
+				return head.toString();
+		}
+		return null;
+	}
+
+}
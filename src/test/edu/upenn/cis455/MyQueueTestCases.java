@@ -0,0 +1,54 @@
+package test.edu.upenn.cis455;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.MyQueue;
+import edu.upenn.cis455.storage.DBWrapper;
+
+public class MyQueueTestCases extends DirectoryTestCase
+{
+	/**
+	 * Test case for the urls coming back in order after being spilled to disk across several batches
+	 */
+	@Test
+	public void test_spill_and_read_back() throws InterruptedException
+	{
+		MyQueue queue = new MyQueue(directory.getPath());
+		for (int i=0; i<3500; i++)
+			queue.enqueue("http://a.com/" + i);
+		DBWrapper wrapper = new DBWrapper(); // Shares the environment of the queue
+		wrapper.setup(directory.getPath());
+		assertEquals(2000, wrapper.getIndices().urlqueue_pk.count()); // Two batches behind the 1000 urls of the head
+		wrapper.shutdown();
+		for (int i=0; i<1200; i++)
+			assertEquals("http://a.com/" + i, queue.dequeue());
+		for (int i=3500; i<4000; i++) // Queued behind the urls still on disk
+			queue.enqueue("http://a.com/" + i);
+		for (int i=1200; i<4000; i++)
+			assertEquals("http://a.com/" + i, queue.dequeue());
+		assertTrue(queue.isempty());
+		queue.closedb();
+	}
+
+	/**
+	 * Test case for a queue starting empty, with the records a previous crawl left on disk deleted
+	 */
+	@Test
+	public void test_starts_empty() throws InterruptedException
+	{
+		MyQueue queue = new MyQueue(directory.getPath());
+		for (int i=0; i<2500; i++)
+			queue.enqueue("http://a.com/" + i);
+		queue.closedb();
+		queue = new MyQueue(directory.getPath());
+		assertTrue(queue.isempty());
+		DBWrapper wrapper = new DBWrapper(); // Shares the environment of the queue
+		wrapper.setup(directory.getPath());
+		assertEquals(0, wrapper.getIndices().urlqueue_pk.count());
+		wrapper.shutdown();
+		queue.enqueue("http://b.com/");
+		assertEquals("http://b.com/", queue.dequeue());
+		assertTrue(queue.isempty());
+		queue.closedb();
+	}
+}
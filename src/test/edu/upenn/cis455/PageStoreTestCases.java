@@ -0,0 +1,88 @@
+package test.edu.upenn.cis455;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.Transaction;
+
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.PageContent;
+import edu.upenn.cis455.storage.PageStore;
+
+public class PageStoreTestCases extends DirectoryTestCase
+{
+	private DBWrapper wrapper;
+	private Environment env;
+	private PageStore store;
+
+	public void setUp()
+	{
+		super.setUp();
+		wrapper = new DBWrapper();
+		wrapper.setup(directory.getPath());
+		env = wrapper.getEnvironment();
+		store = new PageStore(wrapper.getIndices());
+	}
+
+	public void tearDown()
+	{
+		wrapper.shutdown();
+		super.tearDown();
+	}
+
+	/**
+	 * Test case for a body coming back from its compressed record as it was, non-ASCII text included
+	 */
+	@Test
+	public void test_round_trip()
+	{
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+			content.append("<p>page ").append(i).append(" caf\u00e9 \u65e5\u672c</p>\n");
+		byte[] bytes = PageStore.encode(content.toString());
+		PageContent page = PageStore.compress(PageStore.hash(bytes), bytes);
+		assertEquals(bytes.length, page.getLength());
+		assertTrue(page.getData().length < bytes.length / 4);
+		assertTrue(Arrays.equals(bytes, PageStore.inflate(page)));
+		assertEquals(content.toString(), PageStore.decompress(page));
+		assertEquals("", PageStore.decompress(PageStore.compress(PageStore.hash(new byte[0]), new byte[0])));
+	}
+
+	/**
+	 * Test case for a corrupt record being read back as null
+	 */
+	@Test
+	public void test_corrupt()
+	{
+		byte[] bytes = PageStore.encode("<html>page</html>");
+		PageContent page = PageStore.compress(PageStore.hash(bytes), bytes);
+		assertNull(PageStore.inflate(new PageContent(page.getHash(), page.getData(), page.getLength() + 1)));
+		assertNull(PageStore.inflate(new PageContent(page.getHash(), new byte[] { 1, 2, 3 }, page.getLength())));
+	}
+
+	/**
+	 * Test case for pages with the same content being stored once under the hash of the content
+	 */
+	@Test
+	public void test_dedup_by_hash()
+	{
+		Transaction txn = env.beginTransaction(null, null);
+		String first = store.put(txn, "<html>same</html>");
+		String second = store.put(txn, "<html>same</html>");
+		String other = store.put(txn, "<html>other</html>");
+		txn.commit();
+		assertEquals(first, second);
+		assertFalse(first.equals(other));
+		assertEquals(PageStore.hash(PageStore.encode("<html>same</html>")), first);
+		assertEquals(2, wrapper.getIndices().pages_pk.count());
+		assertTrue(store.contains(first));
+		assertEquals("<html>same</html>", store.get(first));
+		assertEquals("<html>other</html>", new String(store.get_bytes(other), StandardCharsets.UTF_8));
+		assertNull(store.get(null));
+		assertNull(store.get(PageStore.hash(new byte[0])));
+	}
+
+}
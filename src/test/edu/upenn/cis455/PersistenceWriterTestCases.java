@@ -0,0 +1,86 @@
+package test.edu.upenn.cis455;
+
+import org.junit.Test;
+
+import com.sleepycat.je.Durability;
+
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.Indices;
+import edu.upenn.cis455.storage.PersistenceWriter;
+import edu.upenn.cis455.storage.URLS;
+
+public class PersistenceWriterTestCases extends DirectoryTestCase
+{
+	private DBWrapper wrapper;
+	private Indices pk_index;
+	private PersistenceWriter writer;
+
+	public void setUp()
+	{
+		super.setUp();
+		wrapper = new DBWrapper();
+		wrapper.setup(directory.getPath());
+		pk_index = new Indices(wrapper.getStore());
+		writer = new PersistenceWriter(wrapper.getEnvironment(), Durability.COMMIT_NO_SYNC);
+	}
+
+	public void tearDown()
+	{
+		writer.close();
+		wrapper.shutdown();
+		super.tearDown();
+	}
+
+	/**
+	 * Test case for queued records sharing commits and being visible once flushed
+	 */
+	@Test
+	public void test_group_commit() throws InterruptedException
+	{
+		for (int i=0; i<2000; i++) {
+			URLS url = new URLS();
+			url.setURL("http://a.com/" + i);
+			writer.put(pk_index.urls_pk, url);
+		}
+		writer.flush();
+		assertEquals(2000, pk_index.urls_pk.count());
+		assertEquals(2000, writer.get_write_count());
+		assertTrue(writer.get_commit_count() < 2000);
+	}
+
+	/**
+	 * Test case for a write that must not replace the record already stored
+	 */
+	@Test
+	public void test_no_overwrite() throws InterruptedException
+	{
+		URLS url = new URLS();
+		url.setURL("http://a.com/");
+		writer.put_no_overwrite(pk_index.urls_pk, url);
+		writer.put_no_overwrite(pk_index.urls_pk, url);
+		writer.flush();
+		assertEquals(1, pk_index.urls_pk.count());
+		assertEquals(PersistenceWriter.parse_durability("write_no_sync"), Durability.COMMIT_WRITE_NO_SYNC);
+		assertNull(PersistenceWriter.parse_durability("sometimes"));
+	}
+
+	/**
+	 * Test case for a queued record of a tracked index being found as pending until it is stored
+	 */
+	@Test
+	public void test_pending_keys() throws InterruptedException
+	{
+		writer.track(pk_index.urls_pk);
+		for (int i=0; i<1000; i++) {
+			URLS url = new URLS();
+			url.setURL("http://a.com/" + i);
+			writer.put(pk_index.urls_pk, url);
+			assertTrue(writer.is_pending(pk_index.urls_pk, url.getURL()) || pk_index.urls_pk.contains(url.getURL()));
+		}
+		writer.flush();
+		assertFalse(writer.is_pending(pk_index.urls_pk, "http://a.com/0"));
+		assertTrue(pk_index.urls_pk.contains("http://a.com/0"));
+		assertFalse(writer.is_pending(pk_index.urls_pk, "http://b.com/"));
+	}
+
+}
@@ -0,0 +1,119 @@
+package test.edu.upenn.cis455;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.sleepycat.je.Durability;
+
+import edu.upenn.cis455.crawler.ConnectionPool;
+import edu.upenn.cis455.crawler.RobotsCache;
+import edu.upenn.cis455.crawler.RobotsRules;
+import edu.upenn.cis455.storage.DBWrapper;
+import edu.upenn.cis455.storage.Indices;
+import edu.upenn.cis455.storage.PersistenceWriter;
+
+public class RobotsCacheTestCases extends DirectoryTestCase
+{
+	private LocalServer server;
+	private DBWrapper wrapper;
+	private Indices pk_index;
+	private PersistenceWriter writer;
+
+	public void setUp()
+	{
+		super.setUp();
+		try {
+			server = new LocalServer();
+		} catch (IOException e) {
+			fail(e.toString());
+		}
+		server.respond_ok("/robots.txt", "text/plain", "User-agent: *\nDisallow: /private/\nCrawl-delay: 2\n");
+		wrapper = new DBWrapper();
+		wrapper.setup(directory.getPath());
+		pk_index = wrapper.getIndices();
+		writer = new PersistenceWriter(wrapper.getEnvironment(), Durability.COMMIT_NO_SYNC);
+	}
+
+	public void tearDown()
+	{
+		writer.close();
+		wrapper.shutdown();
+		ConnectionPool.close_shared();
+		server.close();
+		super.tearDown();
+	}
+
+	private int robots_requests()
+	{
+		int count = 0;
+		for (String request : server.get_requests()) {
+			if (request.startsWith("GET /robots.txt "))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Test case for the threads that need the same host at the same time fetching its robots.txt once,
+	 * the first thread loading it and the others waiting for its outcome
+	 */
+	@Test
+	public void test_single_flight() throws InterruptedException, MalformedURLException
+	{
+		final RobotsCache cache = new RobotsCache(pk_index, writer);
+		final CountDownLatch start = new CountDownLatch(1);
+		final RobotsRules[] rules = new RobotsRules[20];
+		Thread[] threads = new Thread[rules.length];
+		server.set_delay(500); // Long enough for every thread to miss while the first one loads
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						start.await();
+						rules[index] = cache.get(new URL(server.url("/page" + index + ".html")));
+					} catch (InterruptedException | MalformedURLException e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join(10000);
+		assertEquals(1, cache.get_fetches());
+		assertEquals(19, cache.get_waits());
+		assertEquals(20, cache.get_misses());
+		assertEquals(1, robots_requests());
+		for (RobotsRules rule : rules) {
+			assertSame(rules[0], rule);
+			assertFalse(rule.is_allowed("/private/a.html"));
+			assertTrue(rule.is_allowed("/public/a.html"));
+			assertEquals(2000, rule.getCrawlDelay());
+		}
+		cache.get(new URL(server.url("/other.html")));
+		assertEquals(1, cache.get_hits());
+		assertEquals(1, cache.get_fetches());
+	}
+
+	/**
+	 * Test case for the rules fetched by one cache being read from the store by another, without a fetch
+	 */
+	@Test
+	public void test_stored() throws InterruptedException, MalformedURLException
+	{
+		RobotsCache cache = new RobotsCache(pk_index, writer);
+		assertFalse(cache.get(new URL(server.url("/private/a.html"))).is_allowed("/private/a.html"));
+		writer.flush();
+		RobotsCache restarted = new RobotsCache(pk_index, writer);
+		assertFalse(restarted.get(new URL(server.url("/private/a.html"))).is_allowed("/private/a.html"));
+		assertEquals(0, restarted.get_fetches());
+		assertEquals(1, robots_requests());
+	}
+
+}
@@ -0,0 +1,92 @@
+package test.edu.upenn.cis455;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.RobotsRules;
+
+public class RobotsRulesTestCases extends TestCase
+{
+	/**
+	 * Test case for the longest matching rule deciding, and Allow winning a tie
+	 */
+	@Test
+	public void test_longest_match()
+	{
+		RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /private\nAllow: /private/public\nDisallow: /same\nAllow: /same\n", Long.MAX_VALUE);
+		assertFalse(rules.is_allowed("/private/secret.html"));
+		assertTrue(rules.is_allowed("/private/public/page.html"));
+		assertTrue(rules.is_allowed("/same/page"));
+		assertTrue(rules.is_allowed("/other"));
+		assertTrue(rules.is_allowed("/robots.txt"));
+	}
+
+	/**
+	 * Test case for '*' and '$' in rules
+	 */
+	@Test
+	public void test_wildcards()
+	{
+		RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /*.xml$\nDisallow: /*?session=\nDisallow: /a*b*c\nAllow: /feeds/*.xml$\n", Long.MAX_VALUE);
+		assertFalse(rules.is_allowed("/data/file.xml"));
+		assertTrue(rules.is_allowed("/data/file.xml?x=1"));
+		assertTrue(rules.is_allowed("/feeds/news.xml"));
+		assertFalse(rules.is_allowed("/page?session=1"));
+		assertFalse(rules.is_allowed("/axxbyyc/d"));
+		assertTrue(rules.is_allowed("/axxc"));
+	}
+
+	/**
+	 * Test case for the group of the crawler being used instead of the group for every crawler
+	 */
+	@Test
+	public void test_groups()
+	{
+		String text = "User-agent: *\nDisallow: /\n\n# For us\nUser-agent: other\nUser-agent: CIS455Crawler/1.0\nDisallow: /tmp # temporary\nCrawl-delay: 0.5\n";
+		RobotsRules rules = RobotsRules.parse(text, Long.MAX_VALUE);
+		assertTrue(rules.is_allowed("/index.html"));
+		assertFalse(rules.is_allowed("/tmp/x"));
+		assertEquals(500, rules.getCrawlDelay());
+		rules = RobotsRules.parse("User-agent: *\nCrawl-delay: 2\nDisallow:\n", Long.MAX_VALUE);
+		assertTrue(rules.is_allowed("/anything"));
+		assertEquals(2000, rules.getCrawlDelay());
+	}
+
+	/**
+	 * Test case for rules and paths with percent escapes comparing equal
+	 */
+	@Test
+	public void test_escapes()
+	{
+		RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /%7ejoe/\nDisallow: /a%2fb\n", Long.MAX_VALUE);
+		assertFalse(rules.is_allowed("/~joe/index.html"));
+		assertFalse(rules.is_allowed("/a%2Fb"));
+		assertTrue(rules.is_allowed("/a/b"));
+	}
+
+	/**
+	 * Test case for rules with many '*' matching a long path in bounded time, and for over-long rules being ignored
+	 */
+	@Test
+	public void test_many_wildcards()
+	{
+		RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /*a*a*a*a*a*a*a*a*a*a*b\nDisallow: /*a*a*a*a*a*b$\n", Long.MAX_VALUE);
+		StringBuilder path = new StringBuilder("/");
+		for (int i=0; i<5000; i++)
+			path.append('a');
+		long start = System.currentTimeMillis();
+		assertTrue(rules.is_allowed(path.toString()));
+		assertFalse(rules.is_allowed(path.toString() + "b"));
+		assertFalse(rules.is_allowed(path.toString() + "bc"));
+		assertTrue(System.currentTimeMillis() - start < 2000);
+		StringBuilder text = new StringBuilder("User-agent: *\nDisallow: /");
+		for (int i=0; i<RobotsRules.MAX_WILDCARDS + 1; i++)
+			text.append("x*");
+		text.append("y\nDisallow: /private\n");
+		rules = RobotsRules.parse(text.toString(), Long.MAX_VALUE);
+		assertTrue(rules.is_allowed("/xxxxxxxxxxxxxxxxxxy"));
+		assertFalse(rules.is_allowed("/private"));
+	}
+
+}
@@ -12,7 +12,23 @@ public class RunAllTests extends TestCase
       Class[]  testClasses = {
         /* TODO: Add the names of your unit test classes here */
         Class.forName("test.edu.upenn.cis455.TestCases"), 
-        Class.forName("test.edu.upenn.cis455.CrawlerTestCases")
+        Class.forName("test.edu.upenn.cis455.CrawlerTestCases"),
+        Class.forName("test.edu.upenn.cis455.FrontierTestCases"),
+        Class.forName("test.edu.upenn.cis455.MyQueueTestCases"),
+        Class.forName("test.edu.upenn.cis455.BloomFilterTestCases"),
+        Class.forName("test.edu.upenn.cis455.ClientTestCases"),
+        Class.forName("test.edu.upenn.cis455.ConnectionPoolTestCases"),
+        Class.forName("test.edu.upenn.cis455.CrawlEngineTestCases"),
+        Class.forName("test.edu.upenn.cis455.ChannelRegistryTestCases"),
+        Class.forName("test.edu.upenn.cis455.PersistenceWriterTestCases"),
+        Class.forName("test.edu.upenn.cis455.DBWrapperTestCases"),
+        Class.forName("test.edu.upenn.cis455.LinkExtractorTestCases"),
+        Class.forName("test.edu.upenn.cis455.URLCanonicalizerTestCases"),
+        Class.forName("test.edu.upenn.cis455.RobotsRulesTestCases"),
+        Class.forName("test.edu.upenn.cis455.RobotsCacheTestCases"),
+        Class.forName("test.edu.upenn.cis455.PageStoreTestCases"),
+        Class.forName("test.edu.upenn.cis455.CrawledURLCacheTestCases"),
+        Class.forName("test.edu.upenn.cis455.DnsCacheTestCases")
       };   
       
       return new TestSuite(testClasses);
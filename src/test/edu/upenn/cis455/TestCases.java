@@ -2,7 +2,11 @@ package test.edu.upenn.cis455;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import junit.framework.TestCase;
 
@@ -14,6 +18,7 @@ import edu.upenn.cis455.xpathengine.HTTPClient;
 import edu.upenn.cis455.xpathengine.XPathEngine;
 import edu.upenn.cis455.xpathengine.XPathEngineFactory;
 import edu.upenn.cis455.xpathengine.XPathEngineImpl;
+import edu.upenn.cis455.xpathengine.XPathMatcher;
 
 public class TestCases extends TestCase
 {
@@ -94,6 +99,91 @@ public class TestCases extends TestCase
 		}
 	}
 	
+	/**
+	 * Test case for evaluate on a document parsed locally, covering several nested filters in one
+	 * step, a missing attribute and whitespace inside the filters
+	 * @throws Exception
+	 */
+	@Test
+	public void test_evaluate_local() throws Exception
+	{
+		String xml = "<imas><production name=\"765\"><idol><fn>chihaya</fn><ln>kisaragi</ln></idol>"
+				+ "<idol><fn>ami</fn><ln>futami</ln><c/></idol></production></imas>";
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		xpaths = new String[5];
+		xpaths[0] = "/imas/production[idol[fn[text()=\"chihaya\"]]][idol[ln[text()=\"futami\"]]]";
+		xpaths[1] = "/imas/production[idol[fn[text()=\"chihaya\"]]][idol[ln[text()=\"hoshii\"]]]";
+		xpaths[2] = "/imas/production[@missing=\"765\"]";
+		xpaths[3] = "/imas/production[ idol / ln [ contains( text() , \"ragi\" ) ] ]/idol/c";
+		xpaths[4] = "/imas//production";
+		xpathengine.setXPaths(xpaths);
+		boolean result[] = xpathengine.evaluate(doc);
+		assertTrue(result[0]);
+		assertFalse(result[1]);
+		assertFalse(result[2]);
+		assertTrue(result[3]);
+		assertFalse(xpathengine.isValid(4));
+		assertFalse(result[4]);
+	}
+
+	/**
+	 * Test case for matching a document against a set of xpaths that share their first steps in a single pass
+	 * @throws Exception
+	 */
+	@Test
+	public void test_matcher() throws Exception
+	{
+		String xml = "<imas><production name=\"765\"><idol><fn>chihaya</fn><ln>kisaragi</ln></idol>"
+				+ "<idol><fn>ami</fn><ln>futami</ln><c/></idol></production></imas>";
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		xpaths = new String[6];
+		xpaths[0] = "/imas/production/idol/fn[text()=\"ami\"]";
+		xpaths[1] = "/imas/production/idol/fn[text()=\"haruka\"]";
+		xpaths[2] = "/imas/production[@name=\"765\"]/idol[ln[contains(text(),\"ragi\")]]/fn";
+		xpaths[3] = "/imas/production/idol/c";
+		xpaths[4] = "/imas/production/idol/fn[text()=\"ami\"]";
+		xpaths[5] = "/imas/production/";
+		XPathMatcher matcher = new XPathMatcher(xpaths);
+		boolean result[] = matcher.match(doc);
+		assertTrue(result[0]);
+		assertFalse(result[1]);
+		assertTrue(result[2]);
+		assertTrue(result[3]);
+		assertTrue(result[4]);
+		assertFalse(matcher.isValid(5));
+		assertFalse(result[5]);
+	}
+
+	/**
+	 * Test case for evaluating a streamed document without building a DOM
+	 */
+	@Test
+	public void test_evaluate_stream()
+	{
+		String xml = "<imas><production name=\"765\"><idol><fn>chihaya</fn><ln>kisa<![CDATA[ragi]]></ln></idol>"
+				+ "<idol><fn>ami</fn><ln>futami</ln><c/></idol></production></imas>";
+		xpaths = new String[5];
+		xpaths[0] = "/imas/production[idol[fn[text()=\"chihaya\"]]][idol[ln[text()=\"futami\"]]]";
+		xpaths[1] = "/imas/production[@name=\"765\"]/idol[ln[text()=\"ragi\"]]/fn[text()=\"chihaya\"]";
+		xpaths[2] = "/imas/production[idol[ln[text()=\"kisaragi\"]]]";
+		xpaths[3] = "/imas/production[@name=\"961\"]";
+		xpaths[4] = "/imas//production";
+		xpathengine.setXPaths(xpaths);
+		boolean result[] = xpathengine.evaluate(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+		assertTrue(result[0]);
+		assertTrue(result[1]);
+		assertFalse(result[2]);
+		assertFalse(result[3]);
+		assertFalse(result[4]);
+		// Every xpath is decided before the document turns out not to be well formed
+		xpaths = new String[1];
+		xpaths[0] = "/imas/production/idol/fn";
+		xpathengine.setXPaths(xpaths);
+		assertTrue(xpathengine.evaluate(new ByteArrayInputStream("<imas><production><idol><fn/><".getBytes(StandardCharsets.UTF_8)))[0]);
+	}
+	
 	/**
 	 * Test case for testing functionality of evaluate in the case of HTML pages
 	 * @throws IOException
@@ -0,0 +1,63 @@
+package test.edu.upenn.cis455;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import edu.upenn.cis455.crawler.URLCanonicalizer;
+
+public class URLCanonicalizerTestCases extends TestCase
+{
+	private URLCanonicalizer canonicalizer = new URLCanonicalizer();
+
+	/**
+	 * Test case for the ways of writing the same url having one canonical form
+	 */
+	@Test
+	public void test_equivalent()
+	{
+		assertEquals("http://host/b", canonicalizer.canonicalize("http://Host/a/../b#frag"));
+		assertEquals("http://host/b", canonicalizer.canonicalize("HTTP://host:80/b"));
+		assertEquals("http://host/b", canonicalizer.canonicalize("http://host/./b"));
+		assertEquals("http://host/", canonicalizer.canonicalize("http://host."));
+		assertEquals("https://host/", canonicalizer.canonicalize("https://host:443"));
+		assertEquals("http://host:8080/a/", canonicalizer.canonicalize("http://host:08080/a/b/.."));
+		assertEquals("http://www.host.com/", canonicalizer.canonicalize("www.host.com"));
+	}
+
+	/**
+	 * Test case for percent escapes being decoded for unreserved characters and upper cased otherwise
+	 */
+	@Test
+	public void test_escapes()
+	{
+		assertEquals("http://host/~a/b%2Fc%20d?q=%C3%A9", canonicalizer.canonicalize("http://host/%7Ea/b%2fc d?q=\u00e9"));
+		assertEquals("http://host/100%25", canonicalizer.canonicalize("http://host/100%"));
+	}
+
+	/**
+	 * Test case for the tracking parameters being dropped from the query and the path
+	 */
+	@Test
+	public void test_parameters()
+	{
+		assertEquals("http://host/a?id=2", canonicalizer.canonicalize("http://host/a?utm_source=x&id=2&gclid=y"));
+		assertEquals("http://host/a", canonicalizer.canonicalize("http://host/a?utm_medium=x&"));
+		assertEquals("http://host/a;v=1/b", canonicalizer.canonicalize("http://host/a;jsessionid=123;v=1/b"));
+		URLCanonicalizer sorting = new URLCanonicalizer(new String[] { "session" }, true);
+		assertEquals("http://host/?a=1&b=2&utm_x=3", sorting.canonicalize("http://host/?utm_x=3&session=9&b=2&a=1"));
+	}
+
+	/**
+	 * Test case for urls that cannot be crawled being rejected
+	 */
+	@Test
+	public void test_invalid()
+	{
+		assertNull(canonicalizer.canonicalize("mailto:me@host"));
+		assertNull(canonicalizer.canonicalize("ftp://host/file"));
+		assertNull(canonicalizer.canonicalize("http:///path"));
+		assertNull(canonicalizer.canonicalize("http://host:port/"));
+	}
+
+}